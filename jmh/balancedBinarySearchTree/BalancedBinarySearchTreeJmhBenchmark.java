@@ -0,0 +1,161 @@
+package balancedBinarySearchTree;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for BalancedBinarySearchTree against java.util.TreeSet, run in forked JVMs with
+ * warmup; -prof gc adds allocation rates. They reuse the Subject wrappers and key Distributions
+ * of BalancedBinarySearchTreeBenchmark, so both harnesses measure the same code over the same keys.
+ * <br><pre>
+ * mvn -Pjmh package
+ * java -jar target/benchmarks.jar BalancedBinarySearchTreeJmhBenchmark -p size=1000000 -prof gc
+ * </pre>
+ * Each benchmark is one operation against a tree already holding size keys: a lookup of a
+ * present key, a lookup of an absent key, an insert of an absent key followed by its delete,
+ * or, for iterate and inorder, a full in-order scan.
+ * @author Spencer Collins
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BalancedBinarySearchTreeJmhBenchmark {
+
+    /**
+     * A filled structure and the keys to look up in it; the subclasses pick the structures
+     */
+    @State(Scope.Thread)
+    public abstract static class Loaded {
+        @Param({ "1000", "100000", "1000000", "10000000" })
+        public int size;
+
+        @Param({ "SEQUENTIAL", "RANDOM", "SKEWED" })
+        public String distribution;
+
+        BalancedBinarySearchTreeBenchmark.Subject subject;
+        Integer[] lookups;
+        /** Keys that are never in the structure; every generated key is at least 0 */
+        Integer[] absent;
+        int next;
+
+        abstract String structure();
+
+        @Setup
+        public void fill() {
+            this.subject = subject(this.structure());
+            Integer[] keys = BalancedBinarySearchTreeBenchmark.Distribution.valueOf(this.distribution).keys(this.size, new Random(this.size));
+            this.subject.reset();
+            for (Integer key : keys) {
+                this.subject.insert(key);
+            }
+            this.subject.prepareReads();
+
+            // Look keys up in a different order from the one they went in
+            this.lookups = keys.clone();
+            Random random = new Random(~this.size);
+            for (int i = this.lookups.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Integer swap = this.lookups[i];
+                this.lookups[i] = this.lookups[j];
+                this.lookups[j] = swap;
+            }
+            this.absent = new Integer[this.size];
+            for (int i = 0; i < this.size; i++) {
+                this.absent[i] = -1 - random.nextInt(Integer.MAX_VALUE);
+            }
+        }
+
+        int nextIndex() {
+            int index = this.next;
+            this.next = index + 1 == this.size ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Filled extends Loaded {
+        @Param({ "BalancedBinarySearchTree", "FrozenBalancedBinarySearchTree", "ArrayBalancedBinarySearchTree",
+                "IntBalancedBinarySearchTree", "OffHeapBalancedBinarySearchTree", "java.util.TreeSet" })
+        public String structure;
+
+        String structure() {
+            return this.structure;
+        }
+    }
+
+    /**
+     * The structures that support delete; the frozen tree is read only
+     */
+    @State(Scope.Thread)
+    public static class Mutable extends Loaded {
+        @Param({ "BalancedBinarySearchTree", "ArrayBalancedBinarySearchTree", "IntBalancedBinarySearchTree",
+                "OffHeapBalancedBinarySearchTree", "java.util.TreeSet" })
+        public String structure;
+
+        String structure() {
+            return this.structure;
+        }
+    }
+
+    @Benchmark
+    public boolean containsPresent(Filled state) {
+        return state.subject.contains(state.lookups[state.nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsAbsent(Filled state) {
+        return state.subject.contains(state.absent[state.nextIndex()]);
+    }
+
+    @Benchmark
+    public Object search(Filled state) {
+        return state.subject.search(state.lookups[state.nextIndex()]);
+    }
+
+    /**
+     * Insert a key that is not present and delete it again, so the size stays the same
+     */
+    @Benchmark
+    public boolean insertDelete(Mutable state) {
+        Integer key = state.absent[state.nextIndex()];
+        return state.subject.insert(key) & state.subject.delete(key);
+    }
+
+    @Benchmark
+    public long iterate(Filled state) {
+        long sum = 0;
+        for (Iterator<Integer> iterator = state.subject.iterator(); iterator.hasNext();) {
+            sum += iterator.next();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Object inorder(Filled state) {
+        return state.subject.inorder();
+    }
+
+    private static BalancedBinarySearchTreeBenchmark.Subject subject(String name) {
+        for (BalancedBinarySearchTreeBenchmark.Subject subject : BalancedBinarySearchTreeBenchmark.subjects()) {
+            if (subject.name.equals(name)) {
+                return subject;
+            }
+        }
+        throw new IllegalArgumentException("No structure named " + name);
+    }
+}
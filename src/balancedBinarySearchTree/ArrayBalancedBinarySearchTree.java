@@ -0,0 +1,451 @@
+package balancedBinarySearchTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Balanced binary search tree that stores its nodes as struct-of-arrays rather than as
+ * BalancedBinarySearchTreeNode objects.
+ * <br>
+ * Each node is an index into parallel arrays of children, parent and height, plus a data
+ * array. That removes the object header and three references per node and keeps the links
+ * of neighbouring nodes together in memory. Slots freed by delete are kept on a free-list
+ * and reused by later inserts.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class ArrayBalancedBinarySearchTree<T> implements Iterable<T> {
+
+    /** Index used in place of a null reference */
+    private static final int NIL = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Attributes
+    private Object[] data;
+    private int[] left, right, parent;
+    private byte[] heights;
+    private int root;
+    private int size;
+    /** Number of slots that have ever been handed out */
+    private int used;
+    /** Head of the free-list, linked through the left array */
+    private int free;
+    private int modCount;
+    private final Comparator<T> comparator;
+
+    // Constructor
+    public ArrayBalancedBinarySearchTree(Comparator<T> comparator) {
+        this(comparator, DEFAULT_CAPACITY);
+    }
+
+    public ArrayBalancedBinarySearchTree(Comparator<T> comparator, int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        this.comparator = comparator;
+        this.data = new Object[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.parent = new int[capacity];
+        this.heights = new byte[capacity];
+        this.clear();
+    }
+
+    // Access Methods
+    /**
+     * Insert data into and balance the binary tree
+     * @param data
+     * @return true if data was added to the tree
+     */
+    public boolean insert(T data) {
+        // If this is the first element in the tree, set it as the root
+        if (this.root == NIL) {
+            this.root = this.allocate(data, NIL);
+            return true;
+        }
+
+        // Walk down the tree to find the correct spot to place the node
+        int node = this.root;
+        while (true) {
+            int compare = this.comparator.compare(data, this.dataAt(node));
+            if (compare < 0) {
+                if (this.left[node] != NIL) {
+                    node = this.left[node];
+                } else {
+                    // allocate() may grow the arrays, so read it before indexing them
+                    int newNode = this.allocate(data, node);
+                    this.left[node] = newNode;
+                    break;
+                }
+            } else if (compare > 0) {
+                if (this.right[node] != NIL) {
+                    node = this.right[node];
+                } else {
+                    int newNode = this.allocate(data, node);
+                    this.right[node] = newNode;
+                    break;
+                }
+            } else {
+                // Duplicate, so do nothing
+                return false;
+            }
+        }
+
+        // Work back up the tree, adjusting heights and re-balancing if necessary
+        this.balance(node);
+        return true;
+    }
+
+    /**
+     * Function to find data in the tree and delete it, balancing out the tree appropriately
+     * @param data
+     * @return true if element was found and deleted, false otherwise
+     */
+    public boolean delete(T data) {
+        int deadNode = this.searchForNode(data);
+        if (deadNode == NIL) {
+            return false;
+        }
+
+        // Two children: take over the inorder successor's data and delete the successor instead,
+        //   which has at most a right child
+        if (this.left[deadNode] != NIL && this.right[deadNode] != NIL) {
+            int inorderSuccessorNode = this.getLeftmostNode(this.right[deadNode]);
+            this.data[deadNode] = this.data[inorderSuccessorNode];
+            deadNode = inorderSuccessorNode;
+        }
+
+        // One or zero children: splice the node out
+        int child = this.left[deadNode] != NIL ? this.left[deadNode] : this.right[deadNode];
+        int parentNode = this.parent[deadNode];
+        if (child != NIL) {
+            this.parent[child] = parentNode;
+        }
+        this.replaceChild(parentNode, deadNode, child);
+        this.release(deadNode);
+
+        if (parentNode == NIL) {
+            this.root = child;
+        } else {
+            this.balance(parentNode);
+        }
+        return true;
+    }
+
+    public boolean contains(T data) {
+        return this.searchForNode(data) != NIL;
+    }
+
+    public T search(T data) {
+        int node = this.searchForNode(data);
+        return node != NIL ? this.dataAt(node) : null;
+    }
+
+    private int searchForNode(T data) {
+        int node = this.root;
+        while (node != NIL) {
+            int compare = this.comparator.compare(data, this.dataAt(node));
+            if (compare < 0) {
+                node = this.left[node];
+            } else if (compare > 0) {
+                node = this.right[node];
+            } else {
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Function to work up the tree from specified node, balancing it and adjusting heights
+     * @param node
+     */
+    private void balance(int node) {
+        while (true) {
+            int balance = this.height(this.left[node]) - this.height(this.right[node]);
+
+            // If the left subtree is taller than the right subtree by more than 1
+            if (balance == 2) {
+                int child = this.left[node];
+                if (this.height(this.right[child]) > this.height(this.left[child])) {
+                    node = this.doubleRotateWithLeftChild(node);
+                } else {
+                    node = this.rotateWithLeftChild(node);
+                }
+            }
+            // If the right subtree is taller than the left subtree by more than 1
+            else if (balance == -2) {
+                int child = this.right[node];
+                if (this.height(this.left[child]) > this.height(this.right[child])) {
+                    node = this.doubleRotateWithRightChild(node);
+                } else {
+                    node = this.rotateWithRightChild(node);
+                }
+            }
+
+            this.updateHeight(node);
+
+            if (this.parent[node] != NIL) {
+                node = this.parent[node];
+            } else {
+                this.root = node;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rotate binary tree node with left child
+     * @param oldParent
+     * @return newParent
+     * @see BalancedBinarySearchTree
+     */
+    private int rotateWithLeftChild(int oldParent) {
+        int newParent = this.left[oldParent];
+        int moved = this.right[newParent];
+        this.left[oldParent] = moved;
+        if (moved != NIL) {
+            this.parent[moved] = oldParent;
+        }
+        this.right[newParent] = oldParent;
+
+        int grandParent = this.parent[oldParent];
+        this.replaceChild(grandParent, oldParent, newParent);
+        this.parent[newParent] = grandParent;
+        this.parent[oldParent] = newParent;
+
+        this.updateHeight(oldParent);
+        this.updateHeight(newParent);
+        return newParent;
+    }
+
+    /**
+     * Rotate binary tree node with right child
+     * @param oldParent
+     * @return newParent
+     * @see BalancedBinarySearchTree
+     */
+    private int rotateWithRightChild(int oldParent) {
+        int newParent = this.right[oldParent];
+        int moved = this.left[newParent];
+        this.right[oldParent] = moved;
+        if (moved != NIL) {
+            this.parent[moved] = oldParent;
+        }
+        this.left[newParent] = oldParent;
+
+        int grandParent = this.parent[oldParent];
+        this.replaceChild(grandParent, oldParent, newParent);
+        this.parent[newParent] = grandParent;
+        this.parent[oldParent] = newParent;
+
+        this.updateHeight(oldParent);
+        this.updateHeight(newParent);
+        return newParent;
+    }
+
+    private int doubleRotateWithLeftChild(int parent) {
+        this.rotateWithRightChild(this.left[parent]);
+        return this.rotateWithLeftChild(parent);
+    }
+
+    private int doubleRotateWithRightChild(int parent) {
+        this.rotateWithLeftChild(this.right[parent]);
+        return this.rotateWithRightChild(parent);
+    }
+
+    /**
+     * Point the parent's reference at previousNode to newNode instead
+     * @param parentNode may be NIL, in which case nothing changes
+     * @param previousNode
+     * @param newNode
+     */
+    private void replaceChild(int parentNode, int previousNode, int newNode) {
+        if (parentNode == NIL) {
+            return;
+        }
+        if (this.left[parentNode] == previousNode) {
+            this.left[parentNode] = newNode;
+        } else {
+            this.right[parentNode] = newNode;
+        }
+    }
+
+    private void updateHeight(int node) {
+        this.heights[node] = (byte) (Math.max(this.height(this.left[node]), this.height(this.right[node])) + 1);
+    }
+
+    /**
+     * Function to get the height of a node
+     * @param node
+     * @return height of node; -1 if NIL
+     */
+    private int height(int node) {
+        return node == NIL ? -1 : this.heights[node];
+    }
+
+    /**
+     * @return the height of the tree; -1 if empty
+     */
+    public int height() {
+        return this.height(this.root);
+    }
+
+    private int getLeftmostNode(int node) {
+        while (this.left[node] != NIL) {
+            node = this.left[node];
+        }
+        return node;
+    }
+
+    private int successor(int node) {
+        if (this.right[node] != NIL) {
+            return this.getLeftmostNode(this.right[node]);
+        }
+        int parentNode = this.parent[node];
+        while (parentNode != NIL && this.right[parentNode] == node) {
+            node = parentNode;
+            parentNode = this.parent[node];
+        }
+        return parentNode;
+    }
+
+    // Storage
+    @SuppressWarnings("unchecked")
+    private T dataAt(int node) {
+        return (T) this.data[node];
+    }
+
+    /**
+     * Take a slot from the free-list, or from the end of the arrays, growing them if needed
+     * @param data
+     * @param parentNode
+     * @return index of the new leaf
+     */
+    private int allocate(T data, int parentNode) {
+        int node;
+        if (this.free != NIL) {
+            node = this.free;
+            this.free = this.left[node];
+        } else {
+            if (this.used == this.data.length) {
+                this.grow();
+            }
+            node = this.used++;
+        }
+        this.data[node] = data;
+        this.left[node] = NIL;
+        this.right[node] = NIL;
+        this.parent[node] = parentNode;
+        this.heights[node] = 0;
+        this.size++;
+        this.modCount++;
+        return node;
+    }
+
+    /**
+     * Return a slot to the free-list
+     * @param node
+     */
+    private void release(int node) {
+        // Drop the reference so the data can be collected
+        this.data[node] = null;
+        this.left[node] = this.free;
+        this.free = node;
+        this.size--;
+        this.modCount++;
+    }
+
+    private void grow() {
+        int capacity = this.data.length + (this.data.length >> 1) + 1;
+        this.data = Arrays.copyOf(this.data, capacity);
+        this.left = Arrays.copyOf(this.left, capacity);
+        this.right = Arrays.copyOf(this.right, capacity);
+        this.parent = Arrays.copyOf(this.parent, capacity);
+        this.heights = Arrays.copyOf(this.heights, capacity);
+    }
+
+    // Convenience Methods
+    /**
+     * @return number of elements in the tree
+     */
+    public int countNodes() {
+        return this.size;
+    }
+
+    /**
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Clears the tree of all its members, keeping the allocated arrays
+     */
+    public void clear() {
+        Arrays.fill(this.data, 0, this.used, null);
+        this.root = NIL;
+        this.size = 0;
+        this.used = 0;
+        this.free = NIL;
+        this.modCount++;
+    }
+
+    /**
+     * Function to retrieve the data from the elements in the tree through an in-order traversal
+     * @return ArrayList of the data of all elements in the tree, in order, sized up front
+     */
+    public List<T> inorder() {
+        List<T> sorted = new ArrayList<T>(this.size);
+        for (T data : this) {
+            sorted.add(data);
+        }
+        return sorted;
+    }
+
+    /**
+     * Function to retrieve the height of the elements in the tree through an in-order traversal
+     * @return ArrayList of the height of all elements in the tree, in order by data
+     */
+    public List<Integer> inorderHeight() {
+        List<Integer> sorted = new ArrayList<Integer>(this.size);
+        if (this.root != NIL) {
+            for (int node = this.getLeftmostNode(this.root); node != NIL; node = this.successor(node)) {
+                sorted.add(this.height(node));
+            }
+        }
+        return sorted;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int nextNode = root == NIL ? NIL : getLeftmostNode(root);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return this.nextNode != NIL;
+            }
+
+            @Override
+            public T next() {
+                if (this.nextNode == NIL) {
+                    throw new NoSuchElementException();
+                }
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                int node = this.nextNode;
+                this.nextNode = successor(node);
+                return dataAt(node);
+            }
+        };
+    }
+
+}
@@ -1,10 +1,19 @@
 package balancedBinarySearchTree;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 /**
  * @author Spencer Collins
  * Date: 4/18/17
@@ -13,13 +22,53 @@ import java.util.NoSuchElementException;
  */
 public class BalancedBinarySearchTree<T> implements Iterable<T> {
 
+    // Largest array some VMs will allocate
+    private static final int MAX_MERGE_LENGTH = Integer.MAX_VALUE - 8;
+    
     // Attributes
+    /** Set operations on fewer elements than this run in the calling task rather than forking */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    /** Height difference between siblings a RELAXED tree tolerates before rotating */
+    private static final int RELAXED_TOLERANCE = 2;
+    /** A DEFERRED tree of n nodes is rebuilt in part once it is deeper than log base 1.5 of n */
+    private static final double LOG_DEFERRED_BASE = Math.log(1.5);
+    /** Share of the nodes that may be tombstones before a lazily deleting tree compacts */
+    private static final double DEFAULT_COMPACTION_RATIO = 0.5;
+    
     private BalancedBinarySearchTreeNode<T> root;
     private final Comparator<T> comparator;
+    /** Whether equal data is counted on one node rather than rejected */
+    private final boolean multiset;
+    /** Number of structural changes, so iterators can detect changes made behind their back */
+    private int modCount;
+    private BalancingPolicy balancing = BalancingPolicy.STRICT;
+    /** Largest size of a DEFERRED tree since it was last rebuilt whole */
+    private int deferredPeak;
+    private boolean fingerSearch;
+    /** Node the last insert or search reached; null until one does, or once its node leaves */
+    private BalancedBinarySearchTreeNode<T> finger;
+    private boolean lazyDeletion;
+    private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+    /** Nodes lazy deletion left in place with a count of 0; every lookup passes over them */
+    private int tombstones;
+    /** Nodes linked into the tree, tombstones included; -1 while waiting to be counted again */
+    private int nodes;
+    /** Null unless enableStats() was called, so disabled stats cost one null check per operation */
+    private BalancedBinarySearchTreeStats stats;
     
     // Constructor
     public BalancedBinarySearchTree(Comparator<T> comparator){
+        this(comparator, false);
+    }
+    
+    /**
+     * @param comparator
+     * @param multiset if true, inserting data equal to an element already in the tree adds
+     *   another occurrence to that element's node instead of being rejected
+     */
+    public BalancedBinarySearchTree(Comparator<T> comparator, boolean multiset){
         this.comparator = comparator;
+        this.multiset = multiset;
         this.clear();
     }
     
@@ -27,100 +76,241 @@ public class BalancedBinarySearchTree<T> implements Iterable<T> {
     /**
      * Insert data into and balance the binary tree
      * @param data
-     * @return true if data was added to the tree
+     * @return true if data was added to the tree; always true for a multiset
      */
     public boolean insert(T data) {
-        // Create a new node with the data that is to be inserted
-        BalancedBinarySearchTreeNode<T> newNode = new BalancedBinarySearchTreeNode<T>(data);
-        
+        long start = this.stats != null ? System.nanoTime() : 0L;
+        int previousSize = this.size();
+        BalancedBinarySearchTreeNode<T> node = this.insertNode(data);
+        if (this.size() == previousSize && (this.multiset || node.getCount() == 0)) {
+            if (node.getCount() == 0) {
+                node = this.revive(node, data);
+            }
+            this.addOccurrences(node, 1);
+        }
+        boolean added = this.size() != previousSize;
+        if (this.stats != null) {
+            this.stats.recordInsert(added, System.nanoTime() - start);
+        }
+        return added;
+    }
+    
+    /**
+     * Insert a node for data unless one equal to it is already present, in a single descent
+     * @param data
+     * @return the node equal to data; a new node if the tree grew
+     */
+    BalancedBinarySearchTreeNode<T> insertNode(T data) {
         // If this is the first element in the tree, set it as the root
         if (this.root == null) {
-            this.root = newNode;
-            this.root.setHeight(0);
-            return true;
+            this.root = this.createNode(data, null);
+            this.addNodes(1);
+            this.modCount++;
+            return this.root;
         }
         
-        // Create a node at the root that will be the current node as we walk the tree
-        BalancedBinarySearchTreeNode<T> node = this.root;
+        // Start the walk at the root, or at the lowest subtree around the finger that holds data
+        BalancedBinarySearchTreeNode<T> node = this.startNode(data);
         
-        // Walk down the tree to find the correct spot to place the node
-        while (node != null) {
+        // Walk down the tree to find the correct spot to place the node, comparing once per level
+        BalancedBinarySearchTreeNode<T> inserted;
+        int depth = 0;
+        while (true) {
+            int compare = this.comparator.compare(data, node.getData());
+            depth++;
             
             // If the new data is supposed to be left of the current node
-            if (this.comparator.compare(newNode.getData(), node.getData()) < 0) {
+            if (compare < 0) {
                 
                 // If there is a node to the left of the current node, traverse to it
-                if (node.getLeftNode() != null) {
+                if (node.hasLeftNode()) {
                     node = node.getLeftNode();
                 }
-                // Or place the current node
+                // Or place the new node; it is only created once the insert is certain
                 else {
-                    node.setLeftNode(newNode);
-                    newNode.setParentNode(node);
+                    inserted = this.createNode(data, node);
+                    node.setLeftNode(inserted);
                     break;
                 }
             }
             // If the new data is supposed to be right of the current node
-            else if (this.comparator.compare(newNode.getData(), node.getData()) > 0) {
+            else if (compare > 0) {
                 
                 // If there is a node to the right of the current node
-                if (node.getRightNode() != null) {
+                if (node.hasRightNode()) {
                     node = node.getRightNode();
                 }
-                // Or place the current node
+                // Or place the new node
                 else {
-                    node.setRightNode(newNode);
-                    newNode.setParentNode(node);
+                    inserted = this.createNode(data, node);
+                    node.setRightNode(inserted);
                     break;
                 }
             }
-            // If the new node has the same value as the current node, it's a duplicate, so do nothing
-            else if (this.comparator.compare(newNode.getData(), node.getData()) == 0) {
-                return false;
+            // If the new data has the same value as the current node, it's a duplicate, so do nothing
+            else {
+                if (this.stats != null) {
+                    this.stats.recordComparisons(depth);
+                }
+                this.finger = node;
+                return node;
             }
         }
+        if (this.stats != null) {
+            this.stats.recordComparisons(depth);
+        }
         
         // Work back up the tree, adjusting heights and re-balancing if necessary
         this.balance(node);
+        this.addNodes(1);
+        this.rebalanceInserted(inserted);
+        this.modCount++;
         
-        return true;
+        this.finger = inserted;
+        return inserted;
+    }
+    
+    /**
+     * Create the node that will hold data; subclasses may return a subclass of node
+     * @param data
+     * @param parent
+     * @return the new node
+     */
+    BalancedBinarySearchTreeNode<T> createNode(T data, BalancedBinarySearchTreeNode<T> parent) {
+        return new BalancedBinarySearchTreeNode<T>(data, parent);
+    }
+    
+    /**
+     * Put a new node for data in the place of a tombstone equal to it, so the tree holds the
+     *   data inserted last rather than the data that was deleted, as an eager delete would
+     * @param tombstone
+     * @param data
+     * @return the new node, still with a count of 0
+     */
+    private BalancedBinarySearchTreeNode<T> revive(BalancedBinarySearchTreeNode<T> tombstone, T data) {
+        BalancedBinarySearchTreeNode<T> node = this.createNode(data, null);
+        node.setLeftNode(tombstone.getLeftNode());
+        if (node.hasLeftNode()) {
+            node.getLeftNode().setParentNode(node);
+        }
+        node.setRightNode(tombstone.getRightNode());
+        if (node.hasRightNode()) {
+            node.getRightNode().setParentNode(node);
+        }
+        node.setHeight(tombstone.getHeight());
+        node.setSize(tombstone.getSize());
+        node.setCount(0);
+        node.setRed(tombstone.isRed());
+        this.swapParentsChild(tombstone, node);
+        if (this.root == tombstone) {
+            this.root = node;
+        }
+        if (this.finger == tombstone) {
+            this.finger = node;
+        }
+        this.tombstones--;
+        return node;
+    }
+    
+    /**
+     * Change the number of occurrences of a node's data, and the sizes of the subtrees holding
+     *   it, without changing the shape of the tree
+     * @param node
+     * @param delta
+     */
+    private void addOccurrences(BalancedBinarySearchTreeNode<T> node, int delta) {
+        node.setCount(node.getCount() + delta);
+        for (BalancedBinarySearchTreeNode<T> ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+            ancestor.setSize(ancestor.getSize() + delta);
+        }
+        this.modCount++;
+    }
+    
+    /**
+     * Remove one occurrence of a node's data, unlinking the node with its last one, or under
+     *   lazy deletion leaving it as a tombstone
+     * @param node
+     */
+    private void deleteOccurrence(BalancedBinarySearchTreeNode<T> node) {
+        if (node.getCount() > 1) {
+            this.addOccurrences(node, -1);
+        } else if (this.lazyDeletion) {
+            this.addOccurrences(node, -1);
+            this.tombstones++;
+            // Both sides count nodes: a multiset's size counts occurrences, not nodes
+            if (this.tombstones > this.compactionRatio * this.nodeCount()) {
+                this.rebuild();
+            }
+        } else {
+            this.deleteNode(node);
+        }
     }
     
     /**
      * Function to find data in the tree and delete it, balancing out the tree appropriately
      * @param data
-     * @return true if element was found and deleted, false otherwise
+     * @return true if element was found and deleted, false otherwise; a multiset loses one occurrence
      */
     public boolean delete(T data) {
+        long start = this.stats != null ? System.nanoTime() : 0L;
+        
         // Get the node with the data that is to be deleted
         BalancedBinarySearchTreeNode<T> deadNode = searchForNode(data);
         
-        // If the data isn't in the tree, return false
-        if (deadNode == null) {
-            return false;
+        // If the data isn't in the tree, there is nothing to do
+        if (deadNode != null) {
+            this.deleteOccurrence(deadNode);
+        }
+        if (this.stats != null) {
+            this.stats.recordDelete(deadNode != null, System.nanoTime() - start);
+        }
+        return deadNode != null;
+    }
+    
+    /**
+     * Unlink a node from the tree and re-balance. Every other node stays in the tree as the
+     *   same object, so iterators and callers holding them stay valid.
+     * @param deadNode
+     */
+    void deleteNode(BalancedBinarySearchTreeNode<T> deadNode) {
+        // The dead node's parent stays in the tree whichever node takes its place
+        if (deadNode == this.finger) {
+            this.finger = deadNode.getParentNode();
+        }
+        this.addNodes(-1);
+        this.modCount++;
+        if (this.balancing == BalancingPolicy.RED_BLACK) {
+            this.deleteRedBlack(deadNode);
+            return;
         }
         
         // One or zero children
         if (!deadNode.hasLeftNode() || !deadNode.hasRightNode()) {
+            // The child's subtree is unchanged, so balancing starts at the parent it moves up to
             if (deadNode.hasLeftNode()) {
                 this.swapParentsChild(deadNode, deadNode.getLeftNode());
-                this.balance(deadNode.getLeftNode());
+                this.balance(deadNode.hasParent() ? deadNode.getParentNode() : deadNode.getLeftNode());
             } else if (deadNode.hasRightNode()) {
                 this.swapParentsChild(deadNode, deadNode.getRightNode());
-                this.balance(deadNode.getRightNode());
-            } else {
+                this.balance(deadNode.hasParent() ? deadNode.getParentNode() : deadNode.getRightNode());
+            } else if (deadNode.hasParent()) {
                 this.swapParentsChild(deadNode, null);
-                this.balance(deadNode);
+                this.balance(deadNode.getParentNode());
+            } else {
+                // The dead node was the only element in the tree
+                this.root = null;
             }
             
         }
         // Two children
         else {
-            // Get the inorder successor
+            // Get the inorder successor; it takes over the dead node's height too, which balance()
+            //   compares against to tell when heights stop changing
             BalancedBinarySearchTreeNode<T> inorderSuccessorNode = this.getLeftmostNode(deadNode.getRightNode());
+            inorderSuccessorNode.setHeight(deadNode.getHeight());
             
             // If the successor is directly next to the killed node
-            if (inorderSuccessorNode.getParentNode().equals(deadNode)) {
+            if (inorderSuccessorNode.getParentNode() == deadNode) {
                 // No need to remove references to the old inorder successor, simply move it up and
                 //   replace the deadNode with the inorder successor
                 this.swapParentsChild(deadNode, inorderSuccessorNode);
@@ -158,278 +348,1861 @@ public class BalancedBinarySearchTree<T> implements Iterable<T> {
         }
         deadNode = null;
         
-        return true;
+        // A DEFERRED tree that has shrunk by a third since its last rebuild is rebuilt whole
+        if (this.balancing == BalancingPolicy.DEFERRED && 3L * this.size() < 2L * this.deferredPeak) {
+            this.rebuild();
+        }
     }
     
+    // Red-Black and Deferred Balancing
     /**
-     * Function to work up the tree from specified node, balancing it and adjusting heights
-     * @param node
+     * Restore balance after inserting a node under a policy whose balance() does not rotate:
+     *   recolour and rotate a red-black tree, or rebuild the subtree of a DEFERRED tree that the
+     *   node made too deep
+     * @param inserted
      */
-    private void balance(BalancedBinarySearchTreeNode<T> node) {
-        while (node != null) {
-            
-            // If the left subtree is taller than the right subtree by more than 1
-            if (height( node.getLeftNode() ) - height( node.getRightNode() ) == 2) {
-                if (node.getLeftNode().hasRightNode()) {
-                    node = doubleRotateWithLeftChild( node );
-                } else {
-                    node = rotateWithLeftChild( node );
-                }
-            }
-            // If the right subtree is taller than the left subtree by more than 1
-            else if (height( node.getLeftNode() ) - height( node.getRightNode() ) == -2) {
-                if (node.getRightNode().hasLeftNode()) {
-                    node = doubleRotateWithRightChild( node );
-                } else {
-                    node = rotateWithRightChild( node );
-                }
+    private void rebalanceInserted(BalancedBinarySearchTreeNode<T> inserted) {
+        if (this.balancing == BalancingPolicy.RED_BLACK) {
+            this.fixRedBlackInsert(inserted);
+        } else if (this.balancing == BalancingPolicy.DEFERRED) {
+            this.deferredPeak = max(this.deferredPeak, this.size());
+            // The descent may have started at the finger, so count the levels from the root
+            int depth = 0;
+            for (BalancedBinarySearchTreeNode<T> node = inserted; node.hasParent(); node = node.getParentNode()) {
+                depth++;
             }
-            
-            // Set the height of the current node to be one more than the height of its tallest child
-            node.setHeight(max(height(node.getLeftNode()), height(node.getRightNode())) + 1);
-            
-            // 
-            if(node.hasParent()){
-                node = node.getParentNode();
-            } else {
-                this.root = node;
-                break;
+            if (depth > deferredHeightLimit(this.deferredPeak)) {
+                this.rebuildScapegoat(inserted);
             }
         }
-        return;
     }
     
     /**
-     * Helper function to easily copy the parent references from one node to another; 
-     *   parents are also updated to refer to the new child
-     * @param previousNode
-     * @param newNode
+     * Colour a new node red and repair any red node with a red parent above it, with at most two
+     *   rotations; heights and sizes are then recomputed above the rotated nodes
+     * @param node
      */
-    private void swapParentsChild(BalancedBinarySearchTreeNode<T> previousNode, BalancedBinarySearchTreeNode<T> newNode) {
-        if (previousNode.hasParent()) {
-            if (newNode == null) {
-                if (this.comparator.compare(previousNode.getData(), previousNode.getParentNode().getData()) < 0) {
-                    previousNode.getParentNode().setLeftNode(newNode);
-                } else {
-                    previousNode.getParentNode().setRightNode(newNode);
-                }
-                return;
+    private void fixRedBlackInsert(BalancedBinarySearchTreeNode<T> node) {
+        node.setRed(true);
+        while (isRed(node.getParentNode())) {
+            BalancedBinarySearchTreeNode<T> parent = node.getParentNode();
+            // A red parent is never the root, so there is a grandparent
+            BalancedBinarySearchTreeNode<T> grandparent = parent.getParentNode();
+            boolean parentIsLeft = grandparent.getLeftNode() == parent;
+            BalancedBinarySearchTreeNode<T> uncle = parentIsLeft ? grandparent.getRightNode() : grandparent.getLeftNode();
+            
+            // A red uncle: push the grandparent's black down a level and carry on above it
+            if (isRed(uncle)) {
+                parent.setRed(false);
+                uncle.setRed(false);
+                grandparent.setRed(true);
+                node = grandparent;
+                continue;
             }
             
-            if (this.comparator.compare(newNode.getData(), previousNode.getParentNode().getData()) < 0) {
-                previousNode.getParentNode().setLeftNode(newNode);
+            // A black uncle: rotate the middle of the three nodes up and stop
+            boolean isDouble = parentIsLeft ? parent.getRightNode() == node : parent.getLeftNode() == node;
+            BalancedBinarySearchTreeNode<T> top;
+            if (parentIsLeft) {
+                top = isDouble ? doubleRotateWithLeftChild(grandparent) : rotateWithLeftChild(grandparent);
             } else {
-                previousNode.getParentNode().setRightNode(newNode);
+                top = isDouble ? doubleRotateWithRightChild(grandparent) : rotateWithRightChild(grandparent);
             }
+            if (this.stats != null) {
+                this.stats.recordRotation(isDouble);
+            }
+            top.setRed(false);
+            grandparent.setRed(true);
+            this.refresh(top);
+            break;
         }
-        newNode.setParentNode(previousNode.getParentNode());
+        this.root.setRed(false);
     }
     
     /**
-     * Rotate binary tree node with left child
-     * <br><pre>
-     *      3           
-     *     /        2   
-     *    2   ==>  / \  
-     *   /        1   3 
-     *  1               
-     * </pre>
-     * @param oldParent (3)
-     * @return newParent (2)
+     * Unlink a node from a red-black tree, moving its in-order successor into its place if it
+     *   has two children, then repair the black heights if a black node left its position
+     * @param deadNode
      */
-    private BalancedBinarySearchTreeNode<T> rotateWithLeftChild(BalancedBinarySearchTreeNode<T> oldParent) {
-        BalancedBinarySearchTreeNode<T> newParent = oldParent.getLeftNode();
-        oldParent.setLeftNode(newParent.getRightNode());
-        newParent.setRightNode(oldParent);
+    private void deleteRedBlack(BalancedBinarySearchTreeNode<T> deadNode) {
+        // The node that takes the removed position, which may be empty, and where it hangs
+        BalancedBinarySearchTreeNode<T> child;
+        BalancedBinarySearchTreeNode<T> childParent;
+        boolean removedRed;
         
-        this.swapParentsChild(oldParent, newParent);
-        oldParent.setParentNode(newParent);
+        if (!deadNode.hasLeftNode() || !deadNode.hasRightNode()) {
+            child = deadNode.hasLeftNode() ? deadNode.getLeftNode() : deadNode.getRightNode();
+            childParent = deadNode.getParentNode();
+            removedRed = deadNode.isRed();
+            this.swapParentsChild(deadNode, child);
+            if (childParent == null) {
+                this.root = child;
+            }
+        } else {
+            // The successor leaves its own position, and takes the dead node's place and colour
+            BalancedBinarySearchTreeNode<T> inorderSuccessorNode = this.getLeftmostNode(deadNode.getRightNode());
+            child = inorderSuccessorNode.getRightNode();
+            removedRed = inorderSuccessorNode.isRed();
+            if (inorderSuccessorNode.getParentNode() == deadNode) {
+                childParent = inorderSuccessorNode;
+            } else {
+                childParent = inorderSuccessorNode.getParentNode();
+                childParent.setLeftNode(child);
+                if (child != null) {
+                    child.setParentNode(childParent);
+                }
+                inorderSuccessorNode.setRightNode(deadNode.getRightNode());
+                inorderSuccessorNode.getRightNode().setParentNode(inorderSuccessorNode);
+            }
+            this.swapParentsChild(deadNode, inorderSuccessorNode);
+            inorderSuccessorNode.setLeftNode(deadNode.getLeftNode());
+            inorderSuccessorNode.getLeftNode().setParentNode(inorderSuccessorNode);
+            inorderSuccessorNode.setRed(deadNode.isRed());
+            if (!inorderSuccessorNode.hasParent()) {
+                this.root = inorderSuccessorNode;
+            }
+        }
+        this.refresh(childParent);
         
-        oldParent.setHeight(max( height(oldParent.getLeftNode()), height(oldParent.getRightNode()) ) + 1);
-        newParent.setHeight(max( height(newParent.getLeftNode()), oldParent.getHeight() ) + 1);
-        return newParent;
+        if (!removedRed) {
+            this.fixRedBlackDelete(child, childParent);
+        }
     }
-
+    
     /**
-     * Rotate binary tree node with right child
-     * <br><pre>
-     *  1               
-     *   \          2   
-     *    2   ==>  / \  
-     *     \      1   3 
-     *      3           
-     * </pre>
-     * @param oldParent (1)
-     * @return newParent (2)
+     * Give back the black node a path lost, with at most three rotations; heights and sizes are
+     *   recomputed above each rotation
+     * @param node the node, possibly empty, on the path one black short
+     * @param parent its parent
      */
-    private BalancedBinarySearchTreeNode<T> rotateWithRightChild(BalancedBinarySearchTreeNode<T> oldParent) {
-        BalancedBinarySearchTreeNode<T> newParent = oldParent.getRightNode();
-        oldParent.setRightNode(newParent.getLeftNode());
-        newParent.setLeftNode(oldParent);
-        
-        this.swapParentsChild(oldParent, newParent);
-        oldParent.setParentNode(newParent);
-        
-        oldParent.setHeight(max( height(oldParent.getLeftNode()), height(oldParent.getRightNode()) ) + 1);
-        newParent.setHeight(max( height(newParent.getRightNode()), oldParent.getHeight() ) + 1);
-        return newParent;
+    private void fixRedBlackDelete(BalancedBinarySearchTreeNode<T> node, BalancedBinarySearchTreeNode<T> parent) {
+        while (node != this.root && !isRed(node)) {
+            boolean isLeft = parent.getLeftNode() == node;
+            // The sibling's side has a black more than node's, so the sibling exists
+            BalancedBinarySearchTreeNode<T> sibling = isLeft ? parent.getRightNode() : parent.getLeftNode();
+            if (sibling.isRed()) {
+                sibling.setRed(false);
+                parent.setRed(true);
+                this.rotateRedBlack(parent, !isLeft);
+                sibling = isLeft ? parent.getRightNode() : parent.getLeftNode();
+            }
+            
+            BalancedBinarySearchTreeNode<T> near = isLeft ? sibling.getLeftNode() : sibling.getRightNode();
+            BalancedBinarySearchTreeNode<T> far = isLeft ? sibling.getRightNode() : sibling.getLeftNode();
+            if (!isRed(near) && !isRed(far)) {
+                // Take a black off the sibling's side too and move the shortfall up
+                sibling.setRed(true);
+                node = parent;
+                parent = node.getParentNode();
+                continue;
+            }
+            if (!isRed(far)) {
+                near.setRed(false);
+                sibling.setRed(true);
+                sibling = this.rotateRedBlack(sibling, isLeft);
+                far = isLeft ? sibling.getRightNode() : sibling.getLeftNode();
+            }
+            sibling.setRed(parent.isRed());
+            parent.setRed(false);
+            far.setRed(false);
+            this.rotateRedBlack(parent, !isLeft);
+            node = this.root;
+        }
+        if (node != null) {
+            node.setRed(false);
+        }
     }
     
     /**
-     * Double rotate binary tree node: first left child
-     * with its right child, then parent with new left child
-     * <br><pre>
-     *    3         3           
-     *   /         /        2   
-     *  1   ==>   2   ==>  / \  
-     *   \       /        1   3 
-     *    2     1               
-     * </pre>
-     * @param parent (3)
-     * @return newParent (2)
+     * Rotate a node with one of its children, counting the rotation, and recompute the heights
+     *   and sizes above it
+     * @param node
+     * @param withLeftChild
+     * @return the child that took node's place
      */
-    private BalancedBinarySearchTreeNode<T> doubleRotateWithLeftChild(BalancedBinarySearchTreeNode<T> parent) {
-        parent.setLeftNode(rotateWithRightChild( parent.getLeftNode() ));
-        return rotateWithLeftChild( parent );
+    private BalancedBinarySearchTreeNode<T> rotateRedBlack(BalancedBinarySearchTreeNode<T> node, boolean withLeftChild) {
+        BalancedBinarySearchTreeNode<T> top = withLeftChild ? rotateWithLeftChild(node) : rotateWithRightChild(node);
+        if (this.stats != null) {
+            this.stats.recordRotation(false);
+        }
+        this.refresh(top);
+        return top;
     }
     
-    /**
-     * Double rotate binary tree node: first right child
-     * with its left child, then parent with new right child
-     * <br><pre>
-     *  1       1               
-     *   \       \          2   
-     *    3 ==>   2   ==>  / \  
-     *   /         \      1   3 
-     *  2           3           
-     * </pre>
-     * @param parent (1)
-     * @return newParent (2)
-     */
-    private BalancedBinarySearchTreeNode<T> doubleRotateWithRightChild(BalancedBinarySearchTreeNode<T> parent) {
-        parent.setRightNode(rotateWithLeftChild( parent.getRightNode() ));
-        return rotateWithRightChild( parent );
+    private static boolean isRed(BalancedBinarySearchTreeNode<?> node) {
+        return node != null && node.isRed();
     }
     
     /**
-     * Function to get the height of a node
+     * Rebuild the subtree of the lowest ancestor of a node that is too deep whose child on the
+     *   node's side holds more than two thirds of its nodes; rebuild the whole tree if there is
+     *   none or if the tree is still too tall
      * @param node
-     * @return height of node; -1 if null
      */
-    public int height(BalancedBinarySearchTreeNode<T> node) {
-        return node == null ? -1 : node.getHeight();
+    private void rebuildScapegoat(BalancedBinarySearchTreeNode<T> node) {
+        int childNodes = 1;
+        for (BalancedBinarySearchTreeNode<T> child = node, parent = node.getParentNode(); parent != null; child = parent, parent = parent.getParentNode()) {
+            BalancedBinarySearchTreeNode<T> sibling = parent.getLeftNode() == child ? parent.getRightNode() : parent.getLeftNode();
+            int nodes = childNodes + 1 + this.nodesIn(sibling);
+            if (3L * childNodes > 2L * nodes) {
+                BalancedBinarySearchTreeNode<T> above = parent.getParentNode();
+                boolean isLeft = above != null && above.getLeftNode() == parent;
+                BalancedBinarySearchTreeNode<T> rebuilt = this.link(this.nodesInOrder(parent, nodes), 0, nodes - 1);
+                rebuilt.setParentNode(above);
+                if (above == null) {
+                    this.root = rebuilt;
+                } else if (isLeft) {
+                    above.setLeftNode(rebuilt);
+                } else {
+                    above.setRightNode(rebuilt);
+                }
+                this.refresh(above);
+                break;
+            }
+            childNodes = nodes;
+        }
+        if (height(this.root) > deferredHeightLimit(this.deferredPeak)) {
+            this.rebuild();
+        }
     }
     
     /**
-     * Function to get the max height of the left and right nodes
-     * @param lhs (Left Hand Side)
-     * @param rhs (Right Hand Side)
-     * @return Either lhs or rhs, whichever is larger; default to rhs on tie
+     * @param node
+     * @return number of nodes in the subtree of node, counted in O(nodes) without recursion
      */
-    private int max(int lhs, int rhs) {
-        return lhs > rhs ? lhs : rhs;
-    }
-    
-    public int countNodes() {
-        return countNodes(this.root);
-    }
-    private int countNodes(BalancedBinarySearchTreeNode<T> node) {
-        if (node == null)
+    private int nodesIn(BalancedBinarySearchTreeNode<T> node) {
+        if (node == null) {
             return 0;
-        else {
-            int n = 1;
-            n += countNodes(node.getLeftNode());
-            n += countNodes(node.getRightNode());
-            return n;
         }
-    }
-    
-    public boolean contains(T data) {
-        return search(data) != null;
-    }
-    public T search(T data) {
-        BalancedBinarySearchTreeNode<T> node = this.searchForNode(data);
-        return node != null ? node.getData() : null;
-    }
-    private BalancedBinarySearchTreeNode<T> searchForNode(T data) {
-        BalancedBinarySearchTreeNode<T> node = this.root;
-        while (node != null) {
-            T nodeData = node.getData();
-            if (this.comparator.compare(data, nodeData) < 0) {
-                node = node.getLeftNode();
-            } else if (this.comparator.compare(data, nodeData) > 0) {
-                node = node.getRightNode();
-            } else {
-                break;
-            }
+        BalancedBinarySearchTreeNode<T> last = this.getRightmostNode(node);
+        int count = 1;
+        for (BalancedBinarySearchTreeNode<T> current = this.getLeftmostNode(node); current != last; current = this.successor(current)) {
+            count++;
         }
-        return node;
+        return count;
     }
     
     /**
-     * Function to retrieve the data from the elements in the tree through an in-order traversal
-     * @return LinkedList of the data of all elements in the tree, in order
-     */
-    public List<T> inorder() {
-        List<T> sorted = new LinkedList<T>();
-        inorder(this.root, sorted);
-        return sorted;
-    }
-    /**
-     * Recursively walk the tree to generate an in-order traversal of tree
      * @param node
-     * @param sorted data
+     * @param nodes number of nodes in the subtree of node
+     * @return the nodes of the subtree, in order
      */
-    private void inorder(BalancedBinarySearchTreeNode<T> node, List<T> sorted) {
-        if (node != null) {
-            inorder(node.getLeftNode(), sorted);
-            sorted.add(node.getData());
-            inorder(node.getRightNode(), sorted);
+    private BalancedBinarySearchTreeNode<T>[] nodesInOrder(BalancedBinarySearchTreeNode<T> node, int nodes) {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BalancedBinarySearchTreeNode<T>[] ordered = new BalancedBinarySearchTreeNode[nodes];
+        BalancedBinarySearchTreeNode<T> current = this.getLeftmostNode(node);
+        for (int i = 0; i < nodes; i++) {
+            ordered[i] = current;
+            current = this.successor(current);
         }
+        return ordered;
     }
     
     /**
-     * Function to retrieve the height of the elements in the tree through an in-order traversal
-     * @return LinkedList of the height of all elements in the tree, in order by data
+     * @param nodes
+     * @return greatest depth a DEFERRED tree of this many nodes allows before it rebuilds
      */
-    public List<Integer> inorderHeight() {
-        List<Integer> sorted = new LinkedList<Integer>();
-        inorderHeight(this.root, sorted);
-        return sorted;
+    private static int deferredHeightLimit(int nodes) {
+        return nodes <= 1 ? 0 : (int) (Math.log(nodes) / LOG_DEFERRED_BASE);
     }
+    
     /**
-     * Recursively walk the tree to generate an in-order traversal of tree
-     * @param node
-     * @param sorted heights by data
+     * Recompute the heights and subtree sizes from a node up to the root, and reset the root
+     * @param node may be null, for nothing to do
      */
-    private void inorderHeight(BalancedBinarySearchTreeNode<T> node, List<Integer> sorted) {
-        if (node != null) {
-            inorderHeight(node.getLeftNode(), sorted);
-            sorted.add(node.getHeight());
-            inorderHeight(node.getRightNode(), sorted);
+    private void refresh(BalancedBinarySearchTreeNode<T> node) {
+        while (node != null) {
+            node.setHeight(max(height(node.getLeftNode()), height(node.getRightNode())) + 1);
+            node.setSize(size(node.getLeftNode()) + size(node.getRightNode()) + node.getCount());
+            if (!node.hasParent()) {
+                this.root = node;
+            }
+            node = node.getParentNode();
         }
     }
     
-    // Convenience Methods
     /**
-     * @return true if the BalanceBinarySearchTree is empty
+     * Colour a tree just linked perfectly balanced so it meets the red-black rules, and start a
+     *   DEFERRED tree's count of growth afresh. In such a tree every empty link is on one of the
+     *   last two levels, so colouring only the deepest level red gives every path the same number
+     *   of black nodes.
      */
-    public boolean isEmpty() {
-        return this.root == null;
+    private void relinked() {
+        if (this.balancing == BalancingPolicy.RED_BLACK) {
+            colourLevels(this.root, 0, height(this.root));
+        }
+        this.deferredPeak = this.size();
     }
     
+    private static void colourLevels(BalancedBinarySearchTreeNode<?> node, int depth, int redDepth) {
+        if (node == null) {
+            return;
+        }
+        node.setRed(depth == redDepth && depth > 0);
+        colourLevels(node.getLeftNode(), depth + 1, redDepth);
+        colourLevels(node.getRightNode(), depth + 1, redDepth);
+    }
+
+    // Bulk Methods
     /**
-     * Clears the BalanceBinarySearchTree of all its members
+     * Build a perfectly balanced tree from data already in ascending order, in O(n) and
+     *   without a single comparison-driven descent or rotation
+     * @param comparator
+     * @param sorted data in strictly ascending order
+     * @return the new tree
+     * @throws IllegalArgumentException if sorted is not strictly ascending
      */
-    public void clear() {
-        this.root = null;
+    public static <T> BalancedBinarySearchTree<T> fromSorted(Comparator<T> comparator, T[] sorted) {
+        BalancedBinarySearchTree<T> tree = new BalancedBinarySearchTree<T>(comparator);
+        tree.buildFromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+        return tree;
     }
     
     /**
-     * @return the leftmost node in the binary tree
+     * Build a perfectly balanced tree from data already in ascending order, in O(n)
+     * @param comparator
+     * @param sorted data in strictly ascending order
+     * @return the new tree
+     * @throws IllegalArgumentException if sorted is not strictly ascending
+     */
+    public static <T> BalancedBinarySearchTree<T> fromSorted(Comparator<T> comparator, Iterator<? extends T> sorted) {
+        // The size has to be known up front to shape the tree, so gather the data first
+        List<T> data = new ArrayList<T>();
+        while (sorted.hasNext()) {
+            data.add(sorted.next());
+        }
+        BalancedBinarySearchTree<T> tree = new BalancedBinarySearchTree<T>(comparator);
+        tree.buildFromSorted(data.iterator(), data.size());
+        return tree;
+    }
+    
+    /**
+     * Insert every element of batch. A batch that is large compared to the tree is sorted,
+     *   merged with the tree in order and rebuilt in O(n + k log k); a small one is inserted
+     *   one element at a time in O(k log n).
+     * @param batch
+     * @return true if any element was added to the tree
+     */
+    public boolean insertAll(Collection<? extends T> batch) {
+        int previousSize = this.size();
+        long n = previousSize;
+        long k = batch.size();
+    
+        // Rebuilding touches all n + k elements once; inserting walks log(n + k) levels k times
+        if (k * log2(n + k) <= n + k) {
+            for (T data : batch) {
+                this.insert(data);
+            }
+            return this.size() != previousSize;
+        }
+        // Only live nodes are merged, and a multiset holds fewer of them than elements
+        this.compact();
+        long linked = this.nodeCount();
+        // The merge holds every node in one array, whose length must fit in an int
+        if (linked + k > MAX_MERGE_LENGTH) {
+            throw new IllegalStateException("Cannot merge " + k + " elements into a tree of " + linked
+                    + " nodes: the merge is limited to " + MAX_MERGE_LENGTH + " nodes");
+        }
+    
+        @SuppressWarnings("unchecked")
+        T[] sortedBatch = (T[]) batch.toArray();
+        Arrays.sort(sortedBatch, this.comparator);
+    
+        // Merge the existing nodes with new nodes for the batch, keeping existing data on ties
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BalancedBinarySearchTreeNode<T>[] merged = new BalancedBinarySearchTreeNode[(int) (linked + k)];
+        int count = 0;
+        int i = 0;
+        BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root);
+        while (node != null || i < sortedBatch.length) {
+            int compare;
+            if (node == null) {
+                compare = 1;
+            } else if (i == sortedBatch.length) {
+                compare = -1;
+            } else {
+                compare = this.comparator.compare(node.getData(), sortedBatch[i]);
+            }
+    
+            if (compare <= 0) {
+                merged[count++] = node;
+                if (compare == 0) {
+                    if (this.multiset) {
+                        node.setCount(node.getCount() + 1);
+                    }
+                    i++;
+                }
+                node = this.successor(node);
+            } else {
+                // Skip repeats within the batch itself, or count them in a multiset
+                if (count == 0 || this.comparator.compare(merged[count - 1].getData(), sortedBatch[i]) != 0) {
+                    merged[count++] = this.createNode(sortedBatch[i], null);
+                } else if (this.multiset) {
+                    merged[count - 1].setCount(merged[count - 1].getCount() + 1);
+                }
+                i++;
+            }
+        }
+    
+        this.modCount++;
+        this.finger = null;
+        this.nodes = count;
+        this.root = this.link(merged, 0, count - 1);
+        if (this.root != null) {
+            this.root.setParentNode(null);
+        }
+        this.relinked();
+        if (this.stats != null) {
+            int added = this.size() - previousSize;
+            this.stats.recordBulkInsert(added, (int) k - added);
+        }
+        return this.size() != previousSize;
+    }
+    
+    /**
+     * Copy the tree into a read-only FrozenBalancedBinarySearchTree, whose single array
+     *   layout answers lookups without chasing node pointers. Takes O(n); changes made to this
+     *   tree afterwards are not seen by the frozen copy. A multiset's copy keeps every occurrence.
+     * @return the frozen copy
+     */
+    public FrozenBalancedBinarySearchTree<T> freeze() {
+        return new FrozenBalancedBinarySearchTree<T>(this.comparator,
+                new RangeIterator(this.getLeftmostNode(), null), this.size());
+    }
+    
+    // Set Operations
+    /**
+     * Move every element of greater, all of which must be greater than every element of this
+     *   tree, into this tree in O(log n); greater is left empty. Joining a RELAXED tree into a
+     *   stricter one rebuilds the result in O(n) so it meets the stricter balance.
+     * @param greater
+     * @throws IllegalArgumentException if the trees overlap
+     */
+    public void join(BalancedBinarySearchTree<T> greater) {
+        if (greater == this || greater.isEmpty()) {
+            return;
+        }
+        this.compact();
+        greater.compact();
+        if (!this.isEmpty() && this.comparator.compare(this.getRightmostNode().getData(), greater.getLeftmostNode().getData()) >= 0) {
+            throw new IllegalArgumentException("Joined tree must hold only greater elements");
+        }
+        this.install(this.join(this.root, greater.root));
+        greater.clear();
+        this.adopt(greater);
+    }
+    
+    /**
+     * Move every element greater than or equal to data into a new tree in O(log n)
+     * @param data
+     * @return tree of the elements greater than or equal to data; this tree keeps the rest
+     */
+    public BalancedBinarySearchTree<T> split(T data) {
+        Split<T> split = new Split<T>();
+        this.compact();
+        this.split(this.root, data, split);
+        BalancedBinarySearchTree<T> greater = new BalancedBinarySearchTree<T>(this.comparator, this.multiset);
+        greater.balancing = this.balancing;
+        greater.install(split.middle != null ? this.join(null, split.middle, split.right) : split.right);
+        this.install(split.left);
+        // Both halves were joined along the way, so both may need their policy restored
+        greater.adopt(this);
+        this.adopt(this);
+        return greater;
+    }
+    
+    /**
+     * Add every element of other to this tree. The trees are merged by splitting and joining
+     *   subtrees, in O(m log(n / m + 1)) work for m the smaller size, and large subtrees are
+     *   merged in parallel on the common ForkJoinPool. Where both trees hold an element, the one
+     *   already in this tree is kept. Other is left empty, since its nodes move into this tree;
+     *   if other is RELAXED and this tree is not, the result is rebuilt in O(n).
+     * @param other tree ordered by the same comparator
+     * @return true if any element was added to this tree
+     */
+    public boolean union(BalancedBinarySearchTree<T> other) {
+        return this.combine(other, SetOperation.UNION);
+    }
+    
+    /**
+     * Remove every element of this tree that other does not hold, with the same cost and
+     *   parallelism as union; other is left empty
+     * @param other tree ordered by the same comparator
+     * @return true if any element was removed from this tree
+     */
+    public boolean intersect(BalancedBinarySearchTree<T> other) {
+        return this.combine(other, SetOperation.INTERSECT);
+    }
+    
+    /**
+     * Remove every element of this tree that other holds, with the same cost and parallelism as
+     *   union; other is left empty
+     * @param other tree ordered by the same comparator
+     * @return true if any element was removed from this tree
+     */
+    public boolean difference(BalancedBinarySearchTree<T> other) {
+        return this.combine(other, SetOperation.DIFFERENCE);
+    }
+    
+    private boolean combine(BalancedBinarySearchTree<T> other, SetOperation operation) {
+        int previousSize = this.size();
+        int otherSize = other.size();
+        if (other == this) {
+            if (operation == SetOperation.DIFFERENCE) {
+                this.clear();
+            }
+        } else {
+            this.compact();
+            other.compact();
+            BalancedBinarySearchTreeNode<T> otherRoot = other.root;
+            other.clear();
+            this.install(ForkJoinPool.commonPool().invoke(new SetTask(operation, this.root, otherRoot)));
+            this.adopt(other);
+        }
+        if (this.stats != null) {
+            this.recordCombine(operation, this.size() - previousSize, otherSize);
+        }
+        return this.size() != previousSize;
+    }
+    
+    /**
+     * Count a set operation's outcome in the stats: elements of other that were added or already
+     *   present for a union, and elements removed, with those of other that were missing, otherwise
+     * @param operation
+     * @param change change in this tree's size
+     * @param otherSize size of the other tree before the operation
+     */
+    private void recordCombine(SetOperation operation, int change, int otherSize) {
+        switch (operation) {
+        case UNION:
+            this.stats.recordBulkInsert(change, otherSize - change);
+            break;
+        case INTERSECT:
+            this.stats.recordBulkDelete(-change, 0);
+            break;
+        default:
+            this.stats.recordBulkDelete(-change, otherSize + change);
+        }
+    }
+    
+    /**
+     * Restore this tree's balance after taking in subtrees of other whole. Subtrees of a tree
+     *   that tolerated more imbalance than this one may break this tree's bound, so the tree is
+     *   rebuilt in O(n); otherwise nothing is done. A RED_BLACK tree is always rebuilt, since
+     *   joins do not keep colours, and a DEFERRED one only once it is deeper than its bound.
+     * @param other
+     */
+    private void adopt(BalancedBinarySearchTree<T> other) {
+        if (this.balancing == BalancingPolicy.RED_BLACK || other.tolerance() > this.tolerance()) {
+            this.rebuild();
+        } else if (this.balancing == BalancingPolicy.DEFERRED) {
+            this.deferredPeak = this.size();
+            if (height(this.root) > deferredHeightLimit(this.deferredPeak)) {
+                this.rebuild();
+            }
+        }
+    }
+    
+    /**
+     * Make node the root of the tree
+     * @param node
+     */
+    private void install(BalancedBinarySearchTreeNode<T> node) {
+        if (node != null) {
+            node.setParentNode(null);
+        }
+        this.root = node;
+        this.finger = null;
+        // Which nodes ended up in which tree is not known without counting them
+        this.nodes = -1;
+        this.modCount++;
+    }
+    
+    /**
+     * Join two subtrees, every element of left less than every element of right
+     * @param left
+     * @param right
+     * @return root of the joined subtree; its parent left for the caller
+     */
+    private BalancedBinarySearchTreeNode<T> join(BalancedBinarySearchTreeNode<T> left, BalancedBinarySearchTreeNode<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        // Take the largest node of left out to join the two around
+        Split<T> split = new Split<T>();
+        BalancedBinarySearchTreeNode<T> rest = this.removeRightmost(left, split);
+        return this.join(rest, split.middle, right);
+    }
+    
+    /**
+     * Join two subtrees around a middle node, every element of left less than middle and every
+     *   element of right greater. Walks down the spine of the taller subtree to where the shorter
+     *   one fits within the policy's tolerance, so it takes O(|height(left) - height(right)|).
+     * @param left
+     * @param middle
+     * @param right
+     * @return root of the joined subtree; its parent left for the caller
+     */
+    private BalancedBinarySearchTreeNode<T> join(BalancedBinarySearchTreeNode<T> left, BalancedBinarySearchTreeNode<T> middle, BalancedBinarySearchTreeNode<T> right) {
+        int tolerance = this.joinTolerance();
+        if (height(left) > height(right) + tolerance) {
+            BalancedBinarySearchTreeNode<T> leftLeft = left.getLeftNode();
+            return this.rebalance(left, leftLeft, this.join(left.getRightNode(), middle, right));
+        }
+        if (height(right) > height(left) + tolerance) {
+            BalancedBinarySearchTreeNode<T> rightRight = right.getRightNode();
+            return this.rebalance(right, this.join(left, middle, right.getLeftNode()), rightRight);
+        }
+        return this.attach(middle, left, right);
+    }
+    
+    /**
+     * Split a subtree into the elements less than data, the node equal to data, and the
+     *   elements greater than data, in O(log n)
+     * @param node
+     * @param data
+     * @param split receives the three parts
+     */
+    private void split(BalancedBinarySearchTreeNode<T> node, T data, Split<T> split) {
+        if (node == null) {
+            split.left = null;
+            split.middle = null;
+            split.right = null;
+            return;
+        }
+        BalancedBinarySearchTreeNode<T> left = node.getLeftNode();
+        BalancedBinarySearchTreeNode<T> right = node.getRightNode();
+        int compare = this.comparator.compare(data, node.getData());
+        if (compare < 0) {
+            this.split(left, data, split);
+            split.right = this.join(split.right, node, right);
+        } else if (compare > 0) {
+            this.split(right, data, split);
+            split.left = this.join(left, node, split.left);
+        } else {
+            split.left = left;
+            split.middle = node;
+            split.right = right;
+        }
+    }
+    
+    /**
+     * @param node
+     * @param split receives the removed rightmost node as its middle
+     * @return root of the subtree without its rightmost node
+     */
+    private BalancedBinarySearchTreeNode<T> removeRightmost(BalancedBinarySearchTreeNode<T> node, Split<T> split) {
+        BalancedBinarySearchTreeNode<T> left = node.getLeftNode();
+        if (!node.hasRightNode()) {
+            split.middle = node;
+            return left;
+        }
+        return this.rebalance(node, left, this.removeRightmost(node.getRightNode(), split));
+    }
+    
+    /**
+     * Attach two subtrees whose heights differ by at most one more than the policy's tolerance
+     *   to node, rotating if they differ by more than the tolerance
+     * @param node
+     * @param left
+     * @param right
+     * @return root of the balanced subtree; its parent left for the caller
+     */
+    private BalancedBinarySearchTreeNode<T> rebalance(BalancedBinarySearchTreeNode<T> node, BalancedBinarySearchTreeNode<T> left, BalancedBinarySearchTreeNode<T> right) {
+        int balance = height(left) - height(right);
+        int tolerance = this.joinTolerance();
+        if (balance > tolerance) {
+            BalancedBinarySearchTreeNode<T> leftLeft = left.getLeftNode();
+            BalancedBinarySearchTreeNode<T> leftRight = left.getRightNode();
+            if (this.stats != null) {
+                this.stats.recordRotation(height(leftRight) > height(leftLeft));
+            }
+            if (height(leftRight) > height(leftLeft)) {
+                // Double rotation with left child
+                BalancedBinarySearchTreeNode<T> pivotLeft = leftRight.getLeftNode();
+                BalancedBinarySearchTreeNode<T> pivotRight = leftRight.getRightNode();
+                return this.attach(leftRight, this.attach(left, leftLeft, pivotLeft), this.attach(node, pivotRight, right));
+            }
+            // Rotation with left child
+            return this.attach(left, leftLeft, this.attach(node, leftRight, right));
+        } else if (balance < -tolerance) {
+            BalancedBinarySearchTreeNode<T> rightLeft = right.getLeftNode();
+            BalancedBinarySearchTreeNode<T> rightRight = right.getRightNode();
+            if (this.stats != null) {
+                this.stats.recordRotation(height(rightLeft) > height(rightRight));
+            }
+            if (height(rightLeft) > height(rightRight)) {
+                // Double rotation with right child
+                BalancedBinarySearchTreeNode<T> pivotLeft = rightLeft.getLeftNode();
+                BalancedBinarySearchTreeNode<T> pivotRight = rightLeft.getRightNode();
+                return this.attach(rightLeft, this.attach(node, left, pivotLeft), this.attach(right, pivotRight, rightRight));
+            }
+            // Rotation with right child
+            return this.attach(right, this.attach(node, left, rightLeft), rightRight);
+        }
+        return this.attach(node, left, right);
+    }
+    
+    /**
+     * The parts a subtree is split into
+     */
+    private static final class Split<T> {
+        BalancedBinarySearchTreeNode<T> left, middle, right;
+    }
+    
+    private enum SetOperation { UNION, INTERSECT, DIFFERENCE }
+    
+    /**
+     * How insert and delete restore balance on the way back up the tree
+     */
+    public enum BalancingPolicy {
+        /** AVL: rebalance and recompute heights all the way to the root after every change */
+        STRICT,
+        /**
+         * AVL, but stop rebalancing at the first subtree whose height did not change, since
+         *   nothing above it can have become unbalanced; only subtree sizes are updated from there
+         */
+        EARLY_STOP,
+        /**
+         * Let sibling heights differ by up to 2 before rotating, and stop early as EARLY_STOP
+         *   does. Far fewer rotations, for a tree up to about a quarter taller.
+         */
+        RELAXED,
+        /**
+         * Red-black: colour nodes so no red node has a red child and every path down holds as
+         *   many black nodes. At most two rotations per insert and three per delete, for a tree
+         *   up to twice as tall as a perfectly balanced one.
+         */
+        RED_BLACK,
+        /**
+         * Never rotate; once an insert lands deeper than log base 1.5 of the tree's size, rebuild
+         *   the subtree of the lowest ancestor it unbalanced, and rebuild the whole tree once a
+         *   third of it has been deleted. Rebuilding costs O(log n) amortized per change.
+         */
+        DEFERRED
+    }
+    
+    /**
+     * One step of a set operation: split the second subtree around the first one's root, combine
+     *   the two halves, in parallel when they are large, and join the results. The halves hold
+     *   disjoint nodes, so the tasks never touch the same node.
+     */
+    private final class SetTask extends RecursiveTask<BalancedBinarySearchTreeNode<T>> {
+        private static final long serialVersionUID = 1L;
+    
+        private final SetOperation operation;
+        private final BalancedBinarySearchTreeNode<T> first, second;
+    
+        SetTask(SetOperation operation, BalancedBinarySearchTreeNode<T> first, BalancedBinarySearchTreeNode<T> second) {
+            this.operation = operation;
+            this.first = first;
+            this.second = second;
+        }
+    
+        @Override
+        protected BalancedBinarySearchTreeNode<T> compute() {
+            return this.combine(this.first, this.second);
+        }
+    
+        private BalancedBinarySearchTreeNode<T> combine(BalancedBinarySearchTreeNode<T> first, BalancedBinarySearchTreeNode<T> second) {
+            if (first == null) {
+                return this.operation == SetOperation.UNION ? second : null;
+            }
+            if (second == null) {
+                return this.operation == SetOperation.INTERSECT ? null : first;
+            }
+    
+            // Difference splits the tree being trimmed, so its survivors keep their nodes
+            BalancedBinarySearchTreeNode<T> pivot = this.operation == SetOperation.DIFFERENCE ? second : first;
+            BalancedBinarySearchTreeNode<T> divided = this.operation == SetOperation.DIFFERENCE ? first : second;
+            BalancedBinarySearchTreeNode<T> pivotLeft = pivot.getLeftNode();
+            BalancedBinarySearchTreeNode<T> pivotRight = pivot.getRightNode();
+            Split<T> split = new Split<T>();
+            BalancedBinarySearchTree.this.split(divided, pivot.getData(), split);
+            BalancedBinarySearchTreeNode<T> matched = split.middle;
+    
+            BalancedBinarySearchTreeNode<T> left, right;
+            if (size(first) + size(second) >= PARALLEL_THRESHOLD) {
+                SetTask leftTask = this.operation == SetOperation.DIFFERENCE
+                        ? new SetTask(this.operation, split.left, pivotLeft)
+                        : new SetTask(this.operation, pivotLeft, split.left);
+                leftTask.fork();
+                right = this.operation == SetOperation.DIFFERENCE
+                        ? this.combine(split.right, pivotRight)
+                        : this.combine(pivotRight, split.right);
+                left = leftTask.join();
+            } else if (this.operation == SetOperation.DIFFERENCE) {
+                left = this.combine(split.left, pivotLeft);
+                right = this.combine(split.right, pivotRight);
+            } else {
+                left = this.combine(pivotLeft, split.left);
+                right = this.combine(pivotRight, split.right);
+            }
+    
+            // A multiset adds, keeps the lesser of, or subtracts the occurrences of matched elements
+            switch (this.operation) {
+            case UNION:
+                if (multiset && matched != null) {
+                    pivot.setCount(pivot.getCount() + matched.getCount());
+                }
+                return BalancedBinarySearchTree.this.join(left, pivot, right);
+            case INTERSECT:
+                if (matched == null) {
+                    return BalancedBinarySearchTree.this.join(left, right);
+                }
+                if (multiset) {
+                    pivot.setCount(Math.min(pivot.getCount(), matched.getCount()));
+                }
+                return BalancedBinarySearchTree.this.join(left, pivot, right);
+            default:
+                if (multiset && matched != null && matched.getCount() > pivot.getCount()) {
+                    matched.setCount(matched.getCount() - pivot.getCount());
+                    return BalancedBinarySearchTree.this.join(left, matched, right);
+                }
+                return BalancedBinarySearchTree.this.join(left, right);
+            }
+        }
+    }
+    
+    /**
+     * Replace the contents of the tree with size elements taken in order from sorted
+     * @param sorted
+     * @param size
+     */
+    void buildFromSorted(Iterator<? extends T> sorted, int size) {
+        this.clear();
+        SortedSource<T> source = new SortedSource<T>(sorted, this.comparator);
+        this.root = this.buildFromSorted(source, size);
+        this.nodes = -1;
+        if (this.root != null) {
+            this.root.setParentNode(null);
+        }
+        this.relinked();
+        if (this.stats != null) {
+            // Counted input can hold more elements than nodes
+            this.stats.recordBulkInsert(this.size(), 0);
+        }
+    }
+    
+    /**
+     * Build a subtree of size nodes, consuming its data from source in order
+     * @param source
+     * @param size
+     * @return root of the subtree; its heights set and its parent left for the caller
+     */
+    private BalancedBinarySearchTreeNode<T> buildFromSorted(SortedSource<T> source, int size) {
+        if (size == 0) {
+            return null;
+        }
+        // Left and right subtrees differ in size by at most one, so in height by at most one
+        int leftSize = (size - 1) / 2;
+        BalancedBinarySearchTreeNode<T> left = this.buildFromSorted(source, leftSize);
+        BalancedBinarySearchTreeNode<T> node = this.createNode(source.next(), null);
+        node.setCount(source.count());
+        BalancedBinarySearchTreeNode<T> right = this.buildFromSorted(source, size - 1 - leftSize);
+        return this.attach(node, left, right);
+    }
+    
+    /**
+     * Link already ordered nodes lo..hi into a perfectly balanced subtree
+     * @param nodes
+     * @param lo
+     * @param hi
+     * @return root of the subtree; its heights set and its parent left for the caller
+     */
+    private BalancedBinarySearchTreeNode<T> link(BalancedBinarySearchTreeNode<T>[] nodes, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        BalancedBinarySearchTreeNode<T> left = this.link(nodes, lo, mid - 1);
+        BalancedBinarySearchTreeNode<T> right = this.link(nodes, mid + 1, hi);
+        return this.attach(nodes[mid], left, right);
+    }
+    
+    private BalancedBinarySearchTreeNode<T> attach(BalancedBinarySearchTreeNode<T> node, BalancedBinarySearchTreeNode<T> left, BalancedBinarySearchTreeNode<T> right) {
+        node.setLeftNode(left);
+        node.setRightNode(right);
+        if (left != null) {
+            left.setParentNode(node);
+        }
+        if (right != null) {
+            right.setParentNode(node);
+        }
+        node.setHeight(max(height(left), height(right)) + 1);
+        node.setSize(size(left) + size(right) + node.getCount());
+        return node;
+    }
+    
+    private static int log2(long n) {
+        return 64 - Long.numberOfLeadingZeros(n);
+    }
+    
+    /**
+     * Iterator over input that must be strictly ascending, checked as it is consumed
+     */
+    private static final class SortedSource<T> {
+        private final Iterator<? extends T> data;
+        private final Comparator<T> comparator;
+        private T previous;
+        private boolean started;
+    
+        SortedSource(Iterator<? extends T> data, Comparator<T> comparator) {
+            this.data = data;
+            this.comparator = comparator;
+        }
+    
+        T next() {
+            if (!this.data.hasNext()) {
+                throw new IllegalArgumentException("Fewer elements than the declared size");
+            }
+            T next = this.data.next();
+            if (this.started && this.comparator.compare(this.previous, next) >= 0) {
+                throw new IllegalArgumentException("Input is not strictly ascending at " + next);
+            }
+            this.previous = next;
+            this.started = true;
+            return next;
+        }
+    
+        /**
+         * @return occurrences of the element last returned by next()
+         */
+        int count() {
+            return this.data instanceof CountedIterator ? ((CountedIterator<?>) this.data).count() : 1;
+        }
+    }
+    
+    /**
+     * Sorted input that also says how many times each element occurs, for rebuilding a multiset
+     */
+    interface CountedIterator<T> extends Iterator<T> {
+        /**
+         * @return occurrences of the element last returned by next(); at least 1
+         */
+        int count();
+    }
+    
+    /**
+     * Function to work up the tree from specified node, balancing it and adjusting heights
+     *   and subtree sizes. Every node visited must still hold the height its place in the
+     *   tree had before the change.
+     * @param node
+     */
+    private void balance(BalancedBinarySearchTreeNode<T> node) {
+        int tolerance = this.tolerance();
+        boolean earlyStop = this.balancing != BalancingPolicy.STRICT;
+        while (node != null) {
+            int previousHeight = node.getHeight();
+            
+            // If the left subtree is taller than the right subtree by more than allowed
+            if (height( node.getLeftNode() ) - height( node.getRightNode() ) > tolerance) {
+                boolean isDouble = height( node.getLeftNode().getRightNode() ) > height( node.getLeftNode().getLeftNode() );
+                if (isDouble) {
+                    node = doubleRotateWithLeftChild( node );
+                } else {
+                    node = rotateWithLeftChild( node );
+                }
+                if (this.stats != null) {
+                    this.stats.recordRotation(isDouble);
+                }
+            }
+            // If the right subtree is taller than the left subtree by more than allowed
+            else if (height( node.getRightNode() ) - height( node.getLeftNode() ) > tolerance) {
+                boolean isDouble = height( node.getRightNode().getLeftNode() ) > height( node.getRightNode().getRightNode() );
+                if (isDouble) {
+                    node = doubleRotateWithRightChild( node );
+                } else {
+                    node = rotateWithRightChild( node );
+                }
+                if (this.stats != null) {
+                    this.stats.recordRotation(isDouble);
+                }
+            }
+            
+            // Set the height of the current node to be one more than the height of its tallest child
+            node.setHeight(max(height(node.getLeftNode()), height(node.getRightNode())) + 1);
+            node.setSize(size(node.getLeftNode()) + size(node.getRightNode()) + node.getCount());
+            
+            // A subtree as tall as before leaves the heights and balance above it as they were
+            if (earlyStop && node.getHeight() == previousHeight) {
+                this.updateSizes(node);
+                return;
+            }
+            
+            if(node.hasParent()){
+                node = node.getParentNode();
+            } else {
+                this.root = node;
+                break;
+            }
+        }
+        return;
+    }
+    
+    /**
+     * Recount the subtree sizes above a node whose own subtree is up to date, and reset the
+     *   root, which a delete may have replaced
+     * @param node
+     */
+    private void updateSizes(BalancedBinarySearchTreeNode<T> node) {
+        while (node.hasParent()) {
+            node = node.getParentNode();
+            node.setSize(size(node.getLeftNode()) + size(node.getRightNode()) + node.getCount());
+        }
+        this.root = node;
+    }
+    
+    /**
+     * Helper function to easily copy the parent references from one node to another; 
+     *   parents are also updated to refer to the new child
+     * @param previousNode
+     * @param newNode
+     */
+    private void swapParentsChild(BalancedBinarySearchTreeNode<T> previousNode, BalancedBinarySearchTreeNode<T> newNode) {
+        if (previousNode.hasParent()) {
+            // Which side previousNode hangs from tells where newNode goes, without comparing data
+            if (previousNode.getParentNode().getLeftNode() == previousNode) {
+                previousNode.getParentNode().setLeftNode(newNode);
+            } else {
+                previousNode.getParentNode().setRightNode(newNode);
+            }
+        }
+        if (newNode != null) {
+            newNode.setParentNode(previousNode.getParentNode());
+        }
+    }
+    
+    /**
+     * Rotate binary tree node with left child
+     * <br><pre>
+     *      3           
+     *     /        2   
+     *    2   ==>  / \  
+     *   /        1   3 
+     *  1               
+     * </pre>
+     * @param oldParent (3)
+     * @return newParent (2)
+     */
+    private BalancedBinarySearchTreeNode<T> rotateWithLeftChild(BalancedBinarySearchTreeNode<T> oldParent) {
+        BalancedBinarySearchTreeNode<T> newParent = oldParent.getLeftNode();
+        oldParent.setLeftNode(newParent.getRightNode());
+        if (oldParent.hasLeftNode()) {
+            oldParent.getLeftNode().setParentNode(oldParent);
+        }
+        newParent.setRightNode(oldParent);
+        
+        this.swapParentsChild(oldParent, newParent);
+        oldParent.setParentNode(newParent);
+        
+        oldParent.setHeight(max( height(oldParent.getLeftNode()), height(oldParent.getRightNode()) ) + 1);
+        newParent.setHeight(max( height(newParent.getLeftNode()), oldParent.getHeight() ) + 1);
+        oldParent.setSize(size(oldParent.getLeftNode()) + size(oldParent.getRightNode()) + oldParent.getCount());
+        newParent.setSize(size(newParent.getLeftNode()) + oldParent.getSize() + newParent.getCount());
+        return newParent;
+    }
+
+    /**
+     * Rotate binary tree node with right child
+     * <br><pre>
+     *  1               
+     *   \          2   
+     *    2   ==>  / \  
+     *     \      1   3 
+     *      3           
+     * </pre>
+     * @param oldParent (1)
+     * @return newParent (2)
+     */
+    private BalancedBinarySearchTreeNode<T> rotateWithRightChild(BalancedBinarySearchTreeNode<T> oldParent) {
+        BalancedBinarySearchTreeNode<T> newParent = oldParent.getRightNode();
+        oldParent.setRightNode(newParent.getLeftNode());
+        if (oldParent.hasRightNode()) {
+            oldParent.getRightNode().setParentNode(oldParent);
+        }
+        newParent.setLeftNode(oldParent);
+        
+        this.swapParentsChild(oldParent, newParent);
+        oldParent.setParentNode(newParent);
+        
+        oldParent.setHeight(max( height(oldParent.getLeftNode()), height(oldParent.getRightNode()) ) + 1);
+        newParent.setHeight(max( height(newParent.getRightNode()), oldParent.getHeight() ) + 1);
+        oldParent.setSize(size(oldParent.getLeftNode()) + size(oldParent.getRightNode()) + oldParent.getCount());
+        newParent.setSize(size(newParent.getRightNode()) + oldParent.getSize() + newParent.getCount());
+        return newParent;
+    }
+    
+    /**
+     * Double rotate binary tree node: first left child
+     * with its right child, then parent with new left child
+     * <br><pre>
+     *    3         3           
+     *   /         /        2   
+     *  1   ==>   2   ==>  / \  
+     *   \       /        1   3 
+     *    2     1               
+     * </pre>
+     * @param parent (3)
+     * @return newParent (2)
+     */
+    private BalancedBinarySearchTreeNode<T> doubleRotateWithLeftChild(BalancedBinarySearchTreeNode<T> parent) {
+        parent.setLeftNode(rotateWithRightChild( parent.getLeftNode() ));
+        return rotateWithLeftChild( parent );
+    }
+    
+    /**
+     * Double rotate binary tree node: first right child
+     * with its left child, then parent with new right child
+     * <br><pre>
+     *  1       1               
+     *   \       \          2   
+     *    3 ==>   2   ==>  / \  
+     *   /         \      1   3 
+     *  2           3           
+     * </pre>
+     * @param parent (1)
+     * @return newParent (2)
+     */
+    private BalancedBinarySearchTreeNode<T> doubleRotateWithRightChild(BalancedBinarySearchTreeNode<T> parent) {
+        parent.setRightNode(rotateWithLeftChild( parent.getRightNode() ));
+        return rotateWithRightChild( parent );
+    }
+    
+    /**
+     * Function to get the height of a node
+     * @param node
+     * @return height of node; -1 if null
+     */
+    public int height(BalancedBinarySearchTreeNode<T> node) {
+        return node == null ? -1 : node.getHeight();
+    }
+    
+    /**
+     * @return height of the tree; -1 if empty
+     */
+    public int height() {
+        return height(this.root);
+    }
+    
+    /**
+     * Function to get the max height of the left and right nodes
+     * @param lhs (Left Hand Side)
+     * @param rhs (Right Hand Side)
+     * @return Either lhs or rhs, whichever is larger; default to rhs on tie
+     */
+    private int max(int lhs, int rhs) {
+        return lhs > rhs ? lhs : rhs;
+    }
+    
+    /**
+     * Function to get the number of nodes in the subtree of a node
+     * @param node
+     * @return subtree size of node; 0 if null
+     */
+    private static int size(BalancedBinarySearchTreeNode<?> node) {
+        return node == null ? 0 : node.getSize();
+    }
+    
+    /**
+     * @return number of elements in the tree, in O(1)
+     */
+    public int size() {
+        return size(this.root);
+    }
+    
+    /**
+     * @return number of elements in the tree, in O(1)
+     */
+    public int countNodes() {
+        return this.size();
+    }
+    
+    // Order Statistics
+    /**
+     * @param data
+     * @return number of elements in the tree less than data
+     */
+    public int rank(T data) {
+        int rank = 0;
+        BalancedBinarySearchTreeNode<T> node = this.root;
+        while (node != null) {
+            int compare = this.comparator.compare(data, node.getData());
+            if (compare < 0) {
+                node = node.getLeftNode();
+            } else if (compare > 0) {
+                rank += size(node.getLeftNode()) + node.getCount();
+                node = node.getRightNode();
+            } else {
+                rank += size(node.getLeftNode());
+                break;
+            }
+        }
+        return rank;
+    }
+    
+    /**
+     * @param index
+     * @return the element with index elements less than it, i.e. the (index + 1)th smallest
+     * @throws IndexOutOfBoundsException if index is negative or not less than size()
+     */
+    public T select(int index) {
+        return this.selectNode(index).getData();
+    }
+    
+    private BalancedBinarySearchTreeNode<T> selectNode(int index) {
+        if (index < 0 || index >= this.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+        }
+        BalancedBinarySearchTreeNode<T> node = this.root;
+        while (true) {
+            int leftSize = size(node.getLeftNode());
+            if (index < leftSize) {
+                node = node.getLeftNode();
+            } else if (index >= leftSize + node.getCount()) {
+                index -= leftSize + node.getCount();
+                node = node.getRightNode();
+            } else {
+                return node;
+            }
+        }
+    }
+    
+    /**
+     * @param lo inclusive
+     * @param hi exclusive
+     * @return number of elements in the tree from lo up to but not including hi
+     */
+    public int countRange(T lo, T hi) {
+        if (this.comparator.compare(lo, hi) >= 0) {
+            return 0;
+        }
+        return this.rank(hi) - this.rank(lo);
+    }
+    
+    /**
+     * @param data
+     * @return number of occurrences of data; at most 1 unless the tree is a multiset
+     */
+    public int count(T data) {
+        long start = this.stats != null ? System.nanoTime() : 0L;
+        BalancedBinarySearchTreeNode<T> node = this.searchForNode(data);
+        if (this.stats != null) {
+            this.stats.recordSearch(node != null, System.nanoTime() - start);
+        }
+        return node != null ? node.getCount() : 0;
+    }
+    
+    /**
+     * @return true if equal data is counted rather than rejected
+     */
+    public boolean isMultiset() {
+        return this.multiset;
+    }
+    
+    public Comparator<T> getComparator() {
+        return this.comparator;
+    }
+    
+    public boolean contains(T data) {
+        return search(data) != null;
+    }
+    public T search(T data) {
+        long start = this.stats != null ? System.nanoTime() : 0L;
+        BalancedBinarySearchTreeNode<T> node = this.searchForNode(data);
+        if (this.stats != null) {
+            this.stats.recordSearch(node != null, System.nanoTime() - start);
+        }
+        return node != null ? node.getData() : null;
+    }
+    BalancedBinarySearchTreeNode<T> searchForNode(T data) {
+        BalancedBinarySearchTreeNode<T> node = this.startNode(data);
+        BalancedBinarySearchTreeNode<T> last = node;
+        int depth = 0;
+        while (node != null) {
+            int compare = this.comparator.compare(data, node.getData());
+            depth++;
+            last = node;
+            if (compare < 0) {
+                node = node.getLeftNode();
+            } else if (compare > 0) {
+                node = node.getRightNode();
+            } else {
+                break;
+            }
+        }
+        if (this.stats != null) {
+            this.stats.recordComparisons(depth);
+        }
+        // A miss still leaves the finger where data would go; reads only write it when asked to
+        if (this.fingerSearch) {
+            this.finger = last;
+        }
+        // A tombstone is found like any node, but holds nothing
+        return node != null && node.getCount() == 0 ? null : node;
+    }
+    
+    /**
+     * Find where a descent for data should start: the root, or under finger search the lowest
+     *   subtree above the finger whose range holds data. The climb compares data only with the
+     *   ancestors that bound the finger's subtree on data's side, so data d places from the
+     *   last element reached is found in O(log d) comparisons instead of O(log n).
+     * @param data
+     * @return node to descend from; null if the tree is empty
+     */
+    private BalancedBinarySearchTreeNode<T> startNode(T data) {
+        BalancedBinarySearchTreeNode<T> start = this.finger;
+        if (!this.fingerSearch || start == null) {
+            return this.root;
+        }
+        int compare = this.comparator.compare(data, start.getData());
+        int depth = 1;
+        if (compare != 0) {
+            // Data is already on the near side of start's far bound; look for its near bound
+            BalancedBinarySearchTreeNode<T> node = start;
+            BalancedBinarySearchTreeNode<T> parent = node.getParentNode();
+            while (parent != null) {
+                // Coming up from the side data lies on, the parent bounds the subtree there
+                if (compare < 0 ? parent.getRightNode() == node : parent.getLeftNode() == node) {
+                    int bound = this.comparator.compare(data, parent.getData());
+                    depth++;
+                    if (bound == 0) {
+                        start = parent;
+                        break;
+                    }
+                    // Data lies between the bound and start, so within start's subtree
+                    if (bound < 0 != compare < 0) {
+                        break;
+                    }
+                    // Data lies beyond the bound too, whose subtree holds start and reaches further
+                    start = parent;
+                }
+                node = parent;
+                parent = node.getParentNode();
+            }
+        }
+        if (this.stats != null) {
+            this.stats.recordComparisons(depth);
+        }
+        return start;
+    }
+    
+    // Traversal
+    // Every traversal walks the successor links from the leftmost node, so none of them
+    //   recurses or keeps a stack, however tall the tree
+    /**
+     * Function to retrieve the data from the elements in the tree through an in-order traversal
+     * @return ArrayList of the data of all elements in the tree, in order, sized up front
+     */
+    public List<T> inorder() {
+        List<T> sorted = new ArrayList<T>(this.size());
+        for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+            for (int i = 0; i < node.getCount(); i++) {
+                sorted.add(node.getData());
+            }
+        }
+        return sorted;
+    }
+    
+    /**
+     * Function to retrieve the height of the elements in the tree through an in-order traversal
+     * @return ArrayList of the height of all elements in the tree, in order by data
+     */
+    public List<Integer> inorderHeight() {
+        List<Integer> sorted = new ArrayList<Integer>(this.size());
+        for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+            if (node.getCount() > 0) {
+                sorted.add(node.getHeight());
+            }
+        }
+        return sorted;
+    }
+    
+    /**
+     * Pass every element to action in order, allocating nothing
+     * @param action
+     * @throws ConcurrentModificationException if action changes the tree
+     */
+    public void forEachInOrder(Consumer<? super T> action) {
+        int expectedModCount = this.modCount;
+        for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+            for (int i = 0; i < node.getCount(); i++) {
+                action.accept(node.getData());
+            }
+            if (this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+    
+    /**
+     * Same as forEachInOrder, which unlike the default needs no iterator
+     * @param action
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        this.forEachInOrder(action);
+    }
+    
+    /**
+     * @return array of the elements in order, allocated once at the tree's size
+     */
+    public Object[] toArray() {
+        Object[] array = new Object[this.size()];
+        this.copyInto(array);
+        return array;
+    }
+    
+    /**
+     * @param array filled in if it is large enough, with null after the last element if it is larger
+     * @return array, or a new array of the same type and the tree's size, holding the elements in order
+     */
+    public <E> E[] toArray(E[] array) {
+        int size = this.size();
+        if (array.length < size) {
+            array = Arrays.copyOf(array, size);
+        } else if (array.length > size) {
+            array[size] = null;
+        }
+        this.copyInto(array);
+        return array;
+    }
+    
+    private void copyInto(Object[] array) {
+        int i = 0;
+        for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+            for (int j = 0; j < node.getCount(); j++) {
+                array[i++] = node.getData();
+            }
+        }
+    }
+    
+    // Navigation
+    /**
+     * @param data
+     * @return the greatest element less than or equal to data; null if there is none
+     */
+    public T floor(T data) {
+        return dataOf(this.floorNode(data, true));
+    }
+    
+    /**
+     * @param data
+     * @return the greatest element strictly less than data; null if there is none
+     */
+    public T lower(T data) {
+        return dataOf(this.floorNode(data, false));
+    }
+    
+    /**
+     * @param data
+     * @return the least element greater than or equal to data; null if there is none
+     */
+    public T ceiling(T data) {
+        return dataOf(this.ceilingNode(data, true));
+    }
+    
+    /**
+     * @param data
+     * @return the least element strictly greater than data; null if there is none
+     */
+    public T higher(T data) {
+        return dataOf(this.ceilingNode(data, false));
+    }
+    
+    /**
+     * Elements from lo up to but not including hi, in order. The iterator seeks both ends in
+     *   O(log n) when it is created and then walks k nodes without comparing any of them.
+     * @param lo inclusive
+     * @param hi exclusive
+     * @return the elements in [lo, hi)
+     */
+    public Iterable<T> range(final T lo, final T hi) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                if (comparator.compare(lo, hi) >= 0) {
+                    return new RangeIterator(null, null);
+                }
+                return new RangeIterator(ceilingNode(lo, true), ceilingNode(hi, true));
+            }
+        };
+    }
+    
+    /**
+     * @param hi exclusive
+     * @return the elements less than hi, in order
+     */
+    public Iterable<T> headSet(final T hi) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RangeIterator(getLeftmostNode(), ceilingNode(hi, true));
+            }
+        };
+    }
+    
+    /**
+     * @param lo inclusive
+     * @return the elements greater than or equal to lo, in order
+     */
+    public Iterable<T> tailSet(final T lo) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RangeIterator(ceilingNode(lo, true), null);
+            }
+        };
+    }
+    
+    /**
+     * @param data
+     * @param inclusive whether a node equal to data qualifies
+     * @return the last node before (or at) data; null if there is none
+     */
+    BalancedBinarySearchTreeNode<T> floorNode(T data, boolean inclusive) {
+        BalancedBinarySearchTreeNode<T> node = this.root;
+        BalancedBinarySearchTreeNode<T> best = null;
+        while (node != null) {
+            int compare = this.comparator.compare(data, node.getData());
+            if (compare > 0 || (inclusive && compare == 0)) {
+                best = node;
+                if (compare == 0) {
+                    break;
+                }
+                node = node.getRightNode();
+            } else {
+                node = node.getLeftNode();
+            }
+        }
+        // A tombstone holds nothing, so the answer is the nearest live node before it
+        return best != null && best.getCount() == 0 ? this.liveBefore(best) : best;
+    }
+    
+    /**
+     * @param data
+     * @param inclusive whether a node equal to data qualifies
+     * @return the first node after (or at) data; null if there is none
+     */
+    BalancedBinarySearchTreeNode<T> ceilingNode(T data, boolean inclusive) {
+        BalancedBinarySearchTreeNode<T> node = this.root;
+        BalancedBinarySearchTreeNode<T> best = null;
+        while (node != null) {
+            int compare = this.comparator.compare(data, node.getData());
+            if (compare < 0 || (inclusive && compare == 0)) {
+                best = node;
+                if (compare == 0) {
+                    break;
+                }
+                node = node.getLeftNode();
+            } else {
+                node = node.getRightNode();
+            }
+        }
+        return best != null && best.getCount() == 0 ? this.liveAfter(best) : best;
+    }
+    
+    private static <T> T dataOf(BalancedBinarySearchTreeNode<T> node) {
+        return node != null ? node.getData() : null;
+    }
+    
+    /**
+     * Iterator that follows successor links from a first node up to, but not including, a
+     *   fence node; a null fence runs to the end of the tree. It never compares, and fails
+     *   fast if the tree is changed other than through remove().
+     */
+    private class RangeIterator implements Iterator<T> {
+        private BalancedBinarySearchTreeNode<T> nextNode;
+        /** Occurrences of nextNode already returned; only ever above 0 in a multiset */
+        private int repeats;
+        private BalancedBinarySearchTreeNode<T> lastReturned;
+        private final BalancedBinarySearchTreeNode<T> fence;
+        private int expectedModCount = modCount;
+    
+        RangeIterator(BalancedBinarySearchTreeNode<T> first, BalancedBinarySearchTreeNode<T> fence) {
+            // The fence comes from ceilingNode, which never returns a tombstone, so skipping
+            //   tombstones never skips it
+            first = liveAfter(first);
+            this.nextNode = first == fence ? null : first;
+            this.fence = fence;
+        }
+    
+        @Override
+        public boolean hasNext() {
+            return this.nextNode != null;
+        }
+    
+        @Override
+        public T next() {
+            if (this.nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            this.lastReturned = this.nextNode;
+            if (++this.repeats >= this.lastReturned.getCount()) {
+                this.repeats = 0;
+                this.nextNode = liveAfter(successor(this.lastReturned));
+                if (this.nextNode == this.fence) {
+                    this.nextNode = null;
+                }
+            }
+            return this.lastReturned.getData();
+        }
+    
+        @Override
+        public void remove() {
+            if (this.lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Still repeating the node, which now has one occurrence fewer
+            if (this.lastReturned == this.nextNode) {
+                this.repeats--;
+            }
+            // Otherwise the successor is already found, and deleting keeps it the same node
+            deleteOccurrence(this.lastReturned);
+            this.lastReturned = null;
+            this.expectedModCount = modCount;
+        }
+    }
+    
+    // Convenience Methods
+    /**
+     * @return true if the BalanceBinarySearchTree is empty
+     */
+    public boolean isEmpty() {
+        // Tombstones hold nothing, so a tree of only tombstones is empty
+        return this.size() == 0;
+    }
+    
+    /**
+     * Start counting operations, comparisons and rotations, and timing insert, delete and search
+     * @return the tree's stats; the same object if they were already enabled
+     */
+    public BalancedBinarySearchTreeStats enableStats() {
+        if (this.stats == null) {
+            this.stats = new BalancedBinarySearchTreeStats(this);
+        }
+        return this.stats;
+    }
+    
+    /**
+     * Stop recording stats; the stats object keeps the values it reached
+     */
+    public void disableStats() {
+        this.stats = null;
+    }
+    
+    /**
+     * @return the tree's stats; null if they are not enabled
+     */
+    public BalancedBinarySearchTreeStats getStats() {
+        return this.stats;
+    }
+    
+    /**
+     * Change how insert and delete rebalance the tree. Moving to a policy with a tighter bound
+     *   than the tree may meet, or to RED_BLACK, which needs every node coloured, rebuilds the
+     *   tree in O(n), so the new policy's balance holds from then on.
+     * @param policy
+     */
+    public void setBalancingPolicy(BalancingPolicy policy) {
+        BalancingPolicy previous = this.balancing;
+        this.balancing = policy;
+        if (policy == previous) {
+            return;
+        }
+        if (policy == BalancingPolicy.RED_BLACK || tolerance(policy) < tolerance(previous)) {
+            this.rebuild();
+        } else if (policy == BalancingPolicy.DEFERRED) {
+            this.adopt(this);
+        }
+    }
+    
+    public BalancingPolicy getBalancingPolicy() {
+        return this.balancing;
+    }
+    
+    /**
+     * @return height difference between siblings the balancing policy allows
+     */
+    private int tolerance() {
+        return tolerance(this.balancing);
+    }
+    
+    private static int tolerance(BalancingPolicy policy) {
+        switch (policy) {
+        case STRICT:
+        case EARLY_STOP:
+            return 1;
+        case RELAXED:
+            return RELAXED_TOLERANCE;
+        default:
+            // Bounded by colour or by depth instead
+            return Integer.MAX_VALUE;
+        }
+    }
+    
+    /**
+     * @return height difference between siblings that join and split keep to; policies that do
+     *   not bound it are joined as RELAXED and restored afterwards by adopt()
+     */
+    private int joinTolerance() {
+        return Math.min(this.tolerance(), RELAXED_TOLERANCE);
+    }
+    
+    /**
+     * Start insert, search and delete from the node the last of them reached, climbing parent
+     *   links only as far as the subtree holding the new data, rather than from the root. Keys
+     *   that arrive nearly in order, like timestamps with a little jitter, then cost O(log d) for
+     *   d the distance from the previous key. Searches move the finger too, so with finger
+     *   search on even concurrent reads are unsafe.
+     * @param enabled
+     */
+    public void setFingerSearch(boolean enabled) {
+        this.fingerSearch = enabled;
+    }
+    
+    public boolean isFingerSearch() {
+        return this.fingerSearch;
+    }
+    
+    /**
+     * Make delete leave the node it finds in place as a tombstone, costing one O(log n) walk to
+     *   the root to adjust sizes and no rotations, rather than unlinking and rebalancing. Lookups,
+     *   iteration and order statistics pass over tombstones, and once they are more than the
+     *   compaction ratio of the nodes, the delete that crossed it compacts the tree, taking O(n)
+     *   itself. Inserting data equal to a tombstone revives it, with a new node holding the
+     *   inserted data. Turning lazy deletion off compacts straight away.
+     * @param enabled
+     */
+    public void setLazyDeletion(boolean enabled) {
+        this.lazyDeletion = enabled;
+        if (!enabled) {
+            this.compact();
+        }
+    }
+    
+    public boolean isLazyDeletion() {
+        return this.lazyDeletion;
+    }
+    
+    /**
+     * @param ratio share of the nodes that may be tombstones before the tree compacts; a lower
+     *   ratio keeps lookups shorter, a higher one compacts less often
+     * @throws IllegalArgumentException if ratio is not above 0 and at most 1
+     */
+    public void setCompactionRatio(double ratio) {
+        if (!(ratio > 0 && ratio <= 1)) {
+            throw new IllegalArgumentException("Compaction ratio must be in (0, 1], got " + ratio);
+        }
+        this.compactionRatio = ratio;
+    }
+    
+    public double getCompactionRatio() {
+        return this.compactionRatio;
+    }
+    
+    /**
+     * @return number of deleted nodes still linked into the tree, waiting for compaction
+     */
+    public int getTombstoneCount() {
+        return this.tombstones;
+    }
+    
+    /**
+     * Unlink every tombstone now, relinking the other nodes into a balanced tree in O(n); does
+     *   nothing if there are none. Bulk operations compact first, so they never see tombstones.
+     */
+    public void compact() {
+        if (this.tombstones > 0) {
+            this.rebuild();
+        }
+    }
+    
+    /**
+     * Add to the count of linked nodes, unless it is waiting to be counted again
+     * @param delta
+     */
+    private void addNodes(int delta) {
+        if (this.nodes >= 0) {
+            this.nodes += delta;
+        }
+    }
+    
+    /**
+     * @return number of nodes linked into the tree, tombstones included; after a join, split
+     *   or set operation they are counted again in O(n), unless every node holds one element
+     */
+    private int nodeCount() {
+        if (this.nodes < 0) {
+            if (!this.multiset) {
+                this.nodes = this.size() + this.tombstones;
+            } else {
+                this.nodes = 0;
+                for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+                    this.nodes++;
+                }
+            }
+        }
+        return this.nodes;
+    }
+    
+    /**
+     * Relink every node but the tombstones into a perfectly balanced tree, in O(n) and without
+     *   allocating nodes
+     */
+    private void rebuild() {
+        int count = 0;
+        for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+            if (node.getCount() > 0) {
+                count++;
+            }
+        }
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BalancedBinarySearchTreeNode<T>[] nodes = new BalancedBinarySearchTreeNode[count];
+        count = 0;
+        for (BalancedBinarySearchTreeNode<T> node = this.getLeftmostNode(this.root); node != null; node = this.successor(node)) {
+            if (node.getCount() > 0) {
+                nodes[count++] = node;
+            }
+        }
+        this.modCount++;
+        this.tombstones = 0;
+        this.nodes = count;
+        // The finger may rest on a tombstone that is no longer linked
+        this.finger = null;
+        this.root = this.link(nodes, 0, count - 1);
+        if (this.root != null) {
+            this.root.setParentNode(null);
+        }
+        this.relinked();
+    }
+    
+    /**
+     * Clears the BalanceBinarySearchTree of all its members
+     */
+    public void clear() {
+        this.root = null;
+        this.deferredPeak = 0;
+        this.finger = null;
+        this.tombstones = 0;
+        this.nodes = 0;
+        this.modCount++;
+    }
+    
+    /**
+     * @return the leftmost node in the binary tree holding an element, passing over tombstones
      */
     public BalancedBinarySearchTreeNode<T> getLeftmostNode(){
-        return getLeftmostNode(this.root);
+        return this.liveAfter(getLeftmostNode(this.root));
     }
     
     /**
@@ -445,10 +2218,78 @@ public class BalancedBinarySearchTree<T> implements Iterable<T> {
     }
     
     /**
-     * @return the rightmost node in the binary tree
+     * @return the root node, for checks of the tree's shape
+     */
+    BalancedBinarySearchTreeNode<T> root() {
+        return this.root;
+    }
+    
+    /**
+     * @param node
+     * @return the node that follows node in order; null if node is the last
+     */
+    BalancedBinarySearchTreeNode<T> successor(BalancedBinarySearchTreeNode<T> node) {
+        if (node.hasRightNode()) {
+            return this.getLeftmostNode(node.getRightNode());
+        }
+        BalancedBinarySearchTreeNode<T> parent = node.getParentNode();
+        while (parent != null && parent.getRightNode() == node) {
+            node = parent;
+            parent = node.getParentNode();
+        }
+        return parent;
+    }
+    
+    /**
+     * @param node
+     * @return the node that precedes node in order; null if node is the first
+     */
+    BalancedBinarySearchTreeNode<T> predecessor(BalancedBinarySearchTreeNode<T> node) {
+        if (node.hasLeftNode()) {
+            return this.getRightmostNode(node.getLeftNode());
+        }
+        BalancedBinarySearchTreeNode<T> parent = node.getParentNode();
+        while (parent != null && parent.getLeftNode() == node) {
+            node = parent;
+            parent = node.getParentNode();
+        }
+        return parent;
+    }
+    
+    /**
+     * @param node
+     * @return node, or the nearest node after it that is not a tombstone; null if there is none
+     */
+    private BalancedBinarySearchTreeNode<T> liveAfter(BalancedBinarySearchTreeNode<T> node) {
+        while (node != null && node.getCount() == 0) {
+            node = this.successor(node);
+        }
+        return node;
+    }
+    
+    /**
+     * @param node
+     * @return node, or the nearest node before it that is not a tombstone; null if there is none
+     */
+    private BalancedBinarySearchTreeNode<T> liveBefore(BalancedBinarySearchTreeNode<T> node) {
+        while (node != null && node.getCount() == 0) {
+            node = this.predecessor(node);
+        }
+        return node;
+    }
+    
+    /**
+     * @return number of structural changes so far, for iterators over views of the tree
+     */
+    int modCount() {
+        return this.modCount;
+    }
+    
+    /**
+     * @return the rightmost node in the binary tree holding an element, passing over tombstones
      */
     public BalancedBinarySearchTreeNode<T> getRightmostNode(){
-        return getRightmostNode(this.root);
+        return this.liveBefore(getRightmostNode(this.root));
     }
     
     /**
@@ -463,54 +2304,129 @@ public class BalancedBinarySearchTree<T> implements Iterable<T> {
         return node;
     }
 
+    /**
+     * @return iterator over the tree in order; a full scan takes O(n) link steps and no
+     *   comparisons, remove() is supported, and any other change to the tree makes it throw
+     *   ConcurrentModificationException
+     */
     @Override
     public Iterator<T> iterator(){
-        Iterator<T> iterator = new Iterator<T>(){
-            private BalancedBinarySearchTreeNode<T> previousNode = null;
-            private BalancedBinarySearchTreeNode<T> currentNode = getLeftmostNode();
-            private BalancedBinarySearchTreeNode<T> finalNode = getRightmostNode();
-            
-            @Override
-            public boolean hasNext(){
-                if (currentNode == null) {
-                    return false;
-                }
-                if (comparator.compare(currentNode.getData(), finalNode.getData()) <= 0) {
-                    return true;
-                }
+        return new RangeIterator(this.getLeftmostNode(), null);
+    }
+    
+    /**
+     * @return spliterator over the tree in order, exactly SIZED at every split, that splits at
+     *   the middle element by rank so each half holds the same number of elements
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(this.getLeftmostNode(), 0, 0, this.size());
+    }
+    
+    /**
+     * @return sequential stream of the elements in order
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+    
+    /**
+     * @return parallel stream of the elements; the tree splits evenly across the ForkJoinPool
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+    
+    /**
+     * Spliterator over the elements with ranks in [index, fence). It walks successor links
+     *   like RangeIterator, and splits by finding the middle rank in O(log n) using the
+     *   subtree sizes, so the halves are equal however the elements are spread over the tree.
+     */
+    private class TreeSpliterator implements Spliterator<T> {
+        private BalancedBinarySearchTreeNode<T> nextNode;
+        /** Occurrences of nextNode before index; only ever above 0 in a multiset */
+        private int offset;
+        private int index;
+        private final int fence;
+        private final int expectedModCount = modCount;
+    
+        TreeSpliterator(BalancedBinarySearchTreeNode<T> first, int offset, int index, int fence) {
+            this.nextNode = first;
+            this.offset = offset;
+            this.index = index;
+            this.fence = fence;
+        }
+    
+        @Override
+        public Spliterator<T> trySplit() {
+            if (this.fence - this.index < 2) {
+                return null;
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Hand out the lower half and keep the upper half
+            int middle = (this.index + this.fence) >>> 1;
+            TreeSpliterator prefix = new TreeSpliterator(this.nextNode, this.offset, this.index, middle);
+            this.nextNode = selectNode(middle);
+            this.offset = multiset ? middle - rank(this.nextNode.getData()) : 0;
+            this.index = middle;
+            return prefix;
+        }
+    
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (this.index >= this.fence) {
                 return false;
             }
-
-            @Override
-            public T next(){
-                if (!this.hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                
-                // Store the node who's data is to be returned
-                previousNode = currentNode;
-                
-                // Find what the next node would be
-                if (currentNode.hasRightNode()) {
-                    currentNode = getLeftmostNode( currentNode.getRightNode() );
-                } else {
-                    // If there are no more children, work up the tree to the next node
-                    // NOTE: use <= to account for the last element or a tree of size 1
-                    while (comparator.compare(currentNode.getData(), previousNode.getData()) <= 0) {
-                        if (currentNode.hasParent()) {
-                            currentNode = currentNode.getParentNode();
-                        } else {
-                            currentNode = null;
-                            break;
-                        }
-                    }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BalancedBinarySearchTreeNode<T> node = this.nextNode;
+            this.index++;
+            if (++this.offset >= node.getCount()) {
+                this.offset = 0;
+                this.nextNode = this.index < this.fence ? liveAfter(successor(node)) : null;
+            }
+            action.accept(node.getData());
+            return true;
+        }
+    
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            BalancedBinarySearchTreeNode<T> node = this.nextNode;
+            int offset = this.offset;
+            int remaining = this.fence - this.index;
+            this.nextNode = null;
+            this.offset = 0;
+            this.index = this.fence;
+            for (; remaining > 0; remaining--) {
+                action.accept(node.getData());
+                if (++offset >= node.getCount() && remaining > 1) {
+                    node = liveAfter(successor(node));
+                    offset = 0;
                 }
-                
-                return previousNode.getData();
             }
-        };
-        
-        return iterator;
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    
+        @Override
+        public long estimateSize() {
+            return this.fence - this.index;
+        }
+    
+        @Override
+        public int characteristics() {
+            int characteristics = Spliterator.SORTED | Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+            return multiset ? characteristics : characteristics | Spliterator.DISTINCT;
+        }
+    
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
     }
     
 }
@@ -0,0 +1,787 @@
+package balancedBinarySearchTree;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Micro benchmark for the BalancedBinarySearchTree, measured against java.util.TreeSet.
+ * <br>
+ * Every operation is timed over a whole key set and reported per operation, together with
+ * the bytes allocated per operation (from the thread allocation counter) and the garbage
+ * collection time spent while it ran.
+ * <br><pre>
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark [sizes] [rounds]
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark 1000,1000000,10000000 5
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark allocation
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark sets [sizes] [rounds]
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark policies [sizes] [rounds]
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark ingest [sizes] [rounds]
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark finger [sizes] [rounds]
+ * java balancedBinarySearchTree.BalancedBinarySearchTreeBenchmark churn [sizes] [rounds]
+ * </pre>
+ * The allocation mode checks that contains and inserts of data already present allocate
+ * nothing and compare once per level, and exits with status 1 if they do not. The sets mode
+ * merges a delta a tenth the size of the tree into it, with union and difference against
+ * the equivalent loops of insert and delete. The policies mode runs a write-heavy and a
+ * read-heavy mix of operations against a tree under each BalancingPolicy. The ingest mode
+ * loads random keys into one tree from one thread, and into a ShardedBalancedBinarySearchTree
+ * with one to as many shards as there are cores. The finger mode inserts and then searches
+ * nearly sorted keys with finger search off and on. The churn mode keeps a tree at a fixed
+ * size, deleting a random element and inserting a new one, with eager and lazy deletion.
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeBenchmark {
+
+    // Attributes
+    private static final int[] DEFAULT_SIZES = { 1000, 10000, 100000, 1000000 };
+    private static final int DEFAULT_ROUNDS = 5;
+    private static final int WARMUP_ROUNDS = 2;
+
+    /** Sink for results so the JIT cannot discard the measured work */
+    private static volatile long sink;
+
+    /** The same comparator the interactive test uses, so compare costs match the real workload */
+    static final Comparator<Integer> INT_COMPARATOR = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b){
+            if (a == null && b == null){
+                return 0;
+            } else if (a == null){
+                return -1;
+            } else if (b == null){
+                return 1;
+            } else {
+                return a.compareTo(b);
+            }
+        }
+    };
+
+    /**
+     * Order in which keys are presented to the structure
+     */
+    enum Distribution {
+        /** Ascending keys; the worst case for rotations */
+        SEQUENTIAL,
+        /** Uniformly shuffled keys */
+        RANDOM,
+        /** Power-law keys: dense near zero with a long sparse tail */
+        SKEWED;
+
+        Integer[] keys(int size, Random random) {
+            Integer[] keys = new Integer[size];
+            switch (this) {
+            case SEQUENTIAL:
+                for (int i = 0; i < size; i++) {
+                    keys[i] = i;
+                }
+                break;
+            case RANDOM:
+                for (int i = 0; i < size; i++) {
+                    keys[i] = i;
+                }
+                shuffle(keys, random);
+                break;
+            case SKEWED:
+                Set<Integer> unique = new LinkedHashSet<Integer>(size * 2);
+                while (unique.size() < size) {
+                    double u = random.nextDouble();
+                    unique.add((int) (u * u * u * u * (size * 64.0)));
+                }
+                unique.toArray(keys);
+                break;
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * One of the structures under test, wrapped so every structure runs the same loops
+     */
+    static abstract class Subject {
+        final String name;
+
+        Subject(String name) {
+            this.name = name;
+        }
+
+        abstract void reset();
+        abstract boolean insert(Integer key);
+        abstract boolean delete(Integer key);
+        abstract boolean contains(Integer key);
+        abstract Object search(Integer key);
+        abstract Iterator<Integer> iterator();
+        abstract List<Integer> inorder();
+
+        /** Called once the keys are inserted and before they are read */
+        void prepareReads() {}
+
+        /** @return false if delete is not supported and is not measured */
+        boolean deletes() { return true; }
+    }
+
+    static Subject tree() {
+        return new Subject("BalancedBinarySearchTree") {
+            private BalancedBinarySearchTree<Integer> tree;
+            void reset() { this.tree = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR); }
+            boolean insert(Integer key) { return this.tree.insert(key); }
+            boolean delete(Integer key) { return this.tree.delete(key); }
+            boolean contains(Integer key) { return this.tree.contains(key); }
+            Object search(Integer key) { return this.tree.search(key); }
+            Iterator<Integer> iterator() { return this.tree.iterator(); }
+            List<Integer> inorder() { return this.tree.inorder(); }
+        };
+    }
+
+    static Subject arrayTree() {
+        return new Subject("ArrayBalancedBinarySearchTree") {
+            private ArrayBalancedBinarySearchTree<Integer> tree;
+            void reset() { this.tree = new ArrayBalancedBinarySearchTree<Integer>(INT_COMPARATOR); }
+            boolean insert(Integer key) { return this.tree.insert(key); }
+            boolean delete(Integer key) { return this.tree.delete(key); }
+            boolean contains(Integer key) { return this.tree.contains(key); }
+            Object search(Integer key) { return this.tree.search(key); }
+            Iterator<Integer> iterator() { return this.tree.iterator(); }
+            List<Integer> inorder() { return this.tree.inorder(); }
+        };
+    }
+
+    static Subject offHeapTree() {
+        return new Subject("OffHeapBalancedBinarySearchTree") {
+            private OffHeapBalancedBinarySearchTree<Integer> tree;
+            void reset() { this.tree = new OffHeapBalancedBinarySearchTree<Integer>(KeyCodec.ofInt()); }
+            boolean insert(Integer key) { return this.tree.insert(key); }
+            boolean delete(Integer key) { return this.tree.delete(key); }
+            boolean contains(Integer key) { return this.tree.contains(key); }
+            Object search(Integer key) { return this.tree.search(key); }
+            Iterator<Integer> iterator() { return this.tree.iterator(); }
+            List<Integer> inorder() {
+                List<Integer> sorted = new ArrayList<Integer>(this.tree.countNodes());
+                for (Integer key : this.tree) {
+                    sorted.add(key);
+                }
+                return sorted;
+            }
+        };
+    }
+
+    static Subject intTree() {
+        return new Subject("IntBalancedBinarySearchTree") {
+            private IntBalancedBinarySearchTree tree;
+            void reset() { this.tree = new IntBalancedBinarySearchTree(); }
+            boolean insert(Integer key) { return this.tree.insert(key); }
+            boolean delete(Integer key) { return this.tree.delete(key); }
+            boolean contains(Integer key) { return this.tree.contains(key); }
+            Object search(Integer key) { return this.tree.contains(key) ? key : null; }
+            Iterator<Integer> iterator() { return this.tree.iterator(); }
+            List<Integer> inorder() { return new IntArrayList(this.tree.inorder()); }
+        };
+    }
+
+    static Subject frozenTree() {
+        return new Subject("FrozenBalancedBinarySearchTree") {
+            private BalancedBinarySearchTree<Integer> tree;
+            private FrozenBalancedBinarySearchTree<Integer> frozen;
+            void reset() { this.tree = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR); }
+            boolean insert(Integer key) { return this.tree.insert(key); }
+            void prepareReads() { this.frozen = this.tree.freeze(); }
+            boolean deletes() { return false; }
+            boolean delete(Integer key) { throw new UnsupportedOperationException(); }
+            boolean contains(Integer key) { return this.frozen.contains(key); }
+            Object search(Integer key) { return this.frozen.search(key); }
+            Iterator<Integer> iterator() { return this.frozen.iterator(); }
+            List<Integer> inorder() {
+                List<Integer> sorted = new ArrayList<Integer>(this.frozen.size());
+                for (Integer key : this.frozen) {
+                    sorted.add(key);
+                }
+                return sorted;
+            }
+        };
+    }
+
+    static Subject treeSet() {
+        return new Subject("java.util.TreeSet") {
+            private TreeSet<Integer> set;
+            void reset() { this.set = new TreeSet<Integer>(INT_COMPARATOR); }
+            boolean insert(Integer key) { return this.set.add(key); }
+            boolean delete(Integer key) { return this.set.remove(key); }
+            boolean contains(Integer key) { return this.set.contains(key); }
+            Object search(Integer key) { return this.set.ceiling(key); }
+            Iterator<Integer> iterator() { return this.set.iterator(); }
+            List<Integer> inorder() { return new ArrayList<Integer>(this.set); }
+        };
+    }
+
+    /**
+     * @return every structure that is measured, the baseline last
+     */
+    static List<Subject> subjects() {
+        List<Subject> subjects = new ArrayList<Subject>();
+        subjects.add(tree());
+        subjects.add(frozenTree());
+        subjects.add(arrayTree());
+        subjects.add(intTree());
+        subjects.add(offHeapTree());
+        subjects.add(treeSet());
+        return subjects;
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("allocation")) {
+            System.exit(checkHotPath() ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("sets")) {
+            int[] sizes = args.length > 1 ? parseSizes(args[1]) : DEFAULT_SIZES;
+            int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+            compareSetOperations(sizes, rounds);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("policies")) {
+            int[] sizes = args.length > 1 ? parseSizes(args[1]) : DEFAULT_SIZES;
+            int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+            compareBalancingPolicies(sizes, rounds);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("ingest")) {
+            int[] sizes = args.length > 1 ? parseSizes(args[1]) : DEFAULT_SIZES;
+            int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+            compareIngest(sizes, rounds);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("finger")) {
+            int[] sizes = args.length > 1 ? parseSizes(args[1]) : DEFAULT_SIZES;
+            int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+            compareFingerSearch(sizes, rounds);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("churn")) {
+            int[] sizes = args.length > 1 ? parseSizes(args[1]) : DEFAULT_SIZES;
+            int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+            compareChurn(sizes, rounds);
+            return;
+        }
+        int[] sizes = args.length > 0 ? parseSizes(args[0]) : DEFAULT_SIZES;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        System.out.println(String.format("%-32s %-10s %9s %-9s %12s %12s %10s",
+                "structure", "keys", "size", "operation", "ns/op", "bytes/op", "gc ms"));
+        for (int size : sizes) {
+            for (Distribution distribution : Distribution.values()) {
+                Integer[] keys = distribution.keys(size, new Random(size));
+                Integer[] lookups = keys.clone();
+                shuffle(lookups, new Random(~size));
+                for (Subject subject : subjects()) {
+                    run(subject, distribution, keys, lookups, rounds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measure garbage and comparator calls on the hot path of a warmed-up tree
+     * @return true if contains and failed inserts allocated nothing
+     */
+    private static boolean checkHotPath() {
+        final long[] compares = new long[1];
+        Comparator<Integer> counting = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b){
+                compares[0]++;
+                return INT_COMPARATOR.compare(a, b);
+            }
+        };
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(counting);
+        Integer[] keys = Distribution.RANDOM.keys(100000, new Random(1));
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+
+        // Warm up so the measured loops run compiled
+        long found = 0;
+        for (int round = 0; round < 20; round++) {
+            for (Integer key : keys) {
+                if (tree.contains(key)) found++;
+                if (tree.insert(key)) found++;
+            }
+        }
+
+        compares[0] = 0;
+        Measurement contains = Measurement.start();
+        for (Integer key : keys) {
+            if (tree.contains(key)) found++;
+        }
+        contains.stop(keys.length);
+        double containsCompares = (double) compares[0] / keys.length;
+
+        compares[0] = 0;
+        Measurement duplicates = Measurement.start();
+        for (Integer key : keys) {
+            if (tree.insert(key)) found++;
+        }
+        duplicates.stop(keys.length);
+        double duplicateCompares = (double) compares[0] / keys.length;
+        sink += found;
+
+        System.out.println(String.format("%-16s %12s %12s %12s", "operation", "ns/op", "bytes/op", "compares/op"));
+        System.out.println(String.format("%-16s %12.1f %12.1f %12.2f", "contains",
+                contains.nanosPerOp, contains.bytesPerOp, containsCompares));
+        System.out.println(String.format("%-16s %12.1f %12.1f %12.2f", "duplicate insert",
+                duplicates.nanosPerOp, duplicates.bytesPerOp, duplicateCompares));
+        System.out.println("tree height " + tree.height() + ", keys " + tree.size());
+
+        // The smallest object is 16 bytes, so anything under a byte per operation is the
+        //   fixed cost of reading the counters rather than garbage from the loop
+        boolean garbageFree = contains.bytesPerOp < 1 && duplicates.bytesPerOp < 1;
+        System.out.println(garbageFree ? "PASS: no garbage on the hot path" : "FAIL: the hot path allocates");
+        return garbageFree;
+    }
+
+    /**
+     * Merge a delta into a tree with the set operations and with one insert or delete per
+     *   element, reporting the best round of each in milliseconds
+     * @param sizes
+     * @param rounds
+     */
+    private static void compareSetOperations(int[] sizes, int rounds) {
+        System.out.println(String.format("%-10s %9s %9s %12s %12s %12s %12s",
+                "tree", "delta", "result", "union ms", "insert ms", "diff ms", "delete ms"));
+        for (int size : sizes) {
+            Random random = new Random(size);
+            Integer[] keys = Distribution.RANDOM.keys(size, random);
+            Arrays.sort(keys);
+            // Half the delta is already in the tree
+            Integer[] delta = new Integer[Math.max(size / 10, 1)];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = i % 2 == 0 ? keys[random.nextInt(size)] : size + random.nextInt(size);
+            }
+            List<Integer> deltaList = Arrays.asList(delta);
+
+            double[] best = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+            int result = 0;
+            for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+                double[] measured = new double[4];
+
+                BalancedBinarySearchTree<Integer> tree = BalancedBinarySearchTree.fromSorted(INT_COMPARATOR, keys);
+                BalancedBinarySearchTree<Integer> other = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR);
+                other.insertAll(deltaList);
+                long start = System.nanoTime();
+                tree.union(other);
+                measured[0] = (System.nanoTime() - start) / 1e6;
+                result = tree.size();
+
+                tree = BalancedBinarySearchTree.fromSorted(INT_COMPARATOR, keys);
+                start = System.nanoTime();
+                for (Integer key : delta) {
+                    tree.insert(key);
+                }
+                measured[1] = (System.nanoTime() - start) / 1e6;
+
+                other = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR);
+                other.insertAll(deltaList);
+                start = System.nanoTime();
+                tree.difference(other);
+                measured[2] = (System.nanoTime() - start) / 1e6;
+
+                tree = BalancedBinarySearchTree.fromSorted(INT_COMPARATOR, keys);
+                for (Integer key : delta) {
+                    tree.insert(key);
+                }
+                start = System.nanoTime();
+                for (Integer key : delta) {
+                    tree.delete(key);
+                }
+                measured[3] = (System.nanoTime() - start) / 1e6;
+                sink += tree.size();
+
+                if (round >= WARMUP_ROUNDS) {
+                    for (int i = 0; i < best.length; i++) {
+                        best[i] = Math.min(best[i], measured[i]);
+                    }
+                }
+            }
+            System.out.println(String.format("%-10d %9d %9d %12.2f %12.2f %12.2f %12.2f",
+                    size, delta.length, result, best[0], best[1], best[2], best[3]));
+        }
+    }
+
+    /**
+     * Run a write-heavy and a read-heavy mix of inserts, deletes and contains against a tree of
+     *   random keys under each balancing policy, reporting the best round of each, the
+     *   rotations per operation and the height the tree ends at
+     * @param sizes
+     * @param rounds
+     */
+    private static void compareBalancingPolicies(int[] sizes, int rounds) {
+        System.out.println(String.format("%-10s %-12s %-12s %12s %12s %8s",
+                "tree", "mix", "policy", "ns/op", "rotations/op", "height"));
+        // Percent of operations that are writes, split evenly between insert and delete
+        int[] writePercents = { 90, 10 };
+        for (int size : sizes) {
+            Random random = new Random(size);
+            Integer[] initial = Distribution.RANDOM.keys(2 * size, random);
+            Integer[] keys = new Integer[4 * size];
+            int[] operations = new int[keys.length];
+            for (int writePercent : writePercents) {
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = random.nextInt(2 * size);
+                    int roll = random.nextInt(100);
+                    operations[i] = roll >= writePercent ? 0 : roll % 2 == 0 ? 1 : 2;
+                }
+                for (BalancedBinarySearchTree.BalancingPolicy policy : BalancedBinarySearchTree.BalancingPolicy.values()) {
+                    double best = Double.MAX_VALUE;
+                    BalancedBinarySearchTree<Integer> tree = null;
+                    BalancedBinarySearchTreeStats stats = null;
+                    // The last round counts rotations; the stats' timers would skew the others
+                    for (int round = 0; round <= WARMUP_ROUNDS + rounds; round++) {
+                        tree = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR);
+                        tree.setBalancingPolicy(policy);
+                        for (int i = 0; i < size; i++) {
+                            tree.insert(initial[i]);
+                        }
+                        stats = round == WARMUP_ROUNDS + rounds ? tree.enableStats() : null;
+                        long found = 0;
+                        long start = System.nanoTime();
+                        for (int i = 0; i < keys.length; i++) {
+                            switch (operations[i]) {
+                            case 0: if (tree.contains(keys[i])) found++; break;
+                            case 1: if (tree.insert(keys[i])) found++; break;
+                            default: if (tree.delete(keys[i])) found++; break;
+                            }
+                        }
+                        double nanosPerOp = (double) (System.nanoTime() - start) / keys.length;
+                        sink += found;
+                        if (round >= WARMUP_ROUNDS && stats == null) {
+                            best = Math.min(best, nanosPerOp);
+                        }
+                    }
+                    double rotations = (double) (stats.getRotations() + stats.getDoubleRotations()) / keys.length;
+                    System.out.println(String.format("%-10d %-12s %-12s %12.1f %12.3f %8d",
+                            size, writePercent + "% write", policy.name().toLowerCase(), best, rotations, tree.height()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Load random keys into a single tree and into sharded trees of increasing shard counts,
+     *   reporting the best round of each in nanoseconds per key, ingest ending once every
+     *   key is visible
+     * @param sizes
+     * @param rounds
+     */
+    private static void compareIngest(int[] sizes, int rounds) {
+        System.out.println(String.format("%-10s %-32s %8s %12s", "keys", "structure", "shards", "ns/key"));
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int size : sizes) {
+            List<Integer> keys = Arrays.asList(Distribution.RANDOM.keys(size, new Random(size)));
+
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+                BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR);
+                long start = System.nanoTime();
+                for (Integer key : keys) {
+                    tree.insert(key);
+                }
+                double nanosPerKey = (double) (System.nanoTime() - start) / size;
+                sink += tree.size();
+                if (round >= WARMUP_ROUNDS) {
+                    best = Math.min(best, nanosPerKey);
+                }
+            }
+            System.out.println(String.format("%-10d %-32s %8d %12.1f", size, "BalancedBinarySearchTree", 1, best));
+
+            for (int shards = 1; shards <= cores; shards *= 2) {
+                best = Double.MAX_VALUE;
+                for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+                    ShardedBalancedBinarySearchTree<Integer> tree = ShardedBalancedBinarySearchTree.byHash(INT_COMPARATOR, shards);
+                    try {
+                        long start = System.nanoTime();
+                        tree.addAll(keys);
+                        tree.flush();
+                        double nanosPerKey = (double) (System.nanoTime() - start) / size;
+                        sink += tree.size();
+                        if (round >= WARMUP_ROUNDS) {
+                            best = Math.min(best, nanosPerKey);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } finally {
+                        tree.close();
+                    }
+                }
+                System.out.println(String.format("%-10d %-32s %8d %12.1f", size, "ShardedBalancedBinarySearchTree", shards, best));
+            }
+        }
+    }
+
+    /**
+     * Insert ascending keys with a little jitter, like timestamps from several clocks, then
+     *   search them in the same order, with finger search off and on, reporting the best round
+     *   of each and the comparisons per operation
+     * @param sizes
+     * @param rounds
+     */
+    private static void compareFingerSearch(int[] sizes, int rounds) {
+        System.out.println(String.format("%-10s %-10s %-8s %12s %12s",
+                "keys", "operation", "finger", "ns/op", "compares/op"));
+        for (int size : sizes) {
+            // Each key lands within a few places of where strict order would put it
+            Random random = new Random(size);
+            Integer[] keys = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = 16 * i + random.nextInt(64);
+            }
+            for (boolean finger : new boolean[] { false, true }) {
+                double bestInsert = Double.MAX_VALUE;
+                double bestSearch = Double.MAX_VALUE;
+                BalancedBinarySearchTreeStats insertStats = null;
+                BalancedBinarySearchTreeStats searchStats = null;
+                // The last round counts comparisons; the stats' timers would skew the others
+                for (int round = 0; round <= WARMUP_ROUNDS + rounds; round++) {
+                    boolean counted = round == WARMUP_ROUNDS + rounds;
+                    BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR);
+                    tree.setFingerSearch(finger);
+                    insertStats = counted ? tree.enableStats() : null;
+                    long start = System.nanoTime();
+                    for (Integer key : keys) {
+                        tree.insert(key);
+                    }
+                    double insertNanos = (double) (System.nanoTime() - start) / size;
+                    if (counted) {
+                        tree.disableStats();
+                        // A fresh stats object, so the searches are counted apart from the inserts
+                        searchStats = tree.enableStats();
+                    }
+                    long found = 0;
+                    start = System.nanoTime();
+                    for (Integer key : keys) {
+                        if (tree.contains(key)) found++;
+                    }
+                    double searchNanos = (double) (System.nanoTime() - start) / size;
+                    sink += found;
+                    if (round >= WARMUP_ROUNDS && !counted) {
+                        bestInsert = Math.min(bestInsert, insertNanos);
+                        bestSearch = Math.min(bestSearch, searchNanos);
+                    }
+                }
+                System.out.println(String.format("%-10d %-10s %-8s %12.1f %12.2f",
+                        size, "insert", finger ? "on" : "off", bestInsert, insertStats.getComparisonsPerOperation()));
+                System.out.println(String.format("%-10d %-10s %-8s %12.1f %12.2f",
+                        size, "search", finger ? "on" : "off", bestSearch, searchStats.getComparisonsPerOperation()));
+            }
+        }
+    }
+
+    /**
+     * Fill a tree with random keys, then delete each in a random order while inserting as many
+     *   new keys, with deletion eager and lazy, reporting the best round of each in nanoseconds
+     *   per delete and insert pair, and the rotations per pair
+     * @param sizes
+     * @param rounds
+     */
+    private static void compareChurn(int[] sizes, int rounds) {
+        System.out.println(String.format("%-10s %-10s %12s %12s %8s",
+                "keys", "deletion", "ns/pair", "rotations", "height"));
+        for (int size : sizes) {
+            Integer[] keys = Distribution.RANDOM.keys(2 * size, new Random(size));
+            Integer[] doomed = Arrays.copyOf(keys, size);
+            shuffle(doomed, new Random(~size));
+            for (boolean lazy : new boolean[] { false, true }) {
+                double best = Double.MAX_VALUE;
+                BalancedBinarySearchTree<Integer> tree = null;
+                BalancedBinarySearchTreeStats stats = null;
+                // The last round counts rotations; the stats' timers would skew the others
+                for (int round = 0; round <= WARMUP_ROUNDS + rounds; round++) {
+                    tree = new BalancedBinarySearchTree<Integer>(INT_COMPARATOR);
+                    tree.setLazyDeletion(lazy);
+                    for (int i = 0; i < size; i++) {
+                        tree.insert(keys[i]);
+                    }
+                    stats = round == WARMUP_ROUNDS + rounds ? tree.enableStats() : null;
+                    long found = 0;
+                    long start = System.nanoTime();
+                    for (int i = 0; i < size; i++) {
+                        if (tree.delete(doomed[i])) found++;
+                        if (tree.insert(keys[size + i])) found++;
+                    }
+                    double nanosPerPair = (double) (System.nanoTime() - start) / size;
+                    sink += found;
+                    if (round >= WARMUP_ROUNDS && stats == null) {
+                        best = Math.min(best, nanosPerPair);
+                    }
+                }
+                double rotations = (double) (stats.getRotations() + stats.getDoubleRotations()) / size;
+                System.out.println(String.format("%-10d %-10s %12.1f %12.3f %8d",
+                        size, lazy ? "lazy" : "eager", best, rotations, tree.height()));
+            }
+        }
+    }
+
+    /**
+     * Runs every operation against one structure, reporting the best round of each
+     * @param subject
+     * @param distribution
+     * @param keys in insertion order
+     * @param lookups the same keys in an independent order
+     * @param rounds
+     */
+    private static void run(Subject subject, Distribution distribution, Integer[] keys, Integer[] lookups, int rounds) {
+        String[] operations = { "insert", "contains", "search", "iterator", "inorder", "delete" };
+        Measurement[] best = new Measurement[operations.length];
+
+        for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+            Measurement[] measured = new Measurement[operations.length];
+            subject.reset();
+
+            Measurement m = Measurement.start();
+            for (Integer key : keys) {
+                subject.insert(key);
+            }
+            measured[0] = m.stop(keys.length);
+            subject.prepareReads();
+
+            m = Measurement.start();
+            long found = 0;
+            for (Integer key : lookups) {
+                if (subject.contains(key)) found++;
+            }
+            measured[1] = m.stop(lookups.length);
+
+            m = Measurement.start();
+            for (Integer key : lookups) {
+                if (subject.search(key) != null) found++;
+            }
+            measured[2] = m.stop(lookups.length);
+
+            m = Measurement.start();
+            Iterator<Integer> iterator = subject.iterator();
+            while (iterator.hasNext()) {
+                found += iterator.next();
+            }
+            measured[3] = m.stop(keys.length);
+
+            m = Measurement.start();
+            found += subject.inorder().size();
+            measured[4] = m.stop(keys.length);
+
+            if (subject.deletes()) {
+                m = Measurement.start();
+                for (Integer key : lookups) {
+                    subject.delete(key);
+                }
+                measured[5] = m.stop(lookups.length);
+            }
+
+            sink += found;
+            if (round >= WARMUP_ROUNDS) {
+                for (int i = 0; i < operations.length; i++) {
+                    if (measured[i] != null && (best[i] == null || measured[i].nanosPerOp < best[i].nanosPerOp)) {
+                        best[i] = measured[i];
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < operations.length; i++) {
+            if (best[i] == null) {
+                continue;
+            }
+            System.out.println(String.format("%-32s %-10s %9d %-9s %12.1f %12.1f %10d",
+                    subject.name, distribution.name().toLowerCase(), keys.length, operations[i],
+                    best[i].nanosPerOp, best[i].bytesPerOp, best[i].gcMillis));
+        }
+    }
+
+    /**
+     * Time, allocation and GC cost of one timed loop
+     */
+    static final class Measurement {
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private long startNanos, startBytes, startGcMillis;
+        double nanosPerOp, bytesPerOp;
+        long gcMillis;
+
+        static Measurement start() {
+            Measurement m = new Measurement();
+            m.startGcMillis = gcMillis();
+            m.startBytes = allocatedBytes();
+            m.startNanos = System.nanoTime();
+            return m;
+        }
+
+        Measurement stop(int operations) {
+            long nanos = System.nanoTime() - this.startNanos;
+            long bytes = allocatedBytes() - this.startBytes;
+            this.nanosPerOp = (double) nanos / operations;
+            this.bytesPerOp = (double) bytes / operations;
+            this.gcMillis = gcMillis() - this.startGcMillis;
+            return this;
+        }
+
+        /**
+         * @return bytes allocated so far by the current thread
+         */
+        static long allocatedBytes() {
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static long gcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Read-only list view over an int[], so primitive exports can be sized like the others
+     */
+    private static final class IntArrayList extends AbstractList<Integer> {
+        private final int[] values;
+
+        IntArrayList(int[] values) {
+            this.values = values;
+        }
+
+        public Integer get(int index) {
+            return this.values[index];
+        }
+
+        public int size() {
+            return this.values.length;
+        }
+    }
+
+    private static int[] parseSizes(String list) {
+        String[] parts = list.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
+    private static void shuffle(Integer[] keys, Random random) {
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+    }
+}
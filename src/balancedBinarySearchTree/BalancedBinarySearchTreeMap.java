@@ -0,0 +1,991 @@
+package balancedBinarySearchTree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Ordered key-value map on the same AVL core as BalancedBinarySearchTree.
+ * <br>
+ * Each entry is itself the tree node: EntryNode extends BalancedBinarySearchTreeNode with a value
+ * field, so a mapping costs one object, and the tree's delete relinks nodes rather than moving
+ * keys, so every value stays with its key. put, putIfAbsent and merge find or create the entry
+ * in a single descent and then update its value in place. The compute methods search first and
+ * link a new entry only once the function has returned a non-null value, as TreeMap does, so a
+ * function that throws or changes the map leaves no entry behind; a compute that produces null
+ * for an existing entry unlinks it without searching again.
+ * <br>
+ * Sub-map, head, tail and descending views are live and report their size in O(log n) from
+ * the subtree sizes. Navigation methods return immutable snapshots of entries; entries seen
+ * through entrySet() iterators write through to the map.
+ * @author Spencer Collins
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BalancedBinarySearchTreeMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    // Attributes
+    private final EntryTree<K, V> tree;
+    private final Comparator<K> comparator;
+    /** The whole map as a view, which entrySet() and the other collection views share */
+    private final SubMap all;
+
+    // Constructor
+    public BalancedBinarySearchTreeMap(Comparator<K> comparator) {
+        this.comparator = comparator;
+        this.tree = new EntryTree<K, V>(comparator);
+        this.all = new SubMap(true, null, true, true, null, true, false);
+    }
+
+    // Access Methods
+    @Override
+    public int size() {
+        return this.tree.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.tree.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.getEntry(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        EntryNode<K, V> entry = this.getEntry(key);
+        return entry != null ? entry.value : null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int previousSize = this.tree.size();
+        EntryNode<K, V> entry = entry(this.tree.insertNode(key));
+        V previous = entry.value;
+        entry.value = value;
+        return this.tree.size() != previousSize ? null : previous;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        EntryNode<K, V> entry = entry(this.tree.insertNode(key));
+        if (entry.value == null) {
+            entry.value = value;
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        EntryNode<K, V> entry = this.getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        V previous = entry.value;
+        this.tree.deleteNode(entry);
+        return previous;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        EntryNode<K, V> entry = this.getEntry(key);
+        if (entry != null && entry.value != null) {
+            return entry.value;
+        }
+
+        int expectedModCount = this.tree.modCount();
+        V value = mappingFunction.apply(key);
+        if (this.tree.modCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        // A null result adds nothing; an existing null mapping stays
+        if (value == null) {
+            return null;
+        }
+        if (entry == null) {
+            entry = entry(this.tree.insertNode(key));
+        }
+        entry.value = value;
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        EntryNode<K, V> entry = this.getEntry(key);
+        if (entry == null || entry.value == null) {
+            return null;
+        }
+        int expectedModCount = this.tree.modCount();
+        return this.store(entry, remappingFunction.apply(key, entry.value), expectedModCount);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        EntryNode<K, V> entry = this.getEntry(key);
+        int expectedModCount = this.tree.modCount();
+        V value = remappingFunction.apply(key, entry != null ? entry.value : null);
+        if (entry != null) {
+            return this.store(entry, value, expectedModCount);
+        }
+
+        if (this.tree.modCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (value != null) {
+            entry(this.tree.insertNode(key)).value = value;
+        }
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        EntryNode<K, V> entry = entry(this.tree.insertNode(key));
+        if (entry.value == null) {
+            entry.value = value;
+            return value;
+        }
+        int expectedModCount = this.tree.modCount();
+        return this.store(entry, remappingFunction.apply(entry.value, value), expectedModCount);
+    }
+
+    /**
+     * Give entry the value a remapping function produced, unlinking the entry if it is null
+     * @param entry
+     * @param value
+     * @param expectedModCount the tree's mod count before the function ran
+     * @return value
+     */
+    private V store(EntryNode<K, V> entry, V value, int expectedModCount) {
+        if (this.tree.modCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (value == null) {
+            this.tree.deleteNode(entry);
+        } else {
+            entry.value = value;
+        }
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        this.tree.clear();
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return this.comparator;
+    }
+
+    // Navigation
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return export(this.tree.getLeftmostNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return export(this.tree.getRightmostNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return this.poll(this.tree.getLeftmostNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return this.poll(this.tree.getRightmostNode());
+    }
+
+    @Override
+    public K firstKey() {
+        return key(this.tree.getLeftmostNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return key(this.tree.getRightmostNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return export(this.tree.floorNode(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(this.tree.floorNode(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return export(this.tree.floorNode(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(this.tree.floorNode(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return export(this.tree.ceilingNode(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(this.tree.ceilingNode(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return export(this.tree.ceilingNode(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(this.tree.ceilingNode(key, false));
+    }
+
+    // Views
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return this.all.entrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return this.navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<K>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return this.descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SubMap(true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (this.comparator.compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new SubMap(true, null, true, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap(false, fromKey, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return this.subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return this.headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return this.tailMap(fromKey, true);
+    }
+
+    // Convenience Methods
+    @SuppressWarnings("unchecked")
+    private EntryNode<K, V> getEntry(Object key) {
+        return entry(this.tree.searchForNode((K) key));
+    }
+
+    private Map.Entry<K, V> poll(BalancedBinarySearchTreeNode<K> node) {
+        Map.Entry<K, V> exported = export(node);
+        if (node != null) {
+            this.tree.deleteNode(node);
+        }
+        return exported;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> EntryNode<K, V> entry(BalancedBinarySearchTreeNode<K> node) {
+        return (EntryNode<K, V>) node;
+    }
+
+    private static <K, V> Map.Entry<K, V> export(BalancedBinarySearchTreeNode<K> node) {
+        if (node == null) {
+            return null;
+        }
+        EntryNode<K, V> entry = entry(node);
+        return new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), entry.value);
+    }
+
+    private static <K> K keyOrNull(BalancedBinarySearchTreeNode<K> node) {
+        return node != null ? node.getData() : null;
+    }
+
+    private static <K> K key(BalancedBinarySearchTreeNode<K> node) {
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node.getData();
+    }
+
+    /**
+     * Tree node that carries the value of its key
+     */
+    static final class EntryNode<K, V> extends BalancedBinarySearchTreeNode<K> implements Map.Entry<K, V> {
+        V value;
+
+        EntryNode(K key, BalancedBinarySearchTreeNode<K> parent) {
+            super(key, parent);
+        }
+
+        @Override
+        public K getKey() {
+            return this.getData();
+        }
+
+        @Override
+        public V getValue() {
+            return this.value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return Objects.equals(this.getKey(), other.getKey()) && Objects.equals(this.value, other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(this.getKey()) ^ Objects.hashCode(this.value);
+        }
+
+        @Override
+        public String toString() {
+            return this.getKey() + "=" + this.value;
+        }
+    }
+
+    /**
+     * The balanced tree, creating an EntryNode for every node
+     */
+    private static final class EntryTree<K, V> extends BalancedBinarySearchTree<K> {
+        EntryTree(Comparator<K> comparator) {
+            super(comparator);
+        }
+
+        @Override
+        BalancedBinarySearchTreeNode<K> createNode(K key, BalancedBinarySearchTreeNode<K> parent) {
+            return new EntryNode<K, V>(key, parent);
+        }
+    }
+
+    /**
+     * Iterator that walks the tree from a first entry towards a fence entry, which it does not
+     *   return, in either direction. It fails fast if the map is changed other than through remove().
+     */
+    private abstract class EntryIterator<E> implements Iterator<E> {
+        private BalancedBinarySearchTreeNode<K> nextNode;
+        private BalancedBinarySearchTreeNode<K> lastReturned;
+        private final BalancedBinarySearchTreeNode<K> fence;
+        private final boolean descending;
+        private int expectedModCount = tree.modCount();
+
+        EntryIterator(BalancedBinarySearchTreeNode<K> first, BalancedBinarySearchTreeNode<K> fence, boolean descending) {
+            this.nextNode = first == fence ? null : first;
+            this.fence = fence;
+            this.descending = descending;
+        }
+
+        abstract E extract(EntryNode<K, V> entry);
+
+        @Override
+        public boolean hasNext() {
+            return this.nextNode != null;
+        }
+
+        @Override
+        public E next() {
+            if (this.nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            if (tree.modCount() != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            this.lastReturned = this.nextNode;
+            this.nextNode = this.descending ? tree.predecessor(this.lastReturned) : tree.successor(this.lastReturned);
+            if (this.nextNode == this.fence) {
+                this.nextNode = null;
+            }
+            return this.extract(entry(this.lastReturned));
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (tree.modCount() != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            tree.deleteNode(this.lastReturned);
+            this.lastReturned = null;
+            this.expectedModCount = tree.modCount();
+        }
+    }
+
+    /**
+     * Live view of the keys between two optional bounds, in ascending or descending order.
+     *   Bounds are always held in the tree's ascending order; descending views swap the ends
+     *   they navigate from.
+     */
+    private final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        private final boolean fromStart, toEnd;
+        private final K lo, hi;
+        private final boolean loInclusive, hiInclusive;
+        private final boolean descending;
+
+        SubMap(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        // Bounds, in ascending order
+        private boolean tooLow(K key) {
+            if (this.fromStart) {
+                return false;
+            }
+            int compare = comparator.compare(key, this.lo);
+            return compare < 0 || (compare == 0 && !this.loInclusive);
+        }
+
+        private boolean tooHigh(K key) {
+            if (this.toEnd) {
+                return false;
+            }
+            int compare = comparator.compare(key, this.hi);
+            return compare > 0 || (compare == 0 && !this.hiInclusive);
+        }
+
+        private boolean inRange(K key) {
+            return !this.tooLow(key) && !this.tooHigh(key);
+        }
+
+        /**
+         * @param key
+         * @param inclusive
+         * @return true if a new view bounded at key stays inside this one
+         */
+        private boolean inRange(K key, boolean inclusive) {
+            if (inclusive) {
+                return this.inRange(key);
+            }
+            return (this.fromStart || comparator.compare(key, this.lo) >= 0)
+                    && (this.toEnd || comparator.compare(key, this.hi) <= 0);
+        }
+
+        private BalancedBinarySearchTreeNode<K> lowest() {
+            BalancedBinarySearchTreeNode<K> node = this.fromStart ? tree.getLeftmostNode() : tree.ceilingNode(this.lo, this.loInclusive);
+            return node == null || this.tooHigh(node.getData()) ? null : node;
+        }
+
+        private BalancedBinarySearchTreeNode<K> highest() {
+            BalancedBinarySearchTreeNode<K> node = this.toEnd ? tree.getRightmostNode() : tree.floorNode(this.hi, this.hiInclusive);
+            return node == null || this.tooLow(node.getData()) ? null : node;
+        }
+
+        private BalancedBinarySearchTreeNode<K> ceiling(K key, boolean inclusive) {
+            if (this.tooLow(key)) {
+                return this.lowest();
+            }
+            BalancedBinarySearchTreeNode<K> node = tree.ceilingNode(key, inclusive);
+            return node == null || this.tooHigh(node.getData()) ? null : node;
+        }
+
+        private BalancedBinarySearchTreeNode<K> floor(K key, boolean inclusive) {
+            if (this.tooHigh(key)) {
+                return this.highest();
+            }
+            BalancedBinarySearchTreeNode<K> node = tree.floorNode(key, inclusive);
+            return node == null || this.tooLow(node.getData()) ? null : node;
+        }
+
+        /**
+         * @return the first node past the high end of the view; null if the view runs to the end
+         */
+        private BalancedBinarySearchTreeNode<K> highFence() {
+            return this.toEnd ? null : tree.ceilingNode(this.hi, !this.hiInclusive);
+        }
+
+        /**
+         * @return the first node past the low end of the view; null if the view runs from the start
+         */
+        private BalancedBinarySearchTreeNode<K> lowFence() {
+            return this.fromStart ? null : tree.floorNode(this.lo, !this.loInclusive);
+        }
+
+        // Navigation, in the view's order
+        private BalancedBinarySearchTreeNode<K> first() {
+            return this.descending ? this.highest() : this.lowest();
+        }
+
+        private BalancedBinarySearchTreeNode<K> last() {
+            return this.descending ? this.lowest() : this.highest();
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return export(this.first());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return export(this.last());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            return poll(this.first());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            return poll(this.last());
+        }
+
+        @Override
+        public K firstKey() {
+            return key(this.first());
+        }
+
+        @Override
+        public K lastKey() {
+            return key(this.last());
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return export(this.descending ? this.ceiling(key, false) : this.floor(key, false));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(this.descending ? this.ceiling(key, false) : this.floor(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return export(this.descending ? this.ceiling(key, true) : this.floor(key, true));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(this.descending ? this.ceiling(key, true) : this.floor(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return export(this.descending ? this.floor(key, true) : this.ceiling(key, true));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(this.descending ? this.floor(key, true) : this.ceiling(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return export(this.descending ? this.floor(key, false) : this.ceiling(key, false));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(this.descending ? this.floor(key, false) : this.ceiling(key, false));
+        }
+
+        // Access Methods
+        /**
+         * @return number of entries in the view, counted in O(log n) from the subtree sizes
+         */
+        @Override
+        public int size() {
+            if (this.fromStart && this.toEnd) {
+                return tree.size();
+            }
+            int below = this.fromStart ? 0 : this.countBelow(this.lo, !this.loInclusive);
+            int upTo = this.toEnd ? tree.size() : this.countBelow(this.hi, this.hiInclusive);
+            return Math.max(upTo - below, 0);
+        }
+
+        /**
+         * @param key
+         * @param inclusive
+         * @return number of keys less than key, or less than or equal to it if inclusive
+         */
+        private int countBelow(K key, boolean inclusive) {
+            int rank = tree.rank(key);
+            return inclusive && tree.contains(key) ? rank + 1 : rank;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.lowest() == null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean containsKey(Object key) {
+            return this.inRange((K) key) && BalancedBinarySearchTreeMap.this.containsKey(key);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V get(Object key) {
+            return this.inRange((K) key) ? BalancedBinarySearchTreeMap.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!this.inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return BalancedBinarySearchTreeMap.this.put(key, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V remove(Object key) {
+            return this.inRange((K) key) ? BalancedBinarySearchTreeMap.this.remove(key) : null;
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return this.descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        // Views
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator<Map.Entry<K, V>>(first(),
+                            descending ? lowFence() : highFence(), descending) {
+                        @Override
+                        Map.Entry<K, V> extract(EntryNode<K, V> entry) {
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return SubMap.this.size();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return SubMap.this.isEmpty();
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry)) {
+                        return false;
+                    }
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                    EntryNode<K, V> node = getEntry(entry.getKey());
+                    return node != null && SubMap.this.inRange(node.getKey()) && Objects.equals(node.value, entry.getValue());
+                }
+
+                @Override
+                public boolean remove(Object o) {
+                    if (!this.contains(o)) {
+                        return false;
+                    }
+                    tree.deleteNode(getEntry(((Map.Entry<?, ?>) o).getKey()));
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return this.navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet<K>(this);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return this.descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(this.fromStart, this.lo, this.loInclusive, this.toEnd, this.hi, this.hiInclusive, !this.descending);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (!this.inRange(fromKey, fromInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (!this.inRange(toKey, toInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            if (this.descending) {
+                if (comparator.compare(fromKey, toKey) < 0) {
+                    throw new IllegalArgumentException("fromKey < toKey");
+                }
+                return new SubMap(false, toKey, toInclusive, false, fromKey, fromInclusive, true);
+            }
+            if (comparator.compare(fromKey, toKey) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (!this.inRange(toKey, inclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            if (this.descending) {
+                return new SubMap(false, toKey, inclusive, this.toEnd, this.hi, this.hiInclusive, true);
+            }
+            return new SubMap(this.fromStart, this.lo, this.loInclusive, false, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (!this.inRange(fromKey, inclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (this.descending) {
+                return new SubMap(this.fromStart, this.lo, this.loInclusive, false, fromKey, inclusive, true);
+            }
+            return new SubMap(false, fromKey, inclusive, this.toEnd, this.hi, this.hiInclusive, false);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return this.subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return this.headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return this.tailMap(fromKey, true);
+        }
+    }
+
+    /**
+     * Live NavigableSet of the keys of a map or map view
+     */
+    private static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+        private final NavigableMap<E, ?> map;
+
+        KeySet(NavigableMap<E, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            final Iterator<? extends Map.Entry<E, ?>> entries = this.map.entrySet().iterator();
+            return new Iterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    return entries.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return this.descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return this.map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return this.map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!this.map.containsKey(o)) {
+                return false;
+            }
+            this.map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            this.map.clear();
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return this.map.comparator();
+        }
+
+        @Override
+        public E first() {
+            return this.map.firstKey();
+        }
+
+        @Override
+        public E last() {
+            return this.map.lastKey();
+        }
+
+        @Override
+        public E lower(E e) {
+            return this.map.lowerKey(e);
+        }
+
+        @Override
+        public E floor(E e) {
+            return this.map.floorKey(e);
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return this.map.ceilingKey(e);
+        }
+
+        @Override
+        public E higher(E e) {
+            return this.map.higherKey(e);
+        }
+
+        @Override
+        public E pollFirst() {
+            Map.Entry<E, ?> entry = this.map.pollFirstEntry();
+            return entry != null ? entry.getKey() : null;
+        }
+
+        @Override
+        public E pollLast() {
+            Map.Entry<E, ?> entry = this.map.pollLastEntry();
+            return entry != null ? entry.getKey() : null;
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<E>(this.map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            return new KeySet<E>(this.map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<E>(this.map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<E>(this.map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return this.subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return this.headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return this.tailSet(fromElement, true);
+        }
+    }
+
+}
@@ -10,6 +10,12 @@ public class BalancedBinarySearchTreeNode<T> {
 
     private BalancedBinarySearchTreeNode<T> left, right, parent;
     private int height;
+    /** Number of elements in the subtree rooted here, repeats included */
+    private int size;
+    /** Number of times this node's data occurs; above 1 only in a multiset */
+    private int count;
+    /** Colour under the RED_BLACK balancing policy; ignored by the others */
+    private boolean red;
     private final T data;
     
     public BalancedBinarySearchTreeNode() {
@@ -25,6 +31,8 @@ public class BalancedBinarySearchTreeNode<T> {
         this.right = null;
         this.parent = parent;
         this.height = 0;
+        this.size = 1;
+        this.count = 1;
         this.data = data;
     }
     
@@ -76,6 +84,30 @@ public class BalancedBinarySearchTreeNode<T> {
         this.height = height;
     }
     
+    public int getSize() {
+        return this.size;
+    }
+    
+    public void setSize(int size) {
+        this.size = size;
+    }
+    
+    public int getCount() {
+        return this.count;
+    }
+    
+    public void setCount(int count) {
+        this.count = count;
+    }
+    
+    public boolean isRed() {
+        return this.red;
+    }
+    
+    public void setRed(boolean red) {
+        this.red = red;
+    }
+    
     
     @Override
     public String toString() {
@@ -0,0 +1,462 @@
+package balancedBinarySearchTree;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a BalancedBinarySearchTree in a compact binary format and reads it back.
+ * <br>
+ * Writing streams the elements straight from the tree in order, and reading rebuilds the
+ * tree from that order in O(n), with no comparison-driven descents and no rotations. Neither
+ * side holds more than one buffer of bytes, so a tree can go to or come from a file, socket or
+ * pipe of any length. The format is:
+ * <br><pre>
+ * | magic (4) | version (1) | flags (1) | nodes (varint) | element, [count (varint)] ... | [CRC32 (4)] |
+ * </pre>
+ * Each element is encoded by the ElementCodec against the one before it. A multiset follows
+ * each element with its number of occurrences. With CHECKSUM set in the flags, the stream ends
+ * with the CRC32 of every byte before it. Varints are unsigned LEB128, 7 bits per byte.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class BalancedBinarySearchTreeSerializer<T> {
+
+    private static final int MAGIC = 0x42425354; // "BBST"
+    private static final int VERSION = 1;
+
+    // Flags
+    private static final int CHECKSUM = 1;
+    private static final int MULTISET = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Attributes
+    private final ElementCodec<T> codec;
+    private final boolean checksum;
+
+    // Constructor
+    /**
+     * @param codec
+     * @param checksum whether written streams end with a CRC32; streams are read either way
+     */
+    public BalancedBinarySearchTreeSerializer(ElementCodec<T> codec, boolean checksum) {
+        this.codec = codec;
+        this.checksum = checksum;
+    }
+
+    // Writing
+    /**
+     * @param tree
+     * @param channel left open
+     * @throws IOException if the channel cannot be written
+     */
+    public void write(BalancedBinarySearchTree<T> tree, WritableByteChannel channel) throws IOException {
+        Output out = new Output(channel, ByteBuffer.allocateDirect(BUFFER_SIZE), this.checksum);
+        this.write(tree, out);
+        out.flush();
+    }
+
+    /**
+     * @param tree
+     * @param stream left open
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(BalancedBinarySearchTree<T> tree, OutputStream stream) throws IOException {
+        this.write(tree, Channels.newChannel(stream));
+        stream.flush();
+    }
+
+    /**
+     * Write the tree into a buffer, from its position onwards
+     * @param tree
+     * @param target
+     * @throws IOException if an element cannot be encoded
+     * @throws java.nio.BufferOverflowException if the tree does not fit
+     */
+    public void write(BalancedBinarySearchTree<T> tree, ByteBuffer target) throws IOException {
+        this.write(tree, new Output(null, target, this.checksum));
+    }
+
+    private void write(BalancedBinarySearchTree<T> tree, Output out) throws IOException {
+        boolean multiset = tree.isMultiset();
+        int nodes = tree.size();
+        if (multiset) {
+            // Repeats share a node, so the number of nodes has to be counted
+            nodes = 0;
+            for (BalancedBinarySearchTreeNode<T> node = tree.getLeftmostNode(); node != null; node = tree.successor(node)) {
+                if (node.getCount() > 0) {
+                    nodes++;
+                }
+            }
+        }
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte((this.checksum ? CHECKSUM : 0) | (multiset ? MULTISET : 0));
+        out.writeVarLong(nodes);
+
+        T previous = null;
+        for (BalancedBinarySearchTreeNode<T> node = tree.getLeftmostNode(); node != null; node = tree.successor(node)) {
+            // Tombstones left by lazy deletion hold nothing and are not written
+            if (node.getCount() == 0) {
+                continue;
+            }
+            this.codec.encode(previous, node.getData(), out);
+            if (multiset) {
+                out.writeVarLong(node.getCount());
+            }
+            previous = node.getData();
+        }
+
+        if (this.checksum) {
+            out.writeChecksum();
+        }
+    }
+
+    // Reading
+    /**
+     * @param channel left open; it may have been read past the end of the tree
+     * @param comparator must order the elements as the tree that was written did
+     * @return the rebuilt tree, a multiset if the written tree was one
+     * @throws IOException if the channel cannot be read, or does not hold a valid tree
+     */
+    public BalancedBinarySearchTree<T> read(ReadableByteChannel channel, Comparator<T> comparator) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.limit(0);
+        return this.read(new Input(channel, buffer), comparator);
+    }
+
+    /**
+     * @param stream left open; it may have been read past the end of the tree
+     * @param comparator must order the elements as the tree that was written did
+     * @return the rebuilt tree, a multiset if the written tree was one
+     * @throws IOException if the stream cannot be read, or does not hold a valid tree
+     */
+    public BalancedBinarySearchTree<T> read(InputStream stream, Comparator<T> comparator) throws IOException {
+        return this.read(Channels.newChannel(stream), comparator);
+    }
+
+    /**
+     * Read a tree from a buffer, from its position onwards, leaving the position just past it
+     * @param source
+     * @param comparator must order the elements as the tree that was written did
+     * @return the rebuilt tree, a multiset if the written tree was one
+     * @throws IOException if the buffer does not hold a valid tree
+     */
+    public BalancedBinarySearchTree<T> read(ByteBuffer source, Comparator<T> comparator) throws IOException {
+        return this.read(new Input(null, source), comparator);
+    }
+
+    private BalancedBinarySearchTree<T> read(Input in, Comparator<T> comparator) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a serialized balanced binary search tree");
+        }
+        int version = in.readByte() & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        int flags = in.readByte() & 0xFF;
+        in.setChecksum((flags & CHECKSUM) != 0);
+        int nodes = in.readLength();
+
+        BalancedBinarySearchTree<T> tree = new BalancedBinarySearchTree<T>(comparator, (flags & MULTISET) != 0);
+        try {
+            tree.buildFromSorted(new ElementIterator(in, nodes, (flags & MULTISET) != 0), nodes);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt tree: " + e.getMessage(), e);
+        }
+
+        if ((flags & CHECKSUM) != 0) {
+            in.verifyChecksum();
+        }
+        return tree;
+    }
+
+    /**
+     * Decodes elements, and their counts in a multiset, as buildFromSorted asks for them
+     */
+    private final class ElementIterator implements BalancedBinarySearchTree.CountedIterator<T> {
+        private final Input in;
+        private final boolean multiset;
+        private int remaining;
+        private T previous;
+        private int count = 1;
+
+        ElementIterator(Input in, int nodes, boolean multiset) {
+            this.in = in;
+            this.remaining = nodes;
+            this.multiset = multiset;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (this.remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                this.previous = codec.decode(this.previous, this.in);
+                if (this.multiset) {
+                    this.count = this.in.readLength();
+                    if (this.count == 0) {
+                        throw new IOException("Corrupt tree: element " + this.previous + " occurs 0 times");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.remaining--;
+            return this.previous;
+        }
+
+        @Override
+        public int count() {
+            return this.count;
+        }
+    }
+
+    /**
+     * Bytes being written, gathered in a buffer that is drained to a channel as it fills
+     */
+    public static final class Output {
+        /** Null when writing straight into the buffer */
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        /** Null unless a checksum is written */
+        private final CRC32 crc;
+        /** Position in the buffer up to which the checksum has been updated */
+        private int checked;
+
+        Output(WritableByteChannel channel, ByteBuffer buffer, boolean checksum) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.crc = checksum ? new CRC32() : null;
+            this.checked = buffer.position();
+        }
+
+        public void writeByte(int b) throws IOException {
+            this.ensure(1);
+            this.buffer.put((byte) b);
+        }
+
+        public void writeInt(int value) throws IOException {
+            this.ensure(4);
+            this.buffer.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            this.ensure(8);
+            this.buffer.putLong(value);
+        }
+
+        /**
+         * @param value treated as unsigned; small values take fewer bytes
+         * @throws IOException
+         */
+        public void writeVarLong(long value) throws IOException {
+            this.ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                this.buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.buffer.put((byte) value);
+        }
+
+        /**
+         * @param value zigzag encoded first, so values near zero, either side, take fewer bytes
+         * @throws IOException
+         */
+        public void writeSignedVarLong(long value) throws IOException {
+            this.writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                this.ensure(1);
+                int chunk = Math.min(length, this.buffer.remaining());
+                this.buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        void writeChecksum() throws IOException {
+            this.ensure(4);
+            this.updateChecksum();
+            this.buffer.putInt((int) this.crc.getValue());
+        }
+
+        /**
+         * Make room for bytes more bytes, draining the buffer to the channel if need be
+         * @param bytes
+         * @throws IOException
+         */
+        private void ensure(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes && this.channel != null) {
+                this.flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (this.channel == null) {
+                return;
+            }
+            this.updateChecksum();
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+            this.checked = 0;
+        }
+
+        private void updateChecksum() {
+            if (this.crc != null) {
+                ByteBuffer unchecked = this.buffer.duplicate();
+                unchecked.limit(unchecked.position()).position(this.checked);
+                this.crc.update(unchecked);
+                this.checked = this.buffer.position();
+            }
+        }
+    }
+
+    /**
+     * Bytes being read, through a buffer that is refilled from a channel as it empties
+     */
+    public static final class Input {
+        /** Null when reading straight from the buffer */
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+        /** Null once the header says the stream has no checksum */
+        private CRC32 crc = new CRC32();
+        /** Position in the buffer up to which the checksum has been updated */
+        private int checked;
+
+        Input(ReadableByteChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.checked = buffer.position();
+        }
+
+        public byte readByte() throws IOException {
+            this.require(1);
+            return this.buffer.get();
+        }
+
+        public int readInt() throws IOException {
+            this.require(4);
+            return this.buffer.getInt();
+        }
+
+        public long readLong() throws IOException {
+            this.require(8);
+            return this.buffer.getLong();
+        }
+
+        public long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint longer than 10 bytes");
+        }
+
+        public long readSignedVarLong() throws IOException {
+            long value = this.readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * @return an unsigned varint that must fit in an int, as lengths and counts do
+         * @throws IOException if it does not
+         */
+        public int readLength() throws IOException {
+            long value = this.readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Length " + Long.toUnsignedString(value) + " out of range");
+            }
+            return (int) value;
+        }
+
+        public void readBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                this.require(1);
+                int chunk = Math.min(length, this.buffer.remaining());
+                this.buffer.get(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        /**
+         * Every byte is checked until the flags are read, as they say whether there is a checksum
+         * @param checksum
+         */
+        void setChecksum(boolean checksum) {
+            if (!checksum) {
+                this.crc = null;
+            }
+        }
+
+        void verifyChecksum() throws IOException {
+            this.updateChecksum();
+            int expected = (int) this.crc.getValue();
+            if (this.readInt() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+        }
+
+        /**
+         * Make sure bytes more bytes are buffered, refilling from the channel if need be
+         * @param bytes
+         * @throws IOException
+         */
+        private void require(int bytes) throws IOException {
+            if (this.buffer.remaining() >= bytes) {
+                return;
+            }
+            if (this.channel == null) {
+                throw new EOFException();
+            }
+            this.updateChecksum();
+            this.buffer.compact();
+            while (this.buffer.position() < bytes) {
+                if (this.channel.read(this.buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            this.buffer.flip();
+            this.checked = 0;
+        }
+
+        private void updateChecksum() {
+            if (this.crc != null) {
+                ByteBuffer unchecked = this.buffer.duplicate();
+                unchecked.limit(unchecked.position()).position(this.checked);
+                this.crc.update(unchecked);
+                this.checked = this.buffer.position();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,333 @@
+package balancedBinarySearchTree;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for one BalancedBinarySearchTree, returned by
+ * BalancedBinarySearchTree.enableStats().
+ * <br>
+ * The tree only calls into its stats while they are enabled; disabled, each operation pays a
+ * single null check. Counters are LongAdders, so they can be polled from any thread, or over
+ * JMX after register(), while the tree is in use. Comparisons count the levels descended by
+ * insert, delete and search, one comparison per level. Bulk operations (insertAll's merge,
+ * building from sorted data, union, intersect and difference) add the elements they insert or
+ * remove to the insert and delete counters once they finish, but record no latency or
+ * comparisons. Size and height are read from the tree without locking, so they may lag behind
+ * a change being made at the same moment.
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeStats implements BalancedBinarySearchTreeStatsMBean {
+
+    // Attributes
+    private final BalancedBinarySearchTree<?> tree;
+
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder duplicateInserts = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LongAdder missedDeletes = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder missedSearches = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder doubleRotations = new LongAdder();
+
+    private final LatencyHistogram insertLatency = new LatencyHistogram();
+    private final LatencyHistogram deleteLatency = new LatencyHistogram();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+
+    // Constructor
+    BalancedBinarySearchTreeStats(BalancedBinarySearchTree<?> tree) {
+        this.tree = tree;
+    }
+
+    // Recording
+    void recordInsert(boolean added, long nanos) {
+        (added ? this.inserts : this.duplicateInserts).increment();
+        this.insertLatency.record(nanos);
+    }
+
+    void recordDelete(boolean deleted, long nanos) {
+        (deleted ? this.deletes : this.missedDeletes).increment();
+        this.deleteLatency.record(nanos);
+    }
+
+    void recordSearch(boolean found, long nanos) {
+        (found ? this.searches : this.missedSearches).increment();
+        this.searchLatency.record(nanos);
+    }
+
+    /**
+     * @param added elements a bulk operation added
+     * @param duplicates elements it was given that were already present
+     */
+    void recordBulkInsert(int added, int duplicates) {
+        this.inserts.add(added);
+        this.duplicateInserts.add(duplicates);
+    }
+
+    /**
+     * @param deleted elements a bulk operation removed
+     * @param missed elements it was given to remove that were not present
+     */
+    void recordBulkDelete(int deleted, int missed) {
+        this.deletes.add(deleted);
+        this.missedDeletes.add(missed);
+    }
+
+    void recordComparisons(int count) {
+        this.comparisons.add(count);
+    }
+
+    /**
+     * @param isDouble true for a double rotation, which is counted once rather than as two singles
+     */
+    void recordRotation(boolean isDouble) {
+        (isDouble ? this.doubleRotations : this.rotations).increment();
+    }
+
+    // JMX
+    /**
+     * Register with the platform MBean server as balancedBinarySearchTree:type=BalancedBinarySearchTree,name=name
+     * @param name
+     * @return the name registered under
+     * @throws JMException if the name is malformed or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("balancedBinarySearchTree:type=BalancedBinarySearchTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    // Access Methods
+    /**
+     * @return inserts that added an element
+     */
+    @Override
+    public long getInserts() {
+        return this.inserts.sum();
+    }
+
+    /**
+     * @return inserts that found the element already present
+     */
+    @Override
+    public long getDuplicateInserts() {
+        return this.duplicateInserts.sum();
+    }
+
+    /**
+     * @return deletes that removed an element
+     */
+    @Override
+    public long getDeletes() {
+        return this.deletes.sum();
+    }
+
+    /**
+     * @return deletes of elements that were not present
+     */
+    @Override
+    public long getMissedDeletes() {
+        return this.missedDeletes.sum();
+    }
+
+    /**
+     * @return searches, contains and count calls that found the element
+     */
+    @Override
+    public long getSearches() {
+        return this.searches.sum();
+    }
+
+    /**
+     * @return searches, contains and count calls that did not find the element
+     */
+    @Override
+    public long getMissedSearches() {
+        return this.missedSearches.sum();
+    }
+
+    @Override
+    public long getComparisons() {
+        return this.comparisons.sum();
+    }
+
+    /**
+     * @return average comparisons, and so levels descended, per insert, delete and search
+     */
+    @Override
+    public double getComparisonsPerOperation() {
+        long operations = this.getInserts() + this.getDuplicateInserts() + this.getDeletes()
+                + this.getMissedDeletes() + this.getSearches() + this.getMissedSearches();
+        return operations == 0 ? 0 : (double) this.getComparisons() / operations;
+    }
+
+    @Override
+    public long getRotations() {
+        return this.rotations.sum();
+    }
+
+    @Override
+    public long getDoubleRotations() {
+        return this.doubleRotations.sum();
+    }
+
+    @Override
+    public int getSize() {
+        return this.tree.size();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.tree.height();
+    }
+
+    /**
+     * @return height of a perfectly balanced tree of the same size; -1 if empty
+     */
+    @Override
+    public int getOptimalHeight() {
+        int size = this.getSize();
+        return size == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(size);
+    }
+
+    public LatencyHistogram getInsertLatency() {
+        return this.insertLatency;
+    }
+
+    public LatencyHistogram getDeleteLatency() {
+        return this.deleteLatency;
+    }
+
+    public LatencyHistogram getSearchLatency() {
+        return this.searchLatency;
+    }
+
+    @Override
+    public long getInsertP50Nanos() {
+        return this.insertLatency.percentile(0.5);
+    }
+
+    @Override
+    public long getInsertP99Nanos() {
+        return this.insertLatency.percentile(0.99);
+    }
+
+    @Override
+    public long getDeleteP50Nanos() {
+        return this.deleteLatency.percentile(0.5);
+    }
+
+    @Override
+    public long getDeleteP99Nanos() {
+        return this.deleteLatency.percentile(0.99);
+    }
+
+    @Override
+    public long getSearchP50Nanos() {
+        return this.searchLatency.percentile(0.5);
+    }
+
+    @Override
+    public long getSearchP99Nanos() {
+        return this.searchLatency.percentile(0.99);
+    }
+
+    // Convenience Methods
+    @Override
+    public void reset() {
+        this.inserts.reset();
+        this.duplicateInserts.reset();
+        this.deletes.reset();
+        this.missedDeletes.reset();
+        this.searches.reset();
+        this.missedSearches.reset();
+        this.comparisons.reset();
+        this.rotations.reset();
+        this.doubleRotations.reset();
+        this.insertLatency.reset();
+        this.deleteLatency.reset();
+        this.searchLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "inserts=" + this.getInserts() + " duplicateInserts=" + this.getDuplicateInserts()
+                + " deletes=" + this.getDeletes() + " missedDeletes=" + this.getMissedDeletes()
+                + " searches=" + this.getSearches() + " missedSearches=" + this.getMissedSearches()
+                + " comparisons/op=" + String.format("%.2f", this.getComparisonsPerOperation())
+                + " rotations=" + this.getRotations() + " doubleRotations=" + this.getDoubleRotations()
+                + " size=" + this.getSize() + " height=" + this.getHeight() + " optimalHeight=" + this.getOptimalHeight();
+    }
+
+    /**
+     * Histogram of latencies in power of two buckets: bucket b counts latencies in [2^b, 2^(b+1)) nanoseconds
+     */
+    public static final class LatencyHistogram {
+        private final LongAdder[] buckets = new LongAdder[64];
+
+        LatencyHistogram() {
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            this.buckets[63 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+        }
+
+        /**
+         * @return number of latencies in each bucket
+         */
+        public long[] counts() {
+            long[] counts = new long[this.buckets.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = this.buckets[i].sum();
+            }
+            return counts;
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : this.buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @param fraction between 0 and 1
+         * @return upper bound, in nanoseconds, of the bucket holding that fraction of latencies; 0 if none were recorded
+         */
+        public long percentile(double fraction) {
+            long[] counts = this.counts();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return i >= 62 ? Long.MAX_VALUE : 1L << (i + 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            for (LongAdder bucket : this.buckets) {
+                bucket.reset();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package balancedBinarySearchTree;
+
+/**
+ * Management interface of BalancedBinarySearchTreeStats, as seen through JMX
+ * @author Spencer Collins
+ */
+public interface BalancedBinarySearchTreeStatsMBean {
+
+    // Operation counts
+    long getInserts();
+    long getDuplicateInserts();
+    long getDeletes();
+    long getMissedDeletes();
+    long getSearches();
+    long getMissedSearches();
+
+    // Structure
+    long getComparisons();
+    double getComparisonsPerOperation();
+    long getRotations();
+    long getDoubleRotations();
+    int getSize();
+    int getHeight();
+    int getOptimalHeight();
+
+    // Latency, as the upper bound of the power of two bucket the percentile falls in
+    long getInsertP50Nanos();
+    long getInsertP99Nanos();
+    long getDeleteP50Nanos();
+    long getDeleteP99Nanos();
+    long getSearchP50Nanos();
+    long getSearchP99Nanos();
+
+    /**
+     * Zero every counter and histogram
+     */
+    void reset();
+}
@@ -0,0 +1,345 @@
+package balancedBinarySearchTree;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * BalancedBinarySearchTree holding at most a fixed number of elements, evicting one whenever
+ * an insert would go over.
+ * <br>
+ * The tree keeps the nodes it evicts from ready to hand: the smallest and largest nodes are
+ * cached, and for EVICT_OLDEST every node is also linked into a list in insertion order. An
+ * eviction therefore unlinks a known node, with no search and no comparisons, and only the
+ * short rebalance of that node's path remains. Each evicted element is passed to the
+ * eviction listener, if one is set. getLeftmostNode() and getRightmostNode() answer from the
+ * cache in O(1).
+ * <br>
+ * join, split and lazy deletion are not supported, since they would move nodes past the
+ * capacity and the caches; union, intersect and difference work one element at a time so
+ * eviction applies.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class BoundedBalancedBinarySearchTree<T> extends BalancedBinarySearchTree<T> {
+
+    /**
+     * Which element makes room when the tree is full
+     */
+    public enum EvictionPolicy {
+        /** Evict the smallest element, keeping the greatest capacity elements (top N) */
+        EVICT_MIN,
+        /** Evict the largest element, keeping the least capacity elements (bottom N) */
+        EVICT_MAX,
+        /** Evict the element inserted longest ago (a time window or FIFO cache) */
+        EVICT_OLDEST
+    }
+
+    // Attributes
+    private final int capacity;
+    private final EvictionPolicy policy;
+    private Consumer<? super T> evictionListener;
+
+    private BalancedBinarySearchTreeNode<T> minNode;
+    private BalancedBinarySearchTreeNode<T> maxNode;
+    /** Ends of the insertion order list; only kept for EVICT_OLDEST */
+    private AgedNode<T> oldest;
+    private AgedNode<T> newest;
+
+    // Constructor
+    /**
+     * @param comparator
+     * @param capacity most elements the tree will hold
+     * @param policy
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public BoundedBalancedBinarySearchTree(Comparator<T> comparator, int capacity, EvictionPolicy policy) {
+        super(comparator);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    // Access Methods
+    /**
+     * Insert data, then evict while the tree is over capacity. A full EVICT_MIN (EVICT_MAX) tree
+     *   evicts data straight away, without adding it, if it is below the minimum (above the maximum).
+     * @param data
+     * @return true if data was added to the tree and is still in it
+     */
+    @Override
+    public boolean insert(T data) {
+        if (this.size() >= this.capacity) {
+            BalancedBinarySearchTreeStats stats = this.getStats();
+            long start = stats != null ? System.nanoTime() : 0L;
+            if (this.policy == EvictionPolicy.EVICT_MIN && this.getComparator().compare(data, this.minNode.getData()) < 0
+                    || this.policy == EvictionPolicy.EVICT_MAX && this.getComparator().compare(data, this.maxNode.getData()) > 0) {
+                this.evicted(data);
+                // Counted like any other insert that adds nothing
+                if (stats != null) {
+                    stats.recordComparisons(1);
+                    stats.recordInsert(false, System.nanoTime() - start);
+                }
+                return false;
+            }
+        }
+        if (!super.insert(data)) {
+            return false;
+        }
+        boolean kept = true;
+        while (this.size() > this.capacity) {
+            kept &= this.evict() != data;
+        }
+        return kept;
+    }
+
+    /**
+     * Insert the elements one at a time, so each insert may evict
+     * @param batch
+     * @return true if any element was added and is still in the tree
+     */
+    @Override
+    public boolean insertAll(Collection<? extends T> batch) {
+        boolean added = false;
+        for (T data : batch) {
+            added |= this.insert(data);
+        }
+        return added;
+    }
+
+    /**
+     * Insert every element of other, one at a time so each insert may evict; other is left empty
+     * @param other tree ordered by the same comparator
+     * @return true if any element was added and is still in the tree
+     */
+    @Override
+    public boolean union(BalancedBinarySearchTree<T> other) {
+        if (other == this) {
+            return false;
+        }
+        boolean added = false;
+        for (T data : other) {
+            added |= this.insert(data);
+        }
+        other.clear();
+        return added;
+    }
+
+    /**
+     * Remove every element that other does not hold; other is left empty
+     * @param other tree ordered by the same comparator
+     * @return true if any element was removed
+     */
+    @Override
+    public boolean intersect(BalancedBinarySearchTree<T> other) {
+        if (other == this) {
+            return false;
+        }
+        boolean removed = false;
+        for (Iterator<T> iterator = this.iterator(); iterator.hasNext();) {
+            if (!other.contains(iterator.next())) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        other.clear();
+        return removed;
+    }
+
+    /**
+     * Remove every element that other holds; other is left empty
+     * @param other tree ordered by the same comparator
+     * @return true if any element was removed
+     */
+    @Override
+    public boolean difference(BalancedBinarySearchTree<T> other) {
+        if (other == this) {
+            boolean removed = !this.isEmpty();
+            this.clear();
+            return removed;
+        }
+        boolean removed = false;
+        for (T data : other) {
+            removed |= this.delete(data);
+        }
+        other.clear();
+        return removed;
+    }
+
+    /**
+     * @throws UnsupportedOperationException always; joining could exceed the capacity
+     */
+    @Override
+    public void join(BalancedBinarySearchTree<T> greater) {
+        throw new UnsupportedOperationException("A bounded tree cannot be joined");
+    }
+
+    /**
+     * @throws UnsupportedOperationException always; the split off tree would share the caches
+     */
+    @Override
+    public BalancedBinarySearchTree<T> split(T data) {
+        throw new UnsupportedOperationException("A bounded tree cannot be split");
+    }
+
+    /**
+     * @throws UnsupportedOperationException if enabled; a tombstone could be the cached min, max
+     *   or oldest node and still count against the capacity
+     */
+    @Override
+    public void setLazyDeletion(boolean enabled) {
+        if (enabled) {
+            throw new UnsupportedOperationException("A bounded tree cannot delete lazily");
+        }
+        super.setLazyDeletion(false);
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * @param listener called with each evicted element, on the thread that inserted; null for none
+     */
+    public void setEvictionListener(Consumer<? super T> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * @return the smallest node, in O(1); null if empty
+     */
+    @Override
+    public BalancedBinarySearchTreeNode<T> getLeftmostNode() {
+        return this.minNode;
+    }
+
+    /**
+     * @return the largest node, in O(1); null if empty
+     */
+    @Override
+    public BalancedBinarySearchTreeNode<T> getRightmostNode() {
+        return this.maxNode;
+    }
+
+    /**
+     * @return the element inserted longest ago; null if empty or not EVICT_OLDEST
+     */
+    public T getOldest() {
+        return this.oldest != null ? this.oldest.getData() : null;
+    }
+
+    @Override
+    public void clear() {
+        this.minNode = null;
+        this.maxNode = null;
+        this.oldest = null;
+        this.newest = null;
+        super.clear();
+    }
+
+    // Node Hooks
+    /**
+     * Create the node for data, noting it in the caches; only insert creates nodes here
+     */
+    @Override
+    BalancedBinarySearchTreeNode<T> createNode(T data, BalancedBinarySearchTreeNode<T> parent) {
+        BalancedBinarySearchTreeNode<T> node;
+        if (this.policy == EvictionPolicy.EVICT_OLDEST) {
+            AgedNode<T> aged = new AgedNode<T>(data, parent);
+            aged.older = this.newest;
+            if (this.newest != null) {
+                this.newest.newer = aged;
+            } else {
+                this.oldest = aged;
+            }
+            this.newest = aged;
+            node = aged;
+        } else {
+            node = super.createNode(data, parent);
+        }
+        if (this.minNode == null || this.getComparator().compare(data, this.minNode.getData()) < 0) {
+            this.minNode = node;
+        }
+        if (this.maxNode == null || this.getComparator().compare(data, this.maxNode.getData()) > 0) {
+            this.maxNode = node;
+        }
+        return node;
+    }
+
+    /**
+     * Unlink node from the caches before unlinking it from the tree; every removal comes here
+     */
+    @Override
+    void deleteNode(BalancedBinarySearchTreeNode<T> node) {
+        if (node == this.minNode) {
+            this.minNode = this.successor(node);
+        }
+        if (node == this.maxNode) {
+            this.maxNode = this.predecessor(node);
+        }
+        if (node instanceof AgedNode) {
+            AgedNode<T> aged = (AgedNode<T>) node;
+            if (aged.older != null) {
+                aged.older.newer = aged.newer;
+            } else {
+                this.oldest = aged.newer;
+            }
+            if (aged.newer != null) {
+                aged.newer.older = aged.older;
+            } else {
+                this.newest = aged.older;
+            }
+            aged.older = null;
+            aged.newer = null;
+        }
+        super.deleteNode(node);
+    }
+
+    /**
+     * Remove the node the policy picks and report its element
+     * @return the evicted element
+     */
+    private T evict() {
+        BalancedBinarySearchTreeNode<T> victim;
+        switch (this.policy) {
+        case EVICT_MIN:
+            victim = this.minNode;
+            break;
+        case EVICT_MAX:
+            victim = this.maxNode;
+            break;
+        default:
+            victim = this.oldest;
+            break;
+        }
+        this.deleteNode(victim);
+        this.evicted(victim.getData());
+        return victim.getData();
+    }
+
+    private void evicted(T data) {
+        if (this.evictionListener != null) {
+            this.evictionListener.accept(data);
+        }
+    }
+
+    /**
+     * Node that also sits in the list of nodes in insertion order
+     */
+    private static final class AgedNode<T> extends BalancedBinarySearchTreeNode<T> {
+        AgedNode<T> older, newer;
+
+        AgedNode(T data, BalancedBinarySearchTreeNode<T> parent) {
+            super(data, parent);
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package balancedBinarySearchTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe balanced binary search tree whose readers never block.
+ * <br>
+ * The tree is a volatile root over ImmutableBalancedBinarySearchTreeNodes. A writer takes the
+ * write lock, builds the new version by copying the O(log n) nodes on the path it changes,
+ * and publishes it by writing the root. A reader reads the root once and walks that version,
+ * which no one will ever change, so search, contains and iteration take no lock, never retry,
+ * and cannot observe a half-finished rotation. Iterators see the tree as it was when they
+ * were created, and snapshot() hands out that version as a PersistentBalancedBinarySearchTree.
+ * <br>
+ * Writers are serialized by a single lock; they contend only with each other.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class ConcurrentBalancedBinarySearchTree<T> implements Iterable<T> {
+
+    // Attributes
+    private volatile ImmutableBalancedBinarySearchTreeNode<T> root;
+    private final Comparator<T> comparator;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Constructor
+    public ConcurrentBalancedBinarySearchTree(Comparator<T> comparator) {
+        this.comparator = comparator;
+        this.clear();
+    }
+
+    // Access Methods
+    /**
+     * Insert data into and balance the binary tree
+     * @param data
+     * @return true if data was added to the tree
+     */
+    public boolean insert(T data) {
+        this.writeLock.lock();
+        try {
+            ImmutableBalancedBinarySearchTreeNode<T> previous = this.root;
+            ImmutableBalancedBinarySearchTreeNode<T> updated = ImmutableBalancedBinarySearchTreeNode.insert(previous, data, this.comparator);
+            this.root = updated;
+            return updated != previous;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Insert every element of batch under one acquisition of the write lock and publish the
+     *   result once, so readers see either none of the batch or all of it
+     * @param batch
+     * @return true if any element was added to the tree
+     */
+    public boolean insertAll(Collection<? extends T> batch) {
+        this.writeLock.lock();
+        try {
+            ImmutableBalancedBinarySearchTreeNode<T> previous = this.root;
+            ImmutableBalancedBinarySearchTreeNode<T> updated = previous;
+            for (T data : batch) {
+                updated = ImmutableBalancedBinarySearchTreeNode.insert(updated, data, this.comparator);
+            }
+            this.root = updated;
+            return updated != previous;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Function to find data in the tree and delete it, balancing out the tree appropriately
+     * @param data
+     * @return true if element was found and deleted, false otherwise
+     */
+    public boolean delete(T data) {
+        this.writeLock.lock();
+        try {
+            ImmutableBalancedBinarySearchTreeNode<T> previous = this.root;
+            ImmutableBalancedBinarySearchTreeNode<T> updated = ImmutableBalancedBinarySearchTreeNode.delete(previous, data, this.comparator);
+            this.root = updated;
+            return updated != previous;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    public boolean contains(T data) {
+        return ImmutableBalancedBinarySearchTreeNode.search(this.root, data, this.comparator) != null;
+    }
+
+    public T search(T data) {
+        ImmutableBalancedBinarySearchTreeNode<T> node = ImmutableBalancedBinarySearchTreeNode.search(this.root, data, this.comparator);
+        return node != null ? node.getData() : null;
+    }
+
+    /**
+     * Take a consistent point-in-time view of the tree in O(1). The snapshot shares its nodes
+     *   with the live tree, stays readable while writes continue, and holds no lock.
+     * @return the current version
+     */
+    public PersistentBalancedBinarySearchTree<T> snapshot() {
+        return new PersistentBalancedBinarySearchTree<T>(this.comparator, this.root);
+    }
+
+    /**
+     * @return number of elements in the tree
+     */
+    public int countNodes() {
+        return ImmutableBalancedBinarySearchTreeNode.size(this.root);
+    }
+
+    /**
+     * @return the height of the tree; -1 if empty
+     */
+    public int height() {
+        return ImmutableBalancedBinarySearchTreeNode.height(this.root);
+    }
+
+    /**
+     * Function to retrieve the data from the elements in the tree through an in-order traversal
+     * @return ArrayList of the data of all elements in the tree, in order, sized up front
+     */
+    public List<T> inorder() {
+        // Size and walk the same version
+        ImmutableBalancedBinarySearchTreeNode<T> root = this.root;
+        List<T> sorted = new ArrayList<T>(ImmutableBalancedBinarySearchTreeNode.size(root));
+        for (Iterator<T> iterator = ImmutableBalancedBinarySearchTreeNode.iterator(root); iterator.hasNext();) {
+            sorted.add(iterator.next());
+        }
+        return sorted;
+    }
+
+    // Convenience Methods
+    /**
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    /**
+     * Clears the tree of all its members
+     */
+    public void clear() {
+        this.writeLock.lock();
+        try {
+            this.root = null;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return iterator over the tree as it is now; later changes are not seen and never interfere
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return ImmutableBalancedBinarySearchTreeNode.iterator(this.root);
+    }
+
+}
@@ -0,0 +1,136 @@
+package balancedBinarySearchTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts elements to and from a variable number of bytes, for
+ * BalancedBinarySearchTreeSerializer.
+ * <br>
+ * Elements are written in order, and each is encoded against the element before it, so a codec
+ * can store just the difference: the gap between two numbers or the suffix two strings do not
+ * share. Unlike KeyCodec, the encoding need not preserve order.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public interface ElementCodec<T> {
+
+    /**
+     * @param previous the element written before data; null for the first
+     * @param data
+     * @param out
+     * @throws IOException if out cannot be written
+     */
+    void encode(T previous, T data, BalancedBinarySearchTreeSerializer.Output out) throws IOException;
+
+    /**
+     * @param previous the element read before this one; null for the first
+     * @param in
+     * @return the decoded element
+     * @throws IOException if in cannot be read or ends early
+     */
+    T decode(T previous, BalancedBinarySearchTreeSerializer.Input in) throws IOException;
+
+    /**
+     * @return codec for Integer elements: the zigzag varint of the difference from the previous
+     *   element, one byte for gaps under 64
+     */
+    static ElementCodec<Integer> ofInt() {
+        return new ElementCodec<Integer>() {
+            @Override
+            public void encode(Integer previous, Integer data, BalancedBinarySearchTreeSerializer.Output out) throws IOException {
+                // Wraps on overflow, and wraps back identically when decoded
+                out.writeSignedVarLong(previous == null ? data : data - previous);
+            }
+
+            @Override
+            public Integer decode(Integer previous, BalancedBinarySearchTreeSerializer.Input in) throws IOException {
+                int delta = (int) in.readSignedVarLong();
+                return previous == null ? delta : previous + delta;
+            }
+        };
+    }
+
+    /**
+     * @return codec for Long elements: the zigzag varint of the difference from the previous
+     *   element
+     */
+    static ElementCodec<Long> ofLong() {
+        return new ElementCodec<Long>() {
+            @Override
+            public void encode(Long previous, Long data, BalancedBinarySearchTreeSerializer.Output out) throws IOException {
+                out.writeSignedVarLong(previous == null ? data : data - previous);
+            }
+
+            @Override
+            public Long decode(Long previous, BalancedBinarySearchTreeSerializer.Input in) throws IOException {
+                long delta = in.readSignedVarLong();
+                return previous == null ? delta : previous + delta;
+            }
+        };
+    }
+
+    /**
+     * @return codec for String elements: the number of leading characters shared with the
+     *   previous element, then the rest in UTF-8
+     */
+    static ElementCodec<String> ofString() {
+        return new ElementCodec<String>() {
+            @Override
+            public void encode(String previous, String data, BalancedBinarySearchTreeSerializer.Output out) throws IOException {
+                int shared = 0;
+                if (previous != null) {
+                    int limit = Math.min(previous.length(), data.length());
+                    while (shared < limit && previous.charAt(shared) == data.charAt(shared)) {
+                        shared++;
+                    }
+                    // Never split a surrogate pair, or the suffix would not be valid UTF-16
+                    if (shared > 0 && Character.isHighSurrogate(data.charAt(shared - 1))) {
+                        shared--;
+                    }
+                }
+                byte[] suffix = data.substring(shared).getBytes(StandardCharsets.UTF_8);
+                out.writeVarLong(shared);
+                out.writeVarLong(suffix.length);
+                out.writeBytes(suffix, 0, suffix.length);
+            }
+
+            @Override
+            public String decode(String previous, BalancedBinarySearchTreeSerializer.Input in) throws IOException {
+                int shared = in.readLength();
+                if (shared > (previous == null ? 0 : previous.length())) {
+                    throw new IOException("Shared prefix of " + shared + " characters is longer than the previous element");
+                }
+                byte[] suffix = new byte[in.readLength()];
+                in.readBytes(suffix, 0, suffix.length);
+                String rest = new String(suffix, StandardCharsets.UTF_8);
+                return shared == 0 ? rest : previous.substring(0, shared) + rest;
+            }
+        };
+    }
+
+    /**
+     * @param codec
+     * @return codec writing each element as the codec's fixed-width bytes, for element types
+     *   that already have a KeyCodec
+     */
+    static <T> ElementCodec<T> of(final KeyCodec<T> codec) {
+        return new ElementCodec<T>() {
+            @Override
+            public void encode(T previous, T data, BalancedBinarySearchTreeSerializer.Output out) throws IOException {
+                byte[] bytes = new byte[codec.width()];
+                codec.encode(data, ByteBuffer.wrap(bytes), 0);
+                out.writeBytes(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public T decode(T previous, BalancedBinarySearchTreeSerializer.Input in) throws IOException {
+                byte[] bytes = new byte[codec.width()];
+                in.readBytes(bytes, 0, bytes.length);
+                return codec.decode(ByteBuffer.wrap(bytes), 0);
+            }
+        };
+    }
+}
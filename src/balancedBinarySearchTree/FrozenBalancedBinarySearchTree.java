@@ -0,0 +1,245 @@
+package balancedBinarySearchTree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only balanced binary search tree in Eytzinger (breadth-first) layout, produced by
+ * BalancedBinarySearchTree.freeze().
+ * <br>
+ * The tree is a single Object[] of references: the root at index 1 and the children of index
+ * k at 2k and 2k + 1. The references for the top levels, which every search passes through,
+ * share a handful of cache lines, and a search finds its next reference by arithmetic rather
+ * than by loading a node, but the elements themselves stay wherever they are on the heap, so
+ * each comparison still loads the element it compares against. Searches descend without an
+ * early exit, turning the comparison into an index update rather than a branch, and the
+ * answer is recovered from the bits of the final index, which is kept in a long so that
+ * stepping past the last level cannot overflow.
+ * <br>
+ * Freezing a multiset keeps every occurrence, so size() and iteration match the tree it was
+ * frozen from; equal elements sit next to each other in order and are found like any other.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public final class FrozenBalancedBinarySearchTree<T> implements Iterable<T> {
+
+    // Attributes
+    /** Elements in Eytzinger order, 1-based; index 0 is unused */
+    private final Object[] tree;
+    private final int size;
+    private final Comparator<T> comparator;
+
+    // Constructor
+    /**
+     * @param comparator
+     * @param sorted the elements in ascending order; equal elements are each kept
+     * @param size number of elements sorted yields
+     * @throws IllegalStateException if size + 1 slots do not fit in an array
+     */
+    FrozenBalancedBinarySearchTree(Comparator<T> comparator, Iterator<T> sorted, int size) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Cannot freeze " + size + " elements: index 0 is unused, so the layout needs one more slot than an array can hold");
+        }
+        this.comparator = comparator;
+        this.size = size;
+        this.tree = new Object[size + 1];
+
+        // Visiting the indexes in order places the sorted elements in Eytzinger order
+        for (int k = first(size); k != 0; k = successor(k, size)) {
+            this.tree[k] = sorted.next();
+        }
+    }
+
+    // Access Methods
+    public boolean contains(T data) {
+        int k = this.lowerBound(data);
+        return k != 0 && this.comparator.compare(this.dataAt(k), data) == 0;
+    }
+
+    public T search(T data) {
+        int k = this.lowerBound(data);
+        return k != 0 && this.comparator.compare(this.dataAt(k), data) == 0 ? this.dataAt(k) : null;
+    }
+
+    /**
+     * @param data
+     * @return the least element greater than or equal to data; null if there is none
+     */
+    public T ceiling(T data) {
+        int k = this.lowerBound(data);
+        return k != 0 ? this.dataAt(k) : null;
+    }
+
+    /**
+     * @param data
+     * @return the greatest element less than or equal to data; null if there is none
+     */
+    public T floor(T data) {
+        int k = this.upperBound(data);
+        k = k != 0 ? predecessor(k, this.size) : last(this.size);
+        return k != 0 ? this.dataAt(k) : null;
+    }
+
+    /**
+     * @param lo inclusive
+     * @param hi exclusive
+     * @return the elements in [lo, hi), in order
+     */
+    public Iterable<T> range(final T lo, final T hi) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                if (comparator.compare(lo, hi) >= 0) {
+                    return new EytzingerIterator(0, 0);
+                }
+                return new EytzingerIterator(lowerBound(lo), lowerBound(hi));
+            }
+        };
+    }
+
+    /**
+     * @return number of elements in the tree
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new EytzingerIterator(first(this.size), 0);
+    }
+
+    // Layout
+    /**
+     * @param data
+     * @return index of the least element greater than or equal to data; 0 if there is none
+     */
+    private int lowerBound(T data) {
+        long k = 1;
+        while (k <= this.size) {
+            // Go right while the element is smaller than data
+            k = 2 * k + (this.comparator.compare(this.dataAt((int) k), data) < 0 ? 1 : 0);
+        }
+        // Undo the trailing right turns, and the left turn before them, to reach the answer
+        return (int) (k >>> (Long.numberOfTrailingZeros(~k) + 1));
+    }
+
+    /**
+     * @param data
+     * @return index of the least element strictly greater than data; 0 if there is none
+     */
+    private int upperBound(T data) {
+        long k = 1;
+        while (k <= this.size) {
+            k = 2 * k + (this.comparator.compare(this.dataAt((int) k), data) <= 0 ? 1 : 0);
+        }
+        return (int) (k >>> (Long.numberOfTrailingZeros(~k) + 1));
+    }
+
+    /**
+     * @param size
+     * @return index of the smallest of size elements; 0 if empty
+     */
+    static int first(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        int k = 1;
+        while (2L * k <= size) {
+            k = 2 * k;
+        }
+        return k;
+    }
+
+    /**
+     * @param size
+     * @return index of the largest of size elements; 0 if empty
+     */
+    static int last(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        int k = 1;
+        while (2L * k + 1 <= size) {
+            k = 2 * k + 1;
+        }
+        return k;
+    }
+
+    /**
+     * @param k
+     * @param size
+     * @return index of the element after k in order; 0 if k is the last
+     */
+    static int successor(int k, int size) {
+        if (2L * k + 1 <= size) {
+            k = 2 * k + 1;
+            while (2L * k <= size) {
+                k = 2 * k;
+            }
+            return k;
+        }
+        // Climb while k is a right child, then once more
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    /**
+     * @param k
+     * @param size
+     * @return index of the element before k in order; 0 if k is the first
+     */
+    static int predecessor(int k, int size) {
+        if (2L * k <= size) {
+            k = 2 * k;
+            while (2L * k + 1 <= size) {
+                k = 2 * k + 1;
+            }
+            return k;
+        }
+        // Climb while k is a left child, then once more
+        return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dataAt(int k) {
+        return (T) this.tree[k];
+    }
+
+    /**
+     * Iterator over indexes from a first one up to, but not including, a fence; a fence of 0 runs to the end
+     */
+    private final class EytzingerIterator implements Iterator<T> {
+        private int next;
+        private final int fence;
+
+        EytzingerIterator(int first, int fence) {
+            this.next = first == fence ? 0 : first;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != 0;
+        }
+
+        @Override
+        public T next() {
+            if (this.next == 0) {
+                throw new NoSuchElementException();
+            }
+            int k = this.next;
+            this.next = successor(k, size);
+            if (this.next == this.fence) {
+                this.next = 0;
+            }
+            return dataAt(k);
+        }
+    }
+
+}
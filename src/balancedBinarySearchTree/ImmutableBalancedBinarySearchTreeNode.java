@@ -0,0 +1,226 @@
+package balancedBinarySearchTree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Node of a balanced binary search tree that is never changed once built.
+ * <br>
+ * Insert and delete copy only the nodes on the path from the root to the change, and share
+ * every other subtree with the tree they started from. A root therefore stays a valid,
+ * unchanging tree for as long as anyone holds it, which is what the concurrent and
+ * persistent trees are built on.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+final class ImmutableBalancedBinarySearchTreeNode<T> {
+
+    private final ImmutableBalancedBinarySearchTreeNode<T> left, right;
+    private final int height;
+    private final int size;
+    private final T data;
+
+    private ImmutableBalancedBinarySearchTreeNode(T data, ImmutableBalancedBinarySearchTreeNode<T> left, ImmutableBalancedBinarySearchTreeNode<T> right) {
+        this.data = data;
+        this.left = left;
+        this.right = right;
+        this.height = Math.max(height(left), height(right)) + 1;
+        this.size = size(left) + size(right) + 1;
+    }
+
+    ImmutableBalancedBinarySearchTreeNode<T> getLeftNode() {
+        return this.left;
+    }
+
+    ImmutableBalancedBinarySearchTreeNode<T> getRightNode() {
+        return this.right;
+    }
+
+    T getData() {
+        return this.data;
+    }
+
+    /**
+     * @param node
+     * @return height of node; -1 if null
+     */
+    static int height(ImmutableBalancedBinarySearchTreeNode<?> node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * @param node
+     * @return number of nodes in the subtree; 0 if null
+     */
+    static int size(ImmutableBalancedBinarySearchTreeNode<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * @param node root of the tree to search
+     * @param data
+     * @param comparator
+     * @return the node equal to data; null if absent
+     */
+    static <T> ImmutableBalancedBinarySearchTreeNode<T> search(ImmutableBalancedBinarySearchTreeNode<T> node, T data, Comparator<? super T> comparator) {
+        while (node != null) {
+            int compare = comparator.compare(data, node.data);
+            if (compare < 0) {
+                node = node.left;
+            } else if (compare > 0) {
+                node = node.right;
+            } else {
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @param node root of the tree to insert into
+     * @param data
+     * @param comparator
+     * @return root of the tree with data added; node itself if data was already present
+     */
+    static <T> ImmutableBalancedBinarySearchTreeNode<T> insert(ImmutableBalancedBinarySearchTreeNode<T> node, T data, Comparator<? super T> comparator) {
+        if (node == null) {
+            return new ImmutableBalancedBinarySearchTreeNode<T>(data, null, null);
+        }
+        int compare = comparator.compare(data, node.data);
+        if (compare < 0) {
+            ImmutableBalancedBinarySearchTreeNode<T> left = insert(node.left, data, comparator);
+            return left == node.left ? node : balance(node.data, left, node.right);
+        } else if (compare > 0) {
+            ImmutableBalancedBinarySearchTreeNode<T> right = insert(node.right, data, comparator);
+            return right == node.right ? node : balance(node.data, node.left, right);
+        }
+        // Duplicate, so share the whole tree
+        return node;
+    }
+
+    /**
+     * @param node root of the tree to delete from
+     * @param data
+     * @param comparator
+     * @return root of the tree with data removed; node itself if data was not present
+     */
+    static <T> ImmutableBalancedBinarySearchTreeNode<T> delete(ImmutableBalancedBinarySearchTreeNode<T> node, T data, Comparator<? super T> comparator) {
+        if (node == null) {
+            return null;
+        }
+        int compare = comparator.compare(data, node.data);
+        if (compare < 0) {
+            ImmutableBalancedBinarySearchTreeNode<T> left = delete(node.left, data, comparator);
+            return left == node.left ? node : balance(node.data, left, node.right);
+        } else if (compare > 0) {
+            ImmutableBalancedBinarySearchTreeNode<T> right = delete(node.right, data, comparator);
+            return right == node.right ? node : balance(node.data, node.left, right);
+        }
+
+        // One or zero children: the child takes the node's place
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Two children: the inorder successor takes the node's place
+        ImmutableBalancedBinarySearchTreeNode<T> inorderSuccessorNode = node.right;
+        while (inorderSuccessorNode.left != null) {
+            inorderSuccessorNode = inorderSuccessorNode.left;
+        }
+        return balance(inorderSuccessorNode.data, node.left, deleteLeftmost(node.right));
+    }
+
+    private static <T> ImmutableBalancedBinarySearchTreeNode<T> deleteLeftmost(ImmutableBalancedBinarySearchTreeNode<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.data, deleteLeftmost(node.left), node.right);
+    }
+
+    /**
+     * Build a node over two subtrees whose heights differ by at most 2, rotating if needed
+     * @param data
+     * @param left
+     * @param right
+     * @return root of the balanced subtree
+     * @see BalancedBinarySearchTree
+     */
+    static <T> ImmutableBalancedBinarySearchTreeNode<T> balance(T data, ImmutableBalancedBinarySearchTreeNode<T> left, ImmutableBalancedBinarySearchTreeNode<T> right) {
+        int balance = height(left) - height(right);
+
+        // If the left subtree is taller than the right subtree by more than 1
+        if (balance == 2) {
+            if (height(left.right) > height(left.left)) {
+                // Double rotation with left child
+                return node(left.right.data,
+                        node(left.data, left.left, left.right.left),
+                        node(data, left.right.right, right));
+            }
+            // Rotation with left child
+            return node(left.data, left.left, node(data, left.right, right));
+        }
+        // If the right subtree is taller than the left subtree by more than 1
+        else if (balance == -2) {
+            if (height(right.left) > height(right.right)) {
+                // Double rotation with right child
+                return node(right.left.data,
+                        node(data, left, right.left.left),
+                        node(right.data, right.left.right, right.right));
+            }
+            // Rotation with right child
+            return node(right.data, node(data, left, right.left), right.right);
+        }
+        return node(data, left, right);
+    }
+
+    private static <T> ImmutableBalancedBinarySearchTreeNode<T> node(T data, ImmutableBalancedBinarySearchTreeNode<T> left, ImmutableBalancedBinarySearchTreeNode<T> right) {
+        return new ImmutableBalancedBinarySearchTreeNode<T>(data, left, right);
+    }
+
+    /**
+     * @param root
+     * @return iterator over the tree under root, in order; it never sees later versions
+     */
+    static <T> Iterator<T> iterator(final ImmutableBalancedBinarySearchTreeNode<T> root) {
+        return new Iterator<T>() {
+            // The nodes whose data and right subtree are still to be visited; no path is
+            //   longer than the height, so the stack never grows
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            private final ImmutableBalancedBinarySearchTreeNode<T>[] stack = new ImmutableBalancedBinarySearchTreeNode[height(root) + 1];
+            private int depth = this.pushLeftSpine(root, 0);
+
+            private int pushLeftSpine(ImmutableBalancedBinarySearchTreeNode<T> node, int depth) {
+                while (node != null) {
+                    this.stack[depth++] = node;
+                    node = node.left;
+                }
+                return depth;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.depth > 0;
+            }
+
+            @Override
+            public T next() {
+                if (this.depth == 0) {
+                    throw new NoSuchElementException();
+                }
+                ImmutableBalancedBinarySearchTreeNode<T> node = this.stack[--this.depth];
+                this.stack[this.depth] = null;
+                this.depth = this.pushLeftSpine(node.right, this.depth);
+                return node.data;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.data + ")";
+    }
+}
@@ -0,0 +1,112 @@
+package balancedBinarySearchTree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts keys to and from a fixed number of bytes, for trees that store keys outside the heap.
+ * <br>
+ * Encodings must be order-preserving: comparing two encoded keys byte by byte, as unsigned
+ * values, has to give the same order as comparing the keys themselves.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public interface KeyCodec<T> {
+
+    /**
+     * @return number of bytes every encoded key takes
+     */
+    int width();
+
+    /**
+     * Write the key at an absolute offset, leaving the buffer's position untouched
+     * @param key
+     * @param target
+     * @param offset
+     */
+    void encode(T key, ByteBuffer target, int offset);
+
+    /**
+     * Read a key from an absolute offset, leaving the buffer's position untouched
+     * @param source
+     * @param offset
+     * @return the decoded key
+     */
+    T decode(ByteBuffer source, int offset);
+
+    /**
+     * @return codec for Integer keys: big-endian with the sign bit flipped
+     */
+    static KeyCodec<Integer> ofInt() {
+        return new KeyCodec<Integer>() {
+            @Override
+            public int width() {
+                return 4;
+            }
+
+            @Override
+            public void encode(Integer key, ByteBuffer target, int offset) {
+                target.putInt(offset, key ^ Integer.MIN_VALUE);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer source, int offset) {
+                return source.getInt(offset) ^ Integer.MIN_VALUE;
+            }
+        };
+    }
+
+    /**
+     * @return codec for Long keys: big-endian with the sign bit flipped
+     */
+    static KeyCodec<Long> ofLong() {
+        return new KeyCodec<Long>() {
+            @Override
+            public int width() {
+                return 8;
+            }
+
+            @Override
+            public void encode(Long key, ByteBuffer target, int offset) {
+                target.putLong(offset, key ^ Long.MIN_VALUE);
+            }
+
+            @Override
+            public Long decode(ByteBuffer source, int offset) {
+                return source.getLong(offset) ^ Long.MIN_VALUE;
+            }
+        };
+    }
+
+    /**
+     * @param width length every key must have
+     * @return codec for byte[] keys of exactly width bytes, ordered as unsigned bytes
+     */
+    static KeyCodec<byte[]> ofBytes(final int width) {
+        return new KeyCodec<byte[]>() {
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public void encode(byte[] key, ByteBuffer target, int offset) {
+                if (key.length != width) {
+                    throw new IllegalArgumentException("Expected a key of " + width + " bytes, got " + key.length);
+                }
+                for (int i = 0; i < width; i++) {
+                    target.put(offset + i, key[i]);
+                }
+            }
+
+            @Override
+            public byte[] decode(ByteBuffer source, int offset) {
+                byte[] key = new byte[width];
+                for (int i = 0; i < width; i++) {
+                    key[i] = source.get(offset + i);
+                }
+                return key;
+            }
+        };
+    }
+}
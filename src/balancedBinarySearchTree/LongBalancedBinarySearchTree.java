@@ -0,0 +1,416 @@
+package balancedBinarySearchTree;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Balanced binary search tree specialized for long keys.
+ * <br>
+ * Keys are compared directly rather than through a Comparator, and nodes are not objects:
+ * each node is an index into parallel arrays of key, children, parent and height. A node
+ * costs 21 bytes instead of the ~56 bytes of a BalancedBinarySearchTreeNode plus its boxed
+ * Long. Slots freed by delete are kept on a free-list and reused by later inserts.
+ * @author Spencer Collins
+ */
+public class LongBalancedBinarySearchTree implements Iterable<Long> {
+
+    /** Index used in place of a null reference */
+    private static final int NIL = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Attributes
+    private long[] keys;
+    private int[] left, right, parent;
+    private byte[] heights;
+    private int root;
+    private int size;
+    /** Number of slots that have ever been handed out */
+    private int used;
+    /** Head of the free-list, linked through the left array */
+    private int free;
+    private int modCount;
+
+    // Constructor
+    public LongBalancedBinarySearchTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongBalancedBinarySearchTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        this.keys = new long[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.parent = new int[capacity];
+        this.heights = new byte[capacity];
+        this.clear();
+    }
+
+    // Access Methods
+    /**
+     * Insert a key into and balance the binary tree
+     * @param key
+     * @return true if key was added to the tree
+     */
+    public boolean insert(long key) {
+        // If this is the first element in the tree, set it as the root
+        if (this.root == NIL) {
+            this.root = this.allocate(key, NIL);
+            return true;
+        }
+
+        // Walk down the tree to find the correct spot to place the node
+        int node = this.root;
+        while (true) {
+            long nodeKey = this.keys[node];
+            if (key < nodeKey) {
+                if (this.left[node] != NIL) {
+                    node = this.left[node];
+                } else {
+                    // allocate() may grow the arrays, so read it before indexing them
+                    int newNode = this.allocate(key, node);
+                    this.left[node] = newNode;
+                    break;
+                }
+            } else if (key > nodeKey) {
+                if (this.right[node] != NIL) {
+                    node = this.right[node];
+                } else {
+                    int newNode = this.allocate(key, node);
+                    this.right[node] = newNode;
+                    break;
+                }
+            } else {
+                // Duplicate, so do nothing
+                return false;
+            }
+        }
+
+        // Work back up the tree, adjusting heights and re-balancing if necessary
+        this.balance(node);
+        return true;
+    }
+
+    /**
+     * Function to find a key in the tree and delete it, balancing out the tree appropriately
+     * @param key
+     * @return true if key was found and deleted, false otherwise
+     */
+    public boolean delete(long key) {
+        int deadNode = this.searchForNode(key);
+        if (deadNode == NIL) {
+            return false;
+        }
+
+        // Two children: take over the inorder successor's key and delete the successor instead,
+        //   which has at most a right child
+        if (this.left[deadNode] != NIL && this.right[deadNode] != NIL) {
+            int inorderSuccessorNode = this.getLeftmostNode(this.right[deadNode]);
+            this.keys[deadNode] = this.keys[inorderSuccessorNode];
+            deadNode = inorderSuccessorNode;
+        }
+
+        // One or zero children: splice the node out
+        int child = this.left[deadNode] != NIL ? this.left[deadNode] : this.right[deadNode];
+        int parentNode = this.parent[deadNode];
+        if (child != NIL) {
+            this.parent[child] = parentNode;
+        }
+        this.replaceChild(parentNode, deadNode, child);
+        this.release(deadNode);
+
+        if (parentNode == NIL) {
+            this.root = child;
+        } else {
+            this.balance(parentNode);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        return this.searchForNode(key) != NIL;
+    }
+
+    private int searchForNode(long key) {
+        int node = this.root;
+        while (node != NIL) {
+            long nodeKey = this.keys[node];
+            if (key < nodeKey) {
+                node = this.left[node];
+            } else if (key > nodeKey) {
+                node = this.right[node];
+            } else {
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Function to work up the tree from specified node, balancing it and adjusting heights
+     * @param node
+     */
+    private void balance(int node) {
+        while (true) {
+            int balance = this.height(this.left[node]) - this.height(this.right[node]);
+
+            // If the left subtree is taller than the right subtree by more than 1
+            if (balance == 2) {
+                int child = this.left[node];
+                if (this.height(this.right[child]) > this.height(this.left[child])) {
+                    node = this.doubleRotateWithLeftChild(node);
+                } else {
+                    node = this.rotateWithLeftChild(node);
+                }
+            }
+            // If the right subtree is taller than the left subtree by more than 1
+            else if (balance == -2) {
+                int child = this.right[node];
+                if (this.height(this.left[child]) > this.height(this.right[child])) {
+                    node = this.doubleRotateWithRightChild(node);
+                } else {
+                    node = this.rotateWithRightChild(node);
+                }
+            }
+
+            this.updateHeight(node);
+
+            if (this.parent[node] != NIL) {
+                node = this.parent[node];
+            } else {
+                this.root = node;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rotate binary tree node with left child
+     * @param oldParent
+     * @return newParent
+     * @see BalancedBinarySearchTree
+     */
+    private int rotateWithLeftChild(int oldParent) {
+        int newParent = this.left[oldParent];
+        int moved = this.right[newParent];
+        this.left[oldParent] = moved;
+        if (moved != NIL) {
+            this.parent[moved] = oldParent;
+        }
+        this.right[newParent] = oldParent;
+
+        int grandParent = this.parent[oldParent];
+        this.replaceChild(grandParent, oldParent, newParent);
+        this.parent[newParent] = grandParent;
+        this.parent[oldParent] = newParent;
+
+        this.updateHeight(oldParent);
+        this.updateHeight(newParent);
+        return newParent;
+    }
+
+    /**
+     * Rotate binary tree node with right child
+     * @param oldParent
+     * @return newParent
+     * @see BalancedBinarySearchTree
+     */
+    private int rotateWithRightChild(int oldParent) {
+        int newParent = this.right[oldParent];
+        int moved = this.left[newParent];
+        this.right[oldParent] = moved;
+        if (moved != NIL) {
+            this.parent[moved] = oldParent;
+        }
+        this.left[newParent] = oldParent;
+
+        int grandParent = this.parent[oldParent];
+        this.replaceChild(grandParent, oldParent, newParent);
+        this.parent[newParent] = grandParent;
+        this.parent[oldParent] = newParent;
+
+        this.updateHeight(oldParent);
+        this.updateHeight(newParent);
+        return newParent;
+    }
+
+    private int doubleRotateWithLeftChild(int parent) {
+        this.rotateWithRightChild(this.left[parent]);
+        return this.rotateWithLeftChild(parent);
+    }
+
+    private int doubleRotateWithRightChild(int parent) {
+        this.rotateWithLeftChild(this.right[parent]);
+        return this.rotateWithRightChild(parent);
+    }
+
+    /**
+     * Point the parent's reference at previousNode to newNode instead
+     * @param parentNode may be NIL, in which case nothing changes
+     * @param previousNode
+     * @param newNode
+     */
+    private void replaceChild(int parentNode, int previousNode, int newNode) {
+        if (parentNode == NIL) {
+            return;
+        }
+        if (this.left[parentNode] == previousNode) {
+            this.left[parentNode] = newNode;
+        } else {
+            this.right[parentNode] = newNode;
+        }
+    }
+
+    private void updateHeight(int node) {
+        this.heights[node] = (byte) (Math.max(this.height(this.left[node]), this.height(this.right[node])) + 1);
+    }
+
+    /**
+     * Function to get the height of a node
+     * @param node
+     * @return height of node; -1 if NIL
+     */
+    private int height(int node) {
+        return node == NIL ? -1 : this.heights[node];
+    }
+
+    /**
+     * @return the height of the tree; -1 if empty
+     */
+    public int height() {
+        return this.height(this.root);
+    }
+
+    private int getLeftmostNode(int node) {
+        while (this.left[node] != NIL) {
+            node = this.left[node];
+        }
+        return node;
+    }
+
+    private int successor(int node) {
+        if (this.right[node] != NIL) {
+            return this.getLeftmostNode(this.right[node]);
+        }
+        int parentNode = this.parent[node];
+        while (parentNode != NIL && this.right[parentNode] == node) {
+            node = parentNode;
+            parentNode = this.parent[node];
+        }
+        return parentNode;
+    }
+
+    // Storage
+    /**
+     * Take a slot from the free-list, or from the end of the arrays, growing them if needed
+     * @param key
+     * @param parentNode
+     * @return index of the new leaf
+     */
+    private int allocate(long key, int parentNode) {
+        int node;
+        if (this.free != NIL) {
+            node = this.free;
+            this.free = this.left[node];
+        } else {
+            if (this.used == this.keys.length) {
+                this.grow();
+            }
+            node = this.used++;
+        }
+        this.keys[node] = key;
+        this.left[node] = NIL;
+        this.right[node] = NIL;
+        this.parent[node] = parentNode;
+        this.heights[node] = 0;
+        this.size++;
+        this.modCount++;
+        return node;
+    }
+
+    /**
+     * Return a slot to the free-list
+     * @param node
+     */
+    private void release(int node) {
+        this.left[node] = this.free;
+        this.free = node;
+        this.size--;
+        this.modCount++;
+    }
+
+    private void grow() {
+        int capacity = this.keys.length + (this.keys.length >> 1) + 1;
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.left = Arrays.copyOf(this.left, capacity);
+        this.right = Arrays.copyOf(this.right, capacity);
+        this.parent = Arrays.copyOf(this.parent, capacity);
+        this.heights = Arrays.copyOf(this.heights, capacity);
+    }
+
+    // Convenience Methods
+    /**
+     * @return number of keys in the tree
+     */
+    public int countNodes() {
+        return this.size;
+    }
+
+    /**
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Clears the tree of all its members, keeping the allocated arrays
+     */
+    public void clear() {
+        this.root = NIL;
+        this.size = 0;
+        this.used = 0;
+        this.free = NIL;
+        this.modCount++;
+    }
+
+    /**
+     * @return the keys in the tree, in order
+     */
+    public long[] inorder() {
+        long[] sorted = new long[this.size];
+        int i = 0;
+        for (PrimitiveIterator.OfLong iterator = this.iterator(); iterator.hasNext();) {
+            sorted[i++] = iterator.nextLong();
+        }
+        return sorted;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int nextNode = root == NIL ? NIL : getLeftmostNode(root);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return this.nextNode != NIL;
+            }
+
+            @Override
+            public long nextLong() {
+                if (this.nextNode == NIL) {
+                    throw new NoSuchElementException();
+                }
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                int node = this.nextNode;
+                this.nextNode = successor(node);
+                return keys[node];
+            }
+        };
+    }
+
+}
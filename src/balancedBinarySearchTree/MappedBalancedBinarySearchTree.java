@@ -0,0 +1,208 @@
+package balancedBinarySearchTree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OffHeapBalancedBinarySearchTree whose nodes live in a memory-mapped file, so the tree
+ * survives a restart and reopens without being rebuilt.
+ * <br>
+ * The file is a 64 byte header followed by the node slots:
+ * <br><pre>
+ * | magic (8) | version (4) | key width (4) | state (4) | root (4) | size (4) | used (4) | free (4) | checkpoints (8) | ...
+ * </pre>
+ * Nothing is forced to disk until checkpoint() (or close()) is called; it flushes the nodes and
+ * then records the tree's root and size in the header as CLEAN. The first change after a
+ * checkpoint marks the header DIRTY and forces it. Opening a CLEAN file only reads the header.
+ * Opening a DIRTY file, left behind by a crash, rebuilds the links from the live slots in O(n log n).
+ * Keys never move once written, so every key present at the last checkpoint and not deleted
+ * since is recovered; operations after the last checkpoint may be lost or partly applied. A
+ * slot's key is written before its height marks it live, so recovery never takes in a key
+ * that was only partly written.
+ * <br>
+ * The nodes are one mapping, so a file holds at most maxNodes(width) of them, under 2GB.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class MappedBalancedBinarySearchTree<T> extends OffHeapBalancedBinarySearchTree<T> implements Closeable {
+
+    private static final long MAGIC = 0x424253544d415031L; // "BBSTMAP1"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    // Header layout
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int WIDTH_OFFSET = 12;
+    private static final int STATE_OFFSET = 16;
+    private static final int ROOT_OFFSET = 20;
+    private static final int SIZE_OFFSET = 24;
+    private static final int USED_OFFSET = 28;
+    private static final int FREE_OFFSET = 32;
+    private static final int CHECKPOINTS_OFFSET = 40;
+
+    private static final int CLEAN = 0;
+    private static final int DIRTY = 1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // Attributes
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer nodes;
+    private boolean dirty;
+
+    // Constructor
+    private MappedBalancedBinarySearchTree(KeyCodec<T> codec, FileChannel channel, MappedByteBuffer header, MappedByteBuffer nodes) {
+        super(codec, nodes);
+        this.channel = channel;
+        this.header = header;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Open the tree stored in file, creating the file if it does not exist
+     * @param file
+     * @param codec must match the codec the file was written with
+     * @return the opened tree
+     * @throws IOException if the file cannot be mapped or is not a tree of this key width
+     */
+    public static <T> MappedBalancedBinarySearchTree<T> open(Path file, KeyCodec<T> codec) throws IOException {
+        return open(file, codec, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Open the tree stored in file, creating the file if it does not exist
+     * @param file
+     * @param codec must match the codec the file was written with
+     * @param initialCapacity number of node slots to reserve when the file is created
+     * @return the opened tree
+     * @throws IOException if the file cannot be mapped or is not a tree of this key width
+     */
+    public static <T> MappedBalancedBinarySearchTree<T> open(Path file, KeyCodec<T> codec, int initialCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int nodeSize = nodeSize(codec.width());
+            boolean created = channel.size() == 0;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+            if (created) {
+                header.putLong(MAGIC_OFFSET, MAGIC);
+                header.putInt(VERSION_OFFSET, VERSION);
+                header.putInt(WIDTH_OFFSET, codec.width());
+                header.putInt(STATE_OFFSET, CLEAN);
+                header.putInt(ROOT_OFFSET, NIL);
+                header.putInt(SIZE_OFFSET, 0);
+                header.putInt(USED_OFFSET, 0);
+                header.putInt(FREE_OFFSET, NIL);
+                header.putLong(CHECKPOINTS_OFFSET, 0);
+                header.force();
+            } else if (header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException(file + " is not a balanced binary search tree file");
+            } else if (header.getInt(WIDTH_OFFSET) != codec.width()) {
+                throw new IOException(file + " holds " + header.getInt(WIDTH_OFFSET) + " byte keys, codec writes " + codec.width());
+            }
+
+            // Map every whole slot in the file, or the initial capacity for a new file
+            long slots = (channel.size() - HEADER_SIZE) / nodeSize;
+            if (slots > maxNodes(codec.width())) {
+                throw new IOException(file + " holds " + slots + " node slots, more than the " + maxNodes(codec.width())
+                        + " that fit in one 2GB mapping");
+            }
+            int bytes = checkedBytes(Math.max(slots, Math.max(initialCapacity, 1)), nodeSize);
+            MappedByteBuffer nodes = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, bytes);
+
+            MappedBalancedBinarySearchTree<T> tree = new MappedBalancedBinarySearchTree<T>(codec, channel, header, nodes);
+            if (header.getInt(STATE_OFFSET) == CLEAN) {
+                tree.restore(header.getInt(ROOT_OFFSET), header.getInt(SIZE_OFFSET),
+                        header.getInt(USED_OFFSET), header.getInt(FREE_OFFSET));
+            } else {
+                tree.rebuild();
+                tree.checkpoint();
+            }
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Flush every change to disk and record the tree as CLEAN, so the next open needs no rebuild
+     */
+    public void checkpoint() {
+        this.nodes.force();
+        this.header.putInt(ROOT_OFFSET, this.rootNode());
+        this.header.putInt(SIZE_OFFSET, this.countNodes());
+        this.header.putInt(USED_OFFSET, this.usedSlots());
+        this.header.putInt(FREE_OFFSET, this.freeSlot());
+        this.header.putLong(CHECKPOINTS_OFFSET, this.header.getLong(CHECKPOINTS_OFFSET) + 1);
+        this.header.putInt(STATE_OFFSET, CLEAN);
+        this.header.force();
+        this.dirty = false;
+    }
+
+    /**
+     * @return number of checkpoints taken over the life of the file
+     */
+    public long checkpoints() {
+        return this.header.getLong(CHECKPOINTS_OFFSET);
+    }
+
+    /**
+     * Checkpoint and release the file; the tree must not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.channel.isOpen()) {
+            this.checkpoint();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Clears the tree, zeroing the slots so a later recovery cannot bring them back
+     */
+    @Override
+    public void clear() {
+        this.beforeWrite();
+        int bytes = this.usedSlots() * nodeSize(this.header.getInt(WIDTH_OFFSET));
+        for (int i = 0; i < bytes; i += 4) {
+            this.nodes.putInt(i, 0);
+        }
+        super.clear();
+    }
+
+    /**
+     * Mark the file DIRTY, and make sure that mark is on disk, before the first change since the last checkpoint
+     */
+    @Override
+    void beforeWrite() {
+        if (!this.dirty) {
+            this.header.putInt(STATE_OFFSET, DIRTY);
+            this.header.force();
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Extend the file and map the larger node region; the slots already in it carry over unchanged
+     */
+    @Override
+    ByteBuffer resize(ByteBuffer nodes, int capacity, int usedBytes) {
+        try {
+            this.nodes = this.channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, capacity);
+            return this.nodes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
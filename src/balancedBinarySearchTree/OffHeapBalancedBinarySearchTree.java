@@ -0,0 +1,703 @@
+package balancedBinarySearchTree;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Balanced binary search tree of fixed-width keys whose nodes live in a direct ByteBuffer.
+ * <br>
+ * Nothing per element is kept on the heap, so the garbage collector never scans the tree
+ * however large it grows. Keys are encoded by a KeyCodec and ordered by comparing the
+ * encoded bytes. Each node is laid out as
+ * <br><pre>
+ * | left (4) | right (4) | parent (4) | height (4) | key (width) |
+ * </pre>
+ * and addressed by its slot index. The height field holds height + 1 for a live node, FREE for
+ * a slot on the free-list (linked through the left field) and 0 for a slot never handed out.
+ * Keys never move once written: delete relinks nodes around the dead slot.
+ * <br>
+ * A single buffer limits the tree to 2GB of nodes, maxNodes(width) of them; growing past that
+ * throws IllegalStateException naming the limit.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class OffHeapBalancedBinarySearchTree<T> implements Iterable<T> {
+
+    /** Index used in place of a null reference */
+    static final int NIL = -1;
+    /** Height field of a slot that has never been handed out */
+    static final int UNUSED = 0;
+    /** Height field of a slot that is on the free-list */
+    static final int FREE = -1;
+
+    static final int LEFT = 0;
+    static final int RIGHT = 4;
+    static final int PARENT = 8;
+    static final int HEIGHT = 12;
+    static final int KEY = 16;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // Attributes
+    private final KeyCodec<T> codec;
+    private final int width;
+    private final int nodeSize;
+    private ByteBuffer buffer;
+    private int root;
+    private int size;
+    /** Number of slots that have ever been handed out */
+    private int used;
+    /** Head of the free-list */
+    private int free;
+    private int modCount;
+
+    /** Scratch space the key being looked up is encoded into */
+    private final ByteBuffer probe;
+
+    // Constructor
+    public OffHeapBalancedBinarySearchTree(KeyCodec<T> codec) {
+        this(codec, DEFAULT_CAPACITY);
+    }
+
+    public OffHeapBalancedBinarySearchTree(KeyCodec<T> codec, int initialCapacity) {
+        this(codec, ByteBuffer.allocateDirect(checkedBytes(Math.max(initialCapacity, 1), nodeSize(codec.width()))));
+        this.clear();
+    }
+
+    /**
+     * Adopt an existing node buffer without touching its contents; the tree starts out empty
+     *   until restore() or rebuild() is called
+     * @param codec
+     * @param nodes
+     */
+    OffHeapBalancedBinarySearchTree(KeyCodec<T> codec, ByteBuffer nodes) {
+        this.codec = codec;
+        this.width = codec.width();
+        this.nodeSize = nodeSize(this.width);
+        this.probe = ByteBuffer.allocate(this.width);
+        this.buffer = nodes;
+        this.root = NIL;
+        this.free = NIL;
+    }
+
+    // Access Methods
+    /**
+     * Insert a key into and balance the binary tree
+     * @param key
+     * @return true if key was added to the tree
+     */
+    public boolean insert(T key) {
+        this.codec.encode(key, this.probe, 0);
+
+        // If this is the first element in the tree, set it as the root
+        if (this.root == NIL) {
+            this.root = this.allocate(NIL);
+            return true;
+        }
+
+        // Walk down the tree to find the correct spot to place the node
+        int node = this.root;
+        while (true) {
+            int compare = this.compareProbe(node);
+            if (compare < 0) {
+                if (this.left(node) != NIL) {
+                    node = this.left(node);
+                } else {
+                    int newNode = this.allocate(node);
+                    this.setLeft(node, newNode);
+                    break;
+                }
+            } else if (compare > 0) {
+                if (this.right(node) != NIL) {
+                    node = this.right(node);
+                } else {
+                    int newNode = this.allocate(node);
+                    this.setRight(node, newNode);
+                    break;
+                }
+            } else {
+                // Duplicate, so do nothing
+                return false;
+            }
+        }
+
+        // Work back up the tree, adjusting heights and re-balancing if necessary
+        this.balance(node);
+        return true;
+    }
+
+    /**
+     * Function to find a key in the tree and delete it, balancing out the tree appropriately
+     * @param key
+     * @return true if key was found and deleted, false otherwise
+     */
+    public boolean delete(T key) {
+        int deadNode = this.searchForNode(key);
+        if (deadNode == NIL) {
+            return false;
+        }
+        this.beforeWrite();
+
+        // Two children: move the inorder successor, which has no left child, into the dead node's place
+        if (this.left(deadNode) != NIL && this.right(deadNode) != NIL) {
+            int inorderSuccessorNode = this.getLeftmostNode(this.right(deadNode));
+            int inorderSuccessorNodeParent = this.parent(inorderSuccessorNode);
+            int rebalanceFrom = inorderSuccessorNode;
+
+            // If the successor is farther down the tree, its right child takes its old place
+            if (inorderSuccessorNodeParent != deadNode) {
+                int successorChild = this.right(inorderSuccessorNode);
+                this.setLeft(inorderSuccessorNodeParent, successorChild);
+                if (successorChild != NIL) {
+                    this.setParent(successorChild, inorderSuccessorNodeParent);
+                }
+                this.setRight(inorderSuccessorNode, this.right(deadNode));
+                this.setParent(this.right(deadNode), inorderSuccessorNode);
+                rebalanceFrom = inorderSuccessorNodeParent;
+            }
+
+            this.setLeft(inorderSuccessorNode, this.left(deadNode));
+            this.setParent(this.left(deadNode), inorderSuccessorNode);
+            int parentNode = this.parent(deadNode);
+            this.setParent(inorderSuccessorNode, parentNode);
+            this.replaceChild(parentNode, deadNode, inorderSuccessorNode);
+            this.release(deadNode);
+
+            this.balance(rebalanceFrom);
+            return true;
+        }
+
+        // One or zero children: splice the node out
+        int child = this.left(deadNode) != NIL ? this.left(deadNode) : this.right(deadNode);
+        int parentNode = this.parent(deadNode);
+        if (child != NIL) {
+            this.setParent(child, parentNode);
+        }
+        this.replaceChild(parentNode, deadNode, child);
+        this.release(deadNode);
+
+        if (parentNode == NIL) {
+            this.root = child;
+        } else {
+            this.balance(parentNode);
+        }
+        return true;
+    }
+
+    public boolean contains(T key) {
+        return this.searchForNode(key) != NIL;
+    }
+
+    /**
+     * @param key
+     * @return the stored key equal to key, decoded from the buffer; null if absent
+     */
+    public T search(T key) {
+        int node = this.searchForNode(key);
+        return node != NIL ? this.codec.decode(this.buffer, this.keyOffset(node)) : null;
+    }
+
+    private int searchForNode(T key) {
+        this.codec.encode(key, this.probe, 0);
+        int node = this.root;
+        while (node != NIL) {
+            int compare = this.compareProbe(node);
+            if (compare < 0) {
+                node = this.left(node);
+            } else if (compare > 0) {
+                node = this.right(node);
+            } else {
+                break;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Compare the encoded probe key with a node's key as unsigned bytes, eight at a time
+     * @param node
+     * @return negative, zero or positive as the probe is less than, equal to or greater than the node
+     */
+    private int compareProbe(int node) {
+        int offset = this.keyOffset(node);
+        int i = 0;
+        for (; i + 8 <= this.width; i += 8) {
+            long a = this.probe.getLong(i);
+            long b = this.buffer.getLong(offset + i);
+            if (a != b) {
+                return Long.compareUnsigned(a, b);
+            }
+        }
+        for (; i < this.width; i++) {
+            int a = this.probe.get(i) & 0xff;
+            int b = this.buffer.get(offset + i) & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Function to work up the tree from specified node, balancing it and adjusting heights
+     * @param node
+     */
+    private void balance(int node) {
+        while (true) {
+            int balance = this.height(this.left(node)) - this.height(this.right(node));
+
+            // If the left subtree is taller than the right subtree by more than 1
+            if (balance == 2) {
+                int child = this.left(node);
+                if (this.height(this.right(child)) > this.height(this.left(child))) {
+                    this.rotateWithRightChild(child);
+                }
+                node = this.rotateWithLeftChild(node);
+            }
+            // If the right subtree is taller than the left subtree by more than 1
+            else if (balance == -2) {
+                int child = this.right(node);
+                if (this.height(this.left(child)) > this.height(this.right(child))) {
+                    this.rotateWithLeftChild(child);
+                }
+                node = this.rotateWithRightChild(node);
+            }
+
+            this.updateHeight(node);
+
+            if (this.parent(node) != NIL) {
+                node = this.parent(node);
+            } else {
+                this.root = node;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rotate binary tree node with left child
+     * @param oldParent
+     * @return newParent
+     * @see BalancedBinarySearchTree
+     */
+    private int rotateWithLeftChild(int oldParent) {
+        int newParent = this.left(oldParent);
+        int moved = this.right(newParent);
+        this.setLeft(oldParent, moved);
+        if (moved != NIL) {
+            this.setParent(moved, oldParent);
+        }
+        this.setRight(newParent, oldParent);
+
+        int grandParent = this.parent(oldParent);
+        this.replaceChild(grandParent, oldParent, newParent);
+        this.setParent(newParent, grandParent);
+        this.setParent(oldParent, newParent);
+
+        this.updateHeight(oldParent);
+        this.updateHeight(newParent);
+        return newParent;
+    }
+
+    /**
+     * Rotate binary tree node with right child
+     * @param oldParent
+     * @return newParent
+     * @see BalancedBinarySearchTree
+     */
+    private int rotateWithRightChild(int oldParent) {
+        int newParent = this.right(oldParent);
+        int moved = this.left(newParent);
+        this.setRight(oldParent, moved);
+        if (moved != NIL) {
+            this.setParent(moved, oldParent);
+        }
+        this.setLeft(newParent, oldParent);
+
+        int grandParent = this.parent(oldParent);
+        this.replaceChild(grandParent, oldParent, newParent);
+        this.setParent(newParent, grandParent);
+        this.setParent(oldParent, newParent);
+
+        this.updateHeight(oldParent);
+        this.updateHeight(newParent);
+        return newParent;
+    }
+
+    private void replaceChild(int parentNode, int previousNode, int newNode) {
+        if (parentNode == NIL) {
+            return;
+        }
+        if (this.left(parentNode) == previousNode) {
+            this.setLeft(parentNode, newNode);
+        } else {
+            this.setRight(parentNode, newNode);
+        }
+    }
+
+    private void updateHeight(int node) {
+        this.setHeight(node, Math.max(this.height(this.left(node)), this.height(this.right(node))) + 1);
+    }
+
+    /**
+     * @param node
+     * @return height of node; -1 if NIL
+     */
+    private int height(int node) {
+        return node == NIL ? -1 : this.buffer.getInt(this.offset(node) + HEIGHT) - 1;
+    }
+
+    /**
+     * @return the height of the tree; -1 if empty
+     */
+    public int height() {
+        return this.height(this.root);
+    }
+
+    private int getLeftmostNode(int node) {
+        while (this.left(node) != NIL) {
+            node = this.left(node);
+        }
+        return node;
+    }
+
+    private int successor(int node) {
+        if (this.right(node) != NIL) {
+            return this.getLeftmostNode(this.right(node));
+        }
+        int parentNode = this.parent(node);
+        while (parentNode != NIL && this.right(parentNode) == node) {
+            node = parentNode;
+            parentNode = this.parent(node);
+        }
+        return parentNode;
+    }
+
+    // Storage
+    static int nodeSize(int width) {
+        // Round up so the int fields of every node stay 4-byte aligned
+        return (KEY + width + 3) & ~3;
+    }
+
+    /**
+     * @param width
+     * @return most nodes a tree of width byte keys can hold, all in one buffer of at most 2GB
+     */
+    public static int maxNodes(int width) {
+        return Integer.MAX_VALUE / nodeSize(width);
+    }
+    
+    /**
+     * @param capacity
+     * @param nodeSize
+     * @return bytes capacity nodes take
+     * @throws IllegalStateException if that is more than one buffer can hold
+     */
+    static int checkedBytes(long capacity, int nodeSize) {
+        long bytes = capacity * nodeSize;
+        if (bytes > Integer.MAX_VALUE) {
+            throw tooLarge(capacity, nodeSize);
+        }
+        return (int) bytes;
+    }
+    
+    static IllegalStateException tooLarge(long capacity, int nodeSize) {
+        return new IllegalStateException("Cannot hold " + capacity + " nodes of " + nodeSize + " bytes: the nodes share one "
+                + "ByteBuffer, which is limited to " + Integer.MAX_VALUE + " bytes, so at most "
+                + (Integer.MAX_VALUE / nodeSize) + " nodes fit");
+    }
+
+    private int offset(int node) {
+        return node * this.nodeSize;
+    }
+
+    private int keyOffset(int node) {
+        return node * this.nodeSize + KEY;
+    }
+
+    private int left(int node) {
+        return this.buffer.getInt(this.offset(node) + LEFT);
+    }
+
+    private int right(int node) {
+        return this.buffer.getInt(this.offset(node) + RIGHT);
+    }
+
+    private int parent(int node) {
+        return this.buffer.getInt(this.offset(node) + PARENT);
+    }
+
+    private void setLeft(int node, int child) {
+        this.buffer.putInt(this.offset(node) + LEFT, child);
+    }
+
+    private void setRight(int node, int child) {
+        this.buffer.putInt(this.offset(node) + RIGHT, child);
+    }
+
+    private void setParent(int node, int parentNode) {
+        this.buffer.putInt(this.offset(node) + PARENT, parentNode);
+    }
+
+    private void setHeight(int node, int height) {
+        this.buffer.putInt(this.offset(node) + HEIGHT, height + 1);
+    }
+
+    /**
+     * Take a slot for the key held in the probe, from the free-list or from the end of the buffer
+     * @param parentNode
+     * @return index of the new leaf
+     */
+    private int allocate(int parentNode) {
+        this.beforeWrite();
+        int node;
+        if (this.free != NIL) {
+            node = this.free;
+            this.free = this.left(node);
+        } else {
+            if ((long) (this.used + 1) * this.nodeSize > this.buffer.capacity()) {
+                this.grow();
+            }
+            node = this.used++;
+        }
+        int offset = this.offset(node);
+        // The key goes in before the height marks the slot live, so a write torn part way
+        //   leaves a slot that recovery skips, never a live slot holding part of a key
+        for (int i = 0; i < this.width; i++) {
+            this.buffer.put(offset + KEY + i, this.probe.get(i));
+        }
+        this.buffer.putInt(offset + LEFT, NIL);
+        this.buffer.putInt(offset + RIGHT, NIL);
+        this.buffer.putInt(offset + PARENT, parentNode);
+        this.buffer.putInt(offset + HEIGHT, 1);
+        this.size++;
+        this.modCount++;
+        return node;
+    }
+
+    /**
+     * Return a slot to the free-list
+     * @param node
+     */
+    private void release(int node) {
+        this.pushFree(node);
+        this.size--;
+        this.modCount++;
+    }
+
+    private void pushFree(int node) {
+        this.setLeft(node, this.free);
+        this.buffer.putInt(this.offset(node) + HEIGHT, FREE);
+        this.free = node;
+    }
+
+    private void grow() {
+        long capacity = (long) (this.buffer.capacity() / this.nodeSize) * 2;
+        if (capacity * this.nodeSize > Integer.MAX_VALUE) {
+            capacity = Integer.MAX_VALUE / this.nodeSize;
+        }
+        if (capacity <= this.used) {
+            throw tooLarge(this.used + 1L, this.nodeSize);
+        }
+        this.buffer = this.resize(this.buffer, checkedBytes(capacity, this.nodeSize), this.offset(this.used));
+    }
+
+    /**
+     * Provide a larger node buffer holding the same first usedBytes
+     * @param nodes current buffer
+     * @param capacity bytes the new buffer must hold
+     * @param usedBytes bytes of nodes that must be carried over
+     * @return the new buffer
+     */
+    ByteBuffer resize(ByteBuffer nodes, int capacity, int usedBytes) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        ByteBuffer old = nodes.duplicate();
+        old.clear();
+        old.limit(usedBytes);
+        grown.put(old);
+        grown.clear();
+        return grown;
+    }
+
+    /**
+     * Called before the first byte of any node is changed by an insert, delete or clear
+     */
+    void beforeWrite() {
+    }
+
+    // Recovery
+    int rootNode() {
+        return this.root;
+    }
+
+    int usedSlots() {
+        return this.used;
+    }
+
+    int freeSlot() {
+        return this.free;
+    }
+
+    /**
+     * Take over the structure already in the buffer, as last described by these values
+     * @param root
+     * @param size
+     * @param used
+     * @param free
+     */
+    void restore(int root, int size, int used, int free) {
+        this.root = root;
+        this.size = size;
+        this.used = used;
+        this.free = free;
+        this.modCount++;
+    }
+
+    /**
+     * Rebuild the tree from the keys of every live slot in the buffer, ignoring whatever links
+     *   they hold; where two live slots carry the same key only one is kept. Used to recover a
+     *   buffer whose links may be half-written.
+     */
+    void rebuild() {
+        int slots = this.buffer.capacity() / this.nodeSize;
+        Integer[] live = new Integer[slots];
+        int count = 0;
+        int used = 0;
+        for (int node = 0; node < slots; node++) {
+            int marker = this.buffer.getInt(this.offset(node) + HEIGHT);
+            if (marker != UNUSED) {
+                used = node + 1;
+            }
+            if (marker != UNUSED && marker != FREE) {
+                live[count++] = node;
+            }
+        }
+        live = Arrays.copyOf(live, count);
+        Arrays.sort(live, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareKeys(a, b);
+            }
+        });
+
+        this.used = used;
+        this.free = NIL;
+        for (int node = used - 1; node >= 0; node--) {
+            int marker = this.buffer.getInt(this.offset(node) + HEIGHT);
+            if (marker == UNUSED || marker == FREE) {
+                this.pushFree(node);
+            }
+        }
+
+        // Keep the first slot of every run of equal keys, free the rest
+        int[] sorted = new int[count];
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct > 0 && this.compareKeys(sorted[distinct - 1], live[i]) == 0) {
+                this.pushFree(live[i]);
+            } else {
+                sorted[distinct++] = live[i];
+            }
+        }
+
+        this.root = this.link(sorted, 0, distinct - 1, NIL);
+        this.size = distinct;
+        this.modCount++;
+    }
+
+    /**
+     * Link sorted slots lo..hi into a perfectly balanced subtree
+     * @return root slot of the subtree; NIL if empty
+     */
+    private int link(int[] sorted, int lo, int hi, int parentNode) {
+        if (lo > hi) {
+            return NIL;
+        }
+        int mid = (lo + hi) >>> 1;
+        int node = sorted[mid];
+        this.setParent(node, parentNode);
+        this.setLeft(node, this.link(sorted, lo, mid - 1, node));
+        this.setRight(node, this.link(sorted, mid + 1, hi, node));
+        this.updateHeight(node);
+        return node;
+    }
+
+    private int compareKeys(int a, int b) {
+        int first = this.keyOffset(a);
+        int second = this.keyOffset(b);
+        for (int i = 0; i < this.width; i++) {
+            int x = this.buffer.get(first + i) & 0xff;
+            int y = this.buffer.get(second + i) & 0xff;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return 0;
+    }
+
+    // Convenience Methods
+    /**
+     * @return number of keys in the tree
+     */
+    public int countNodes() {
+        return this.size;
+    }
+
+    /**
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Clears the tree of all its members, keeping the allocated buffer
+     */
+    public void clear() {
+        this.beforeWrite();
+        this.root = NIL;
+        this.size = 0;
+        this.used = 0;
+        this.free = NIL;
+        this.modCount++;
+    }
+
+    /**
+     * @return bytes of off-heap memory currently reserved for nodes
+     */
+    public long reservedBytes() {
+        return this.buffer.capacity();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int nextNode = root == NIL ? NIL : getLeftmostNode(root);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return this.nextNode != NIL;
+            }
+
+            @Override
+            public T next() {
+                if (this.nextNode == NIL) {
+                    throw new NoSuchElementException();
+                }
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                int node = this.nextNode;
+                this.nextNode = successor(node);
+                return codec.decode(buffer, keyOffset(node));
+            }
+        };
+    }
+
+}
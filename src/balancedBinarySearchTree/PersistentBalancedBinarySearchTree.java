@@ -0,0 +1,120 @@
+package balancedBinarySearchTree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable balanced binary search tree: every insert and delete returns a new version and
+ * leaves the version it was called on untouched.
+ * <br>
+ * A new version copies only the O(log n) nodes on the path to the change and shares the rest
+ * with the old one, so keeping old versions around costs only the paths that differ. A version
+ * can be read and iterated from any thread without locking, and its nodes are reclaimed by the
+ * garbage collector once no version refers to them.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public final class PersistentBalancedBinarySearchTree<T> implements Iterable<T> {
+
+    // Attributes
+    private final ImmutableBalancedBinarySearchTreeNode<T> root;
+    private final Comparator<T> comparator;
+
+    // Constructor
+    /**
+     * Create the empty version
+     * @param comparator
+     */
+    public PersistentBalancedBinarySearchTree(Comparator<T> comparator) {
+        this(comparator, null);
+    }
+
+    PersistentBalancedBinarySearchTree(Comparator<T> comparator, ImmutableBalancedBinarySearchTreeNode<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    // Access Methods
+    /**
+     * @param data
+     * @return version with data added; this version if data is already present
+     */
+    public PersistentBalancedBinarySearchTree<T> insert(T data) {
+        return this.version(ImmutableBalancedBinarySearchTreeNode.insert(this.root, data, this.comparator));
+    }
+
+    /**
+     * @param data
+     * @return version with data removed; this version if data is not present
+     */
+    public PersistentBalancedBinarySearchTree<T> delete(T data) {
+        return this.version(ImmutableBalancedBinarySearchTreeNode.delete(this.root, data, this.comparator));
+    }
+
+    private PersistentBalancedBinarySearchTree<T> version(ImmutableBalancedBinarySearchTreeNode<T> root) {
+        return root == this.root ? this : new PersistentBalancedBinarySearchTree<T>(this.comparator, root);
+    }
+
+    public boolean contains(T data) {
+        return ImmutableBalancedBinarySearchTreeNode.search(this.root, data, this.comparator) != null;
+    }
+
+    public T search(T data) {
+        ImmutableBalancedBinarySearchTreeNode<T> node = ImmutableBalancedBinarySearchTreeNode.search(this.root, data, this.comparator);
+        return node != null ? node.getData() : null;
+    }
+
+    /**
+     * @return number of elements in this version
+     */
+    public int countNodes() {
+        return ImmutableBalancedBinarySearchTreeNode.size(this.root);
+    }
+
+    /**
+     * @return the height of this version; -1 if empty
+     */
+    public int height() {
+        return ImmutableBalancedBinarySearchTreeNode.height(this.root);
+    }
+
+    /**
+     * Function to retrieve the data from the elements in the tree through an in-order traversal
+     * @return ArrayList of the data of all elements in the tree, in order, sized up front
+     */
+    public List<T> inorder() {
+        List<T> sorted = new ArrayList<T>(this.countNodes());
+        for (T data : this) {
+            sorted.add(data);
+        }
+        return sorted;
+    }
+
+    // Convenience Methods
+    /**
+     * @return true if this version is empty
+     */
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    /**
+     * @return the empty version with the same ordering
+     */
+    public PersistentBalancedBinarySearchTree<T> clear() {
+        return this.version(null);
+    }
+
+    public Comparator<T> comparator() {
+        return this.comparator;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return ImmutableBalancedBinarySearchTreeNode.iterator(this.root);
+    }
+
+}
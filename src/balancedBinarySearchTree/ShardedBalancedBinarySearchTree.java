@@ -0,0 +1,519 @@
+package balancedBinarySearchTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Set of elements partitioned across independent ConcurrentBalancedBinarySearchTree shards,
+ * each filled by its own worker thread, so ingest runs on as many cores as there are shards.
+ * <br>
+ * Elements are routed to a shard either by range, between caller-chosen boundaries, or by
+ * hash. Writers hand elements to a Producer, which gathers them into one batch per shard and
+ * passes full batches to that shard's bounded queue, blocking while the queue is full. Each
+ * worker takes batches off its queue and inserts a whole batch under one acquisition of its
+ * shard's write lock. Reads never wait for the workers: contains and search go straight to
+ * the one shard that can hold the element, and iteration merges the shards in order.
+ * <br>
+ * Ingest is asynchronous: an element is only visible once its batch has been handed over and
+ * applied. Producer.flush() hands over partly filled batches, and flush() waits until every
+ * batch handed over before it has been applied.
+ * <br>
+ * Writers waiting on a full queue, or in flush(), check every so often that the shard's worker
+ * is still running, so a worker that was interrupted or died fails them with an
+ * IllegalStateException rather than leaving them blocked forever.
+ * @author Spencer Collins
+ *
+ * @param <T>
+ */
+public class ShardedBalancedBinarySearchTree<T> implements Iterable<T>, AutoCloseable {
+
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int DEFAULT_QUEUE_CAPACITY = 16;
+    /** How long a writer waits on a worker before checking that it is still running */
+    private static final long LIVENESS_CHECK_MILLIS = 100;
+
+    // Attributes
+    private final Comparator<T> comparator;
+    /** Ascending elements dividing the shards when partitioned by range; null when by hash */
+    private final List<T> boundaries;
+    private final ConcurrentBalancedBinarySearchTree<T>[] shards;
+    private final List<BlockingQueue<Batch>> queues;
+    private final Thread[] workers;
+    private final int batchSize;
+    /** Marks the end of a queue; the worker that takes it stops */
+    private final Batch stop = new Batch(null, 0, null);
+    /** First exception a worker hit while inserting since the last flush(), which reports and clears it */
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+    /** Held shared while handing over a batch and exclusively to close, so no batch lands behind a stop */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    /** Guarded by closing */
+    private boolean closed;
+
+    // Constructor
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ShardedBalancedBinarySearchTree(Comparator<T> comparator, List<T> boundaries, int shardCount) {
+        this.comparator = comparator;
+        this.boundaries = boundaries;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.shards = new ConcurrentBalancedBinarySearchTree[shardCount];
+        this.queues = new ArrayList<BlockingQueue<Batch>>(shardCount);
+        this.workers = new Thread[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new ConcurrentBalancedBinarySearchTree<T>(comparator);
+            this.queues.add(new ArrayBlockingQueue<Batch>(DEFAULT_QUEUE_CAPACITY));
+            this.workers[i] = new Thread(new Worker(i), "ShardedBalancedBinarySearchTree-shard-" + i);
+            // A tree that is never closed must not keep the JVM alive
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Partition by range: shard 0 holds the elements less than the first boundary, shard i
+     *   those from boundary i - 1 up to but not including boundary i, and the last shard the rest
+     * @param comparator
+     * @param boundaries in strictly ascending order
+     * @return a tree of boundaries.size() + 1 shards
+     * @throws IllegalArgumentException if boundaries are not strictly ascending
+     */
+    public static <T> ShardedBalancedBinarySearchTree<T> byRange(Comparator<T> comparator, List<? extends T> boundaries) {
+        List<T> copy = new ArrayList<T>(boundaries);
+        for (int i = 1; i < copy.size(); i++) {
+            if (comparator.compare(copy.get(i - 1), copy.get(i)) >= 0) {
+                throw new IllegalArgumentException("Boundaries are not strictly ascending at " + copy.get(i));
+            }
+        }
+        return new ShardedBalancedBinarySearchTree<T>(comparator, copy, copy.size() + 1);
+    }
+
+    /**
+     * Partition by hashCode(), which must agree with comparator: elements it finds equal have
+     *   to have equal hash codes
+     * @param comparator
+     * @param shards
+     * @return a tree of shards shards
+     * @throws IllegalArgumentException if shards is less than 1
+     */
+    public static <T> ShardedBalancedBinarySearchTree<T> byHash(Comparator<T> comparator, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is needed, got " + shards);
+        }
+        return new ShardedBalancedBinarySearchTree<T>(comparator, null, shards);
+    }
+
+    // Ingest
+    /**
+     * @return a new producer; each writing thread needs its own
+     */
+    public Producer producer() {
+        return new Producer();
+    }
+
+    /**
+     * Hand every element of data to the workers, and return once it has all been handed over
+     * @param data
+     * @throws InterruptedException if interrupted while waiting for room in a queue
+     */
+    public void addAll(Iterable<? extends T> data) throws InterruptedException {
+        Producer producer = new Producer();
+        for (T element : data) {
+            producer.add(element);
+        }
+        producer.flush();
+    }
+
+    /**
+     * Wait until every batch handed over before this call has been inserted into its shard
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if a worker failed to insert a batch since the last flush(),
+     *   or has stopped; a failure is reported once
+     */
+    public void flush() throws InterruptedException {
+        CountDownLatch applied = new CountDownLatch(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            this.submit(i, new Batch(null, 0, applied));
+        }
+        while (!applied.await(LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            this.checkWorkers();
+        }
+        RuntimeException failure = this.failure.getAndSet(null);
+        if (failure != null) {
+            throw new IllegalStateException("A shard worker failed to insert a batch", failure);
+        }
+    }
+
+    /**
+     * Apply every batch handed over so far, then stop the workers. The shards stay readable,
+     *   and handing over more batches throws IllegalStateException. If interrupted, returns
+     *   early with the interrupt status set, and may leave some workers running.
+     */
+    @Override
+    public void close() {
+        // Waits for hand-overs already past the closed check, so the stops go in behind them
+        this.closing.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.closing.writeLock().unlock();
+        }
+        try {
+            for (int shard = 0; shard < this.shards.length; shard++) {
+                // A worker that has already stopped needs no stop
+                this.enqueue(shard, this.stop);
+            }
+            for (Thread worker : this.workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(int shard, Batch batch) throws InterruptedException {
+        this.closing.readLock().lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Tree is closed");
+            }
+            if (!this.enqueue(shard, batch)) {
+                throw new IllegalStateException("Worker for shard " + shard + " has stopped");
+            }
+        } finally {
+            this.closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * Put batch on the shard's queue, waiting for room as long as the shard's worker is running
+     * @param shard
+     * @param batch
+     * @return false if the worker stopped before there was room
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean enqueue(int shard, Batch batch) throws InterruptedException {
+        BlockingQueue<Batch> queue = this.queues.get(shard);
+        Thread worker = this.workers[shard];
+        if (!worker.isAlive()) {
+            return false;
+        }
+        while (!queue.offer(batch, LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalStateException if any worker has stopped
+     */
+    private void checkWorkers() {
+        for (int shard = 0; shard < this.workers.length; shard++) {
+            if (!this.workers[shard].isAlive()) {
+                throw new IllegalStateException("Worker for shard " + shard + " has stopped");
+            }
+        }
+    }
+
+    // Access Methods
+    public boolean contains(T data) {
+        return this.shards[this.shardOf(data)].contains(data);
+    }
+
+    public T search(T data) {
+        return this.shards[this.shardOf(data)].search(data);
+    }
+
+    /**
+     * @return number of elements applied to the shards so far
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentBalancedBinarySearchTree<T> shard : this.shards) {
+            size += shard.countNodes();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (ConcurrentBalancedBinarySearchTree<T> shard : this.shards) {
+            if (!shard.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int shardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * @param data
+     * @return index of the shard data belongs in
+     */
+    public int shardOf(T data) {
+        if (this.boundaries == null) {
+            // Mix the high bits in, since many hash codes differ only there
+            int hash = data.hashCode();
+            hash ^= hash >>> 16;
+            return (hash & Integer.MAX_VALUE) % this.shards.length;
+        }
+        // Count the boundaries less than or equal to data
+        int lo = 0;
+        int hi = this.boundaries.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.comparator.compare(this.boundaries.get(mid), data) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return iterator over every shard in order; each shard is seen as it was when the
+     *   iterator reached it (by range) or was created (by hash)
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this.boundaries != null ? new ConcatenatingIterator() : new MergingIterator();
+    }
+
+    /**
+     * One shard's share of a producer's elements, or, with no elements, a barrier for flush()
+     */
+    private static final class Batch {
+        final Object[] elements;
+        final int length;
+        final CountDownLatch applied;
+
+        Batch(Object[] elements, int length, CountDownLatch applied) {
+            this.elements = elements;
+            this.length = length;
+            this.applied = applied;
+        }
+    }
+
+    /**
+     * Gathers elements into one batch per shard and hands each batch over when it fills.
+     * Not thread-safe: each writing thread needs its own.
+     */
+    public final class Producer {
+        private final Object[][] buffers = new Object[shards.length][];
+        private final int[] lengths = new int[shards.length];
+
+        private Producer() {
+        }
+
+        /**
+         * @param data
+         * @throws InterruptedException if interrupted while waiting for room in the shard's queue
+         */
+        public void add(T data) throws InterruptedException {
+            int shard = shardOf(data);
+            if (this.buffers[shard] == null) {
+                this.buffers[shard] = new Object[batchSize];
+            }
+            this.buffers[shard][this.lengths[shard]++] = data;
+            if (this.lengths[shard] == batchSize) {
+                this.handOver(shard);
+            }
+        }
+
+        /**
+         * Hand over every partly filled batch; flush() on the tree then waits for them
+         * @throws InterruptedException if interrupted while waiting for room in a queue
+         */
+        public void flush() throws InterruptedException {
+            for (int shard = 0; shard < this.buffers.length; shard++) {
+                if (this.lengths[shard] > 0) {
+                    this.handOver(shard);
+                }
+            }
+        }
+
+        private void handOver(int shard) throws InterruptedException {
+            // The worker owns the array from here, so the next batch starts a new one
+            submit(shard, new Batch(this.buffers[shard], this.lengths[shard], null));
+            this.buffers[shard] = null;
+            this.lengths[shard] = 0;
+        }
+    }
+
+    /**
+     * Inserts the batches of one shard in the order they were handed over
+     */
+    private final class Worker implements Runnable {
+        private final int shard;
+
+        Worker(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void run() {
+            BlockingQueue<Batch> queue = queues.get(this.shard);
+            try {
+                while (true) {
+                    Batch batch = queue.take();
+                    if (batch == stop) {
+                        return;
+                    }
+                    if (batch.elements != null) {
+                        this.insert(batch);
+                    }
+                    if (batch.applied != null) {
+                        batch.applied.countDown();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void insert(Batch batch) {
+            try {
+                shards[this.shard].insertAll((List<T>) Arrays.asList(batch.elements).subList(0, batch.length));
+            } catch (RuntimeException e) {
+                // Keep the first failure for flush(), and keep serving the queue so writers never hang
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * Walks the shards one after another, which is already in order when partitioned by range
+     */
+    private final class ConcatenatingIterator implements Iterator<T> {
+        private int shard;
+        private Iterator<T> current = shards[0].iterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!this.current.hasNext() && this.shard + 1 < shards.length) {
+                this.current = shards[++this.shard].iterator();
+            }
+            return this.current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.current.next();
+        }
+    }
+
+    /**
+     * k-way merge of the shards, keeping the shard with the least next element at the top of
+     * a binary heap, so each element costs O(log k) comparisons
+     */
+    private final class MergingIterator implements Iterator<T> {
+        private final List<Iterator<T>> sources = new ArrayList<Iterator<T>>(shards.length);
+        /** Next element of each shard */
+        private final Object[] heads = new Object[shards.length];
+        /** Shards that have elements left, as a min-heap on their heads */
+        private final int[] heap = new int[shards.length];
+        private int heapSize;
+
+        MergingIterator() {
+            for (int i = 0; i < shards.length; i++) {
+                Iterator<T> source = shards[i].iterator();
+                this.sources.add(source);
+                if (source.hasNext()) {
+                    this.heads[i] = source.next();
+                    this.heap[this.heapSize] = i;
+                    this.siftUp(this.heapSize++);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.heapSize > 0;
+        }
+
+        @Override
+        public T next() {
+            if (this.heapSize == 0) {
+                throw new NoSuchElementException();
+            }
+            int shard = this.heap[0];
+            T next = this.head(shard);
+            Iterator<T> source = this.sources.get(shard);
+            if (source.hasNext()) {
+                this.heads[shard] = source.next();
+            } else {
+                this.heads[shard] = null;
+                this.heap[0] = this.heap[--this.heapSize];
+            }
+            this.siftDown(0);
+            return next;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!this.less(this.heap[i], this.heap[parent])) {
+                    break;
+                }
+                this.swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int least = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < this.heapSize && this.less(this.heap[left], this.heap[least])) {
+                    least = left;
+                }
+                if (right < this.heapSize && this.less(this.heap[right], this.heap[least])) {
+                    least = right;
+                }
+                if (least == i) {
+                    return;
+                }
+                this.swap(i, least);
+                i = least;
+            }
+        }
+
+        private boolean less(int a, int b) {
+            return comparator.compare(this.head(a), this.head(b)) < 0;
+        }
+
+        private void swap(int i, int j) {
+            int shard = this.heap[i];
+            this.heap[i] = this.heap[j];
+            this.heap[j] = shard;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T head(int shard) {
+            return (T) this.heads[shard];
+        }
+    }
+
+}
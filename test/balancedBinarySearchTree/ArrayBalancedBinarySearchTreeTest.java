@@ -0,0 +1,59 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * ArrayBalancedBinarySearchTree against TreeSet
+ * @author Spencer Collins
+ */
+public class ArrayBalancedBinarySearchTreeTest {
+
+    @Test
+    public void matchesTreeSet() {
+        Random random = new Random(4);
+        ArrayBalancedBinarySearchTree<Integer> tree = new ArrayBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, 2);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int data = random.nextInt(1000);
+            if (random.nextInt(3) > 0) {
+                assertEquals(model.add(data), tree.insert(data));
+            } else {
+                assertEquals(model.remove(data), tree.delete(data));
+            }
+            assertEquals(model.contains(data), tree.contains(data));
+        }
+        assertEquals(new ArrayList<Integer>(model), tree.inorder());
+        assertEquals(new ArrayList<Integer>(model), TreeChecks.toList(tree));
+        assertEquals(model.size(), tree.countNodes());
+        assertTrue(tree.height() <= PrimitiveBalancedBinarySearchTreeTest.maxAvlHeight(model.size()));
+    }
+
+    @Test
+    public void recycledSlotsHoldTheNewData() {
+        ArrayBalancedBinarySearchTree<String> tree = new ArrayBalancedBinarySearchTree<String>(String.CASE_INSENSITIVE_ORDER);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                tree.insert("key" + i);
+            }
+            for (int i = 0; i < 100; i++) {
+                assertTrue(tree.delete("KEY" + i));
+            }
+            assertTrue(tree.isEmpty());
+            assertNull(tree.search("key0"));
+        }
+        String stored = new String("Key");
+        tree.insert(stored);
+        assertSame(stored, tree.search("KEY"));
+        tree.clear();
+        assertEquals(0, tree.countNodes());
+    }
+}
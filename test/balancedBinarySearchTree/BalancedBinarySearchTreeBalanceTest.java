@@ -0,0 +1,88 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Insert, delete and the AVL balance they keep, including the balancing bugs fixed alongside
+ * the benchmark harness
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeBalanceTest {
+
+    @Test
+    public void ascendingInsertsStayBalanced() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 1023; i++) {
+            tree.insert(i);
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(9, tree.height(tree.root()));
+    }
+
+    @Test
+    public void innerGrandchildTakesADoubleRotation() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insert(3);
+        tree.insert(1);
+        tree.insert(2);
+        TreeChecks.assertValid(tree);
+        assertEquals(Integer.valueOf(2), tree.root().getData());
+    }
+
+    @Test
+    public void balancedChildTakesASingleRotation() {
+        // Deleting 6 and 7 leaves 4 leaning on 2, whose children 1 and 3 are equally tall, so a
+        //   single rotation is the one that rebalances
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int data : new int[] { 4, 2, 6, 1, 3, 7 }) {
+            tree.insert(data);
+        }
+        tree.delete(7);
+        tree.delete(6);
+        TreeChecks.assertValid(tree);
+        assertEquals(Integer.valueOf(2), tree.root().getData());
+    }
+
+    @Test
+    public void deletingTheLastElementEmptiesTheTree() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insert(1);
+        assertTrue(tree.delete(1));
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.countNodes());
+        assertFalse(tree.delete(1));
+        tree.insert(2);
+        assertEquals(Arrays.asList(2), tree.inorder());
+    }
+
+    @Test
+    public void randomInsertsAndDeletesMatchTreeSet() {
+        Random random = new Random(1);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int data = random.nextInt(500);
+            if (random.nextBoolean()) {
+                assertEquals(model.add(data), tree.insert(data));
+            } else {
+                assertEquals(model.remove(data), tree.delete(data));
+            }
+            assertEquals(model.contains(data), tree.contains(data));
+            if (i % 500 == 0) {
+                TreeChecks.assertValid(tree);
+            }
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(new ArrayList<Integer>(model), tree.inorder());
+        assertEquals(model.size(), tree.countNodes());
+    }
+}
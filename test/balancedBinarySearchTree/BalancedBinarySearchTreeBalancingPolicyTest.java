@@ -0,0 +1,227 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import balancedBinarySearchTree.BalancedBinarySearchTree.BalancingPolicy;
+
+/**
+ * The balancing policies, and join, split and the set operations keeping each one's bound
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeBalancingPolicyTest {
+
+    @Test
+    public void everyPolicyMatchesTreeSet() {
+        for (BalancingPolicy policy : BalancingPolicy.values()) {
+            Random random = new Random(22);
+            BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            tree.setBalancingPolicy(policy);
+            TreeSet<Integer> model = new TreeSet<Integer>();
+            for (int i = 0; i < 20000; i++) {
+                int data = random.nextInt(2000);
+                if (random.nextInt(3) > 0) {
+                    assertEquals(model.add(data), tree.insert(data));
+                } else {
+                    assertEquals(model.remove(data), tree.delete(data));
+                }
+                if (i % 1000 == 0) {
+                    TreeChecks.assertValid(tree);
+                }
+            }
+            TreeChecks.assertValid(tree);
+            assertEquals(policy.toString(), new ArrayList<Integer>(model), tree.inorder());
+        }
+    }
+
+    @Test
+    public void relaxedRotatesLess() {
+        long[] rotations = new long[BalancingPolicy.values().length];
+        for (BalancingPolicy policy : BalancingPolicy.values()) {
+            Random random = new Random(23);
+            BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            tree.setBalancingPolicy(policy);
+            BalancedBinarySearchTreeStats stats = tree.enableStats();
+            for (int i = 0; i < 20000; i++) {
+                tree.insert(random.nextInt(5000));
+                tree.delete(random.nextInt(5000));
+            }
+            rotations[policy.ordinal()] = stats.getRotations() + stats.getDoubleRotations();
+        }
+        assertTrue(rotations[BalancingPolicy.RELAXED.ordinal()] < rotations[BalancingPolicy.STRICT.ordinal()]);
+    }
+
+    @Test
+    public void leavingRelaxedRestoresStrictBalance() {
+        BalancedBinarySearchTree<Integer> tree = relaxed(0, 1000);
+        tree.setBalancingPolicy(BalancingPolicy.STRICT);
+        TreeChecks.assertValid(tree);
+        assertEquals(1000, tree.size());
+    }
+
+    @Test
+    public void relaxedJoinUsesTheRelaxedTolerance() {
+        // {0, 1} joined with the perfect tree of 2..8: once 1 is taken out to join around, 0 is
+        //   2 levels shorter than the other side, which RELAXED allows without descending
+        BalancedBinarySearchTree<Integer> tree = relaxed(0, 2);
+        BalancedBinarySearchTree<Integer> greater = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        greater.setBalancingPolicy(BalancingPolicy.RELAXED);
+        for (int data : new int[] { 5, 3, 7, 2, 4, 6, 8 }) {
+            greater.insert(data);
+        }
+        tree.join(greater);
+        TreeChecks.assertValid(tree);
+        assertEquals(Integer.valueOf(1), tree.root().getData());
+        assertEquals(9, tree.size());
+    }
+
+    @Test
+    public void relaxedJoinSplitAndUnionStayWithinTheirBound() {
+        Random random = new Random(24);
+        for (int round = 0; round < 50; round++) {
+            int cut = random.nextInt(500);
+            BalancedBinarySearchTree<Integer> tree = relaxed(0, cut);
+            tree.join(relaxed(cut, cut + random.nextInt(500)));
+            TreeChecks.assertValid(tree);
+
+            BalancedBinarySearchTree<Integer> greater = tree.split(random.nextInt(1000));
+            assertEquals(BalancingPolicy.RELAXED, greater.getBalancingPolicy());
+            TreeChecks.assertValid(tree);
+            TreeChecks.assertValid(greater);
+
+            BalancedBinarySearchTree<Integer> other = relaxed(random.nextInt(500), 500 + random.nextInt(500));
+            tree.union(other);
+            TreeChecks.assertValid(tree);
+        }
+    }
+
+    @Test
+    public void strictTreeRebalancesSubtreesTakenFromARelaxedOne() {
+        for (int size : new int[] { 10, 100, 1000 }) {
+            BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            tree.insert(-1);
+            tree.join(relaxed(0, size));
+            TreeChecks.assertValid(tree);
+            assertEquals(size + 1, tree.size());
+
+            tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            tree.insert(-1);
+            tree.union(relaxed(0, size));
+            TreeChecks.assertValid(tree);
+            assertEquals(size + 1, tree.size());
+        }
+    }
+
+    @Test
+    public void redBlackRotatesAtMostTwicePerInsertAndThreeTimesPerDelete() {
+        Random random = new Random(25);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.setBalancingPolicy(BalancingPolicy.RED_BLACK);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        for (int i = 0; i < 20000; i++) {
+            long before = stats.getRotations() + 2 * stats.getDoubleRotations();
+            long bound;
+            if (random.nextInt(3) > 0) {
+                tree.insert(random.nextInt(5000));
+                bound = 2;
+            } else {
+                tree.delete(random.nextInt(5000));
+                bound = 3;
+            }
+            assertTrue(stats.getRotations() + 2 * stats.getDoubleRotations() - before <= bound);
+        }
+        TreeChecks.assertValid(tree);
+    }
+
+    @Test
+    public void deferredNeverRotates() {
+        Random random = new Random(26);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.setBalancingPolicy(BalancingPolicy.DEFERRED);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        // Ascending inserts force rebuilds over and over; deletes then shrink it past a third
+        for (int i = 0; i < 5000; i++) {
+            tree.insert(i);
+        }
+        TreeChecks.assertValid(tree);
+        for (int i = 0; i < 20000; i++) {
+            tree.delete(random.nextInt(5000));
+            if (i % 1000 == 0) {
+                TreeChecks.assertValid(tree);
+            }
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(0, stats.getRotations() + stats.getDoubleRotations());
+    }
+
+    @Test
+    public void switchingPolicyKeepsTheNewBound() {
+        for (BalancingPolicy from : BalancingPolicy.values()) {
+            for (BalancingPolicy to : BalancingPolicy.values()) {
+                BalancedBinarySearchTree<Integer> tree = tree(from, 0, 1000);
+                tree.setBalancingPolicy(to);
+                TreeChecks.assertValid(tree);
+                for (int i = 1000; i < 1500; i++) {
+                    tree.insert(i);
+                    tree.delete(i - 1000);
+                }
+                TreeChecks.assertValid(tree);
+                assertEquals(from + " to " + to, 1000, tree.size());
+            }
+        }
+    }
+
+    @Test
+    public void joinSplitAndUnionKeepRedBlackAndDeferredBounds() {
+        Random random = new Random(27);
+        for (BalancingPolicy policy : new BalancingPolicy[] { BalancingPolicy.RED_BLACK, BalancingPolicy.DEFERRED }) {
+            for (int round = 0; round < 20; round++) {
+                int cut = random.nextInt(500);
+                BalancedBinarySearchTree<Integer> tree = tree(policy, 0, cut);
+                tree.join(tree(policy, cut, cut + random.nextInt(500)));
+                TreeChecks.assertValid(tree);
+
+                BalancedBinarySearchTree<Integer> greater = tree.split(random.nextInt(1000));
+                TreeChecks.assertValid(tree);
+                TreeChecks.assertValid(greater);
+
+                tree.union(tree(BalancingPolicy.RELAXED, random.nextInt(500), 500 + random.nextInt(500)));
+                TreeChecks.assertValid(tree);
+                tree.insert(-1);
+                tree.delete(tree.getLeftmostNode().getData());
+                TreeChecks.assertValid(tree);
+            }
+        }
+    }
+
+    /**
+     * @param policy
+     * @param from
+     * @param to
+     * @return tree of from up to but not including to, inserted in ascending order
+     */
+    private static BalancedBinarySearchTree<Integer> tree(BalancingPolicy policy, int from, int to) {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.setBalancingPolicy(policy);
+        for (int i = from; i < to; i++) {
+            tree.insert(i);
+        }
+        return tree;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return RELAXED tree of from up to but not including to, inserted in ascending order so
+     *   that it leans as far as RELAXED allows
+     */
+    private static BalancedBinarySearchTree<Integer> relaxed(int from, int to) {
+        return tree(BalancingPolicy.RELAXED, from, to);
+    }
+}
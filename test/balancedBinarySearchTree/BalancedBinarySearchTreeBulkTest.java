@@ -0,0 +1,120 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * fromSorted and insertAll, on both the one-at-a-time and the merge-and-rebuild paths
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeBulkTest {
+
+    @Test
+    public void fromSortedIsPerfectlyBalanced() {
+        for (int n : new int[] { 0, 1, 2, 3, 7, 8, 1000 }) {
+            Integer[] sorted = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = 2 * i;
+            }
+            BalancedBinarySearchTree<Integer> tree = BalancedBinarySearchTree.fromSorted(TreeChecks.NATURAL, sorted);
+            TreeChecks.assertValid(tree);
+            assertEquals(Arrays.asList(sorted), tree.inorder());
+            // A perfectly balanced tree of n nodes is floor(log2 n) tall
+            assertEquals(n == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(n), tree.height(tree.root()));
+
+            BalancedBinarySearchTree<Integer> fromIterator = BalancedBinarySearchTree.fromSorted(TreeChecks.NATURAL, Arrays.asList(sorted).iterator());
+            assertEquals(tree.inorder(), fromIterator.inorder());
+            assertEquals(tree.height(tree.root()), fromIterator.height(fromIterator.root()));
+        }
+    }
+
+    @Test
+    public void fromSortedRejectsUnsortedInput() {
+        for (Integer[] bad : new Integer[][] { { 1, 3, 2 }, { 1, 1 } }) {
+            try {
+                BalancedBinarySearchTree.fromSorted(TreeChecks.NATURAL, bad);
+                fail(Arrays.toString(bad));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void smallAndLargeBatchesMatchTreeSet() {
+        Random random = new Random(8);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        // Batch sizes either side of the point where merging beats inserting one at a time
+        for (int batchSize : new int[] { 1000, 3, 10, 2000, 1, 50 }) {
+            List<Integer> batch = new ArrayList<Integer>();
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(random.nextInt(4000));
+            }
+            assertEquals(model.addAll(batch), tree.insertAll(batch));
+            TreeChecks.assertValid(tree);
+            assertEquals(new ArrayList<Integer>(model), tree.inorder());
+        }
+        assertFalse(tree.insertAll(new ArrayList<Integer>(model)));
+        assertFalse(tree.insertAll(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void mergeLargerThanAnArrayIsRejected() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insert(1);
+        // Claims to be huge but is never read: the merge must give up before copying it
+        Collection<Integer> huge = new AbstractCollection<Integer>() {
+            @Override
+            public int size() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                throw new AssertionError();
+            }
+        };
+        try {
+            tree.insertAll(huge);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList(1), tree.inorder());
+    }
+
+    @Test
+    public void largeBatchCountsRepeatsInAMultiset() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        tree.insert(5);
+        counts.put(5, 1);
+        List<Integer> batch = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i % 10);
+            Integer count = counts.get(i % 10);
+            counts.put(i % 10, count == null ? 1 : count + 1);
+        }
+        assertTrue(tree.insertAll(batch));
+        TreeChecks.assertValid(tree);
+        assertEquals(101, tree.size());
+        assertEquals(11, tree.count(5));
+        assertEquals(TreeChecks.expand(counts), TreeChecks.toList(tree));
+    }
+}
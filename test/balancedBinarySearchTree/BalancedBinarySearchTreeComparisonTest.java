@@ -0,0 +1,97 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+/**
+ * The hot paths call the comparator once per level, never to relink a rotated node, and a
+ * duplicate insert creates no node
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeComparisonTest {
+
+    /** Natural order that counts its calls */
+    private static final class CountingComparator implements Comparator<Integer> {
+        int calls;
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            this.calls++;
+            return a.compareTo(b);
+        }
+    }
+
+    @Test
+    public void lookupsCompareOncePerLevel() {
+        CountingComparator comparator = new CountingComparator();
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(comparator);
+        for (int i = 0; i < 10000; i++) {
+            tree.insert(i * 2);
+        }
+        int levels = tree.height() + 1;
+        for (int i = -1; i <= 20000; i += 97) {
+            comparator.calls = 0;
+            tree.contains(i);
+            assertTrue(comparator.calls + " compares for " + i, comparator.calls <= levels);
+        }
+    }
+
+    @Test
+    public void insertsCompareOncePerLevel() {
+        CountingComparator comparator = new CountingComparator();
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(comparator);
+        for (int i = 0; i < 10000; i++) {
+            int levels = tree.height() + 1;
+            comparator.calls = 0;
+            // Ascending keys rotate constantly; relinking after a rotation must not compare
+            assertTrue(tree.insert(i));
+            assertTrue(comparator.calls + " compares inserting " + i, comparator.calls <= levels);
+        }
+        int levels = tree.height() + 1;
+        comparator.calls = 0;
+        assertFalse(tree.insert(5000));
+        assertTrue(comparator.calls <= levels);
+    }
+
+    @Test
+    public void deletesDoNotCompareToRelink() {
+        CountingComparator comparator = new CountingComparator();
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(comparator);
+        for (int i = 0; i < 4096; i++) {
+            tree.insert(i);
+        }
+        for (int i = 0; i < 4096; i += 2) {
+            int levels = tree.height() + 1;
+            comparator.calls = 0;
+            assertTrue(tree.delete(i));
+            assertTrue(comparator.calls + " compares deleting " + i, comparator.calls <= levels);
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(2048, tree.size());
+    }
+
+    @Test
+    public void duplicateInsertCreatesNoNode() {
+        final int[] created = new int[1];
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL) {
+            @Override
+            BalancedBinarySearchTreeNode<Integer> createNode(Integer data, BalancedBinarySearchTreeNode<Integer> parent) {
+                created[0]++;
+                return super.createNode(data, parent);
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+        assertEquals(100, created[0]);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(tree.insert(i));
+        }
+        assertEquals(100, created[0]);
+    }
+}
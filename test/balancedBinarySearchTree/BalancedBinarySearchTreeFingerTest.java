@@ -0,0 +1,94 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import balancedBinarySearchTree.BalancedBinarySearchTree.BalancingPolicy;
+
+/**
+ * Finger search: same answers as a search from the root, in fewer comparisons for nearby keys
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeFingerTest {
+
+    @Test
+    public void fingerSearchMatchesTreeSet() {
+        for (BalancingPolicy policy : BalancingPolicy.values()) {
+            Random random = new Random(29);
+            BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            tree.setBalancingPolicy(policy);
+            tree.setFingerSearch(true);
+            TreeSet<Integer> model = new TreeSet<Integer>();
+            int cursor = 0;
+            for (int i = 0; i < 50000; i++) {
+                // Mostly small steps from the last key, with the odd jump anywhere
+                cursor = random.nextInt(20) == 0 ? random.nextInt(5000) : Math.max(0, cursor + random.nextInt(21) - 8);
+                switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(model.remove(cursor), tree.delete(cursor));
+                    break;
+                case 1:
+                    assertEquals(model.contains(cursor), tree.contains(cursor));
+                    break;
+                default:
+                    assertEquals(model.add(cursor), tree.insert(cursor));
+                    break;
+                }
+                if (i % 5000 == 0) {
+                    TreeChecks.assertValid(tree);
+                }
+            }
+            TreeChecks.assertValid(tree);
+            assertEquals(policy.toString(), new ArrayList<Integer>(model), tree.inorder());
+        }
+    }
+
+    @Test
+    public void nearlySortedKeysTakeFewerComparisons() {
+        long[] comparisons = new long[2];
+        for (int mode = 0; mode < 2; mode++) {
+            Random random = new Random(30);
+            BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            tree.setFingerSearch(mode == 1);
+            BalancedBinarySearchTreeStats stats = tree.enableStats();
+            for (int i = 0; i < 100000; i++) {
+                tree.insert(i * 4 + random.nextInt(8));
+            }
+            comparisons[mode] = stats.getComparisons();
+            TreeChecks.assertValid(tree);
+        }
+        assertTrue(comparisons[0] + " vs " + comparisons[1], comparisons[1] * 3 < comparisons[0]);
+    }
+
+    @Test
+    public void fingerSurvivesStructuralChanges() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.setFingerSearch(true);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+        // The finger rests on 99; delete it and carry on from there
+        assertTrue(tree.delete(99));
+        assertTrue(tree.insert(150));
+        BalancedBinarySearchTree<Integer> greater = tree.split(50);
+        assertFalse(tree.insert(49));
+        assertTrue(greater.contains(75));
+        tree.join(greater);
+        assertTrue(tree.contains(150));
+        BalancedBinarySearchTree<Integer> other = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        other.insert(200);
+        tree.union(other);
+        assertTrue(tree.contains(200));
+        tree.clear();
+        assertTrue(tree.insert(5));
+        assertEquals(1, tree.size());
+        TreeChecks.assertValid(tree);
+    }
+}
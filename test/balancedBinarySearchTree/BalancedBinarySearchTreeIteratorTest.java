@@ -0,0 +1,132 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * The in-order iterator: remove() and fail-fast detection of other changes
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeIteratorTest {
+
+    @Test
+    public void removeWhileIteratingMatchesTreeSet() {
+        Random random = new Random(14);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 2000; i++) {
+            int data = random.nextInt(5000);
+            tree.insert(data);
+            model.add(data);
+        }
+        List<Integer> seen = new ArrayList<Integer>();
+        List<Integer> expected = new ArrayList<Integer>(model);
+        for (Iterator<Integer> iterator = tree.iterator(); iterator.hasNext();) {
+            Integer data = iterator.next();
+            seen.add(data);
+            if (data % 3 != 0) {
+                iterator.remove();
+                model.remove(data);
+            }
+        }
+        // Removing never skips or repeats an element
+        assertEquals(expected, seen);
+        TreeChecks.assertValid(tree);
+        assertEquals(new ArrayList<Integer>(model), tree.inorder());
+    }
+
+    @Test
+    public void removeTakesOneOccurrenceOfAMultiset() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        for (int data : new int[] { 1, 2, 2, 2, 3 }) {
+            tree.insert(data);
+        }
+        List<Integer> seen = new ArrayList<Integer>();
+        boolean removed = false;
+        for (Iterator<Integer> iterator = tree.iterator(); iterator.hasNext();) {
+            Integer data = iterator.next();
+            seen.add(data);
+            if (data == 2 && !removed) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        assertEquals(Arrays.asList(1, 2, 2, 2, 3), seen);
+        assertEquals(Arrays.asList(1, 2, 2, 3), tree.inorder());
+        TreeChecks.assertValid(tree);
+    }
+
+    @Test
+    public void removeNeedsAPrecedingNext() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insert(1);
+        Iterator<Integer> iterator = tree.iterator();
+        try {
+            iterator.remove();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        iterator.next();
+        iterator.remove();
+        try {
+            iterator.remove();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void changesOutsideTheIteratorFailFast() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 10; i++) {
+            tree.insert(i);
+        }
+        Iterator<Integer> iterator = tree.iterator();
+        iterator.next();
+        tree.insert(100);
+        try {
+            iterator.next();
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+
+        iterator = tree.iterator();
+        iterator.next();
+        tree.delete(5);
+        try {
+            iterator.remove();
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+
+        // A failed insert or delete changes nothing, so the iterator carries on
+        iterator = tree.iterator();
+        iterator.next();
+        tree.insert(1);
+        tree.delete(5);
+        assertEquals(Integer.valueOf(1), iterator.next());
+    }
+}
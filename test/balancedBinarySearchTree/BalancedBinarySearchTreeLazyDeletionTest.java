@@ -0,0 +1,179 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import balancedBinarySearchTree.BalancedBinarySearchTree.BalancingPolicy;
+
+/**
+ * Lazy deletion: tombstones are never seen, revive with the inserted data and are compacted
+ *   once they pass the compaction ratio of the nodes
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeLazyDeletionTest {
+
+    private static BalancedBinarySearchTree<Integer> lazyTree(boolean multiset, int... data) {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, multiset);
+        tree.setLazyDeletion(true);
+        for (int element : data) {
+            tree.insert(element);
+        }
+        return tree;
+    }
+
+    @Test
+    public void endsPassOverTombstones() {
+        BalancedBinarySearchTree<Integer> tree = lazyTree(false, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        tree.setCompactionRatio(1);
+        tree.delete(1);
+        tree.delete(2);
+        tree.delete(10);
+        assertEquals(3, tree.getTombstoneCount());
+        assertEquals(Integer.valueOf(3), tree.getLeftmostNode().getData());
+        assertEquals(Integer.valueOf(9), tree.getRightmostNode().getData());
+
+        for (int i = 3; i <= 9; i++) {
+            tree.delete(i);
+        }
+        assertTrue(tree.isEmpty());
+        assertNull(tree.getLeftmostNode());
+        assertNull(tree.getRightmostNode());
+    }
+
+    @Test
+    public void reviveHoldsTheInsertedData() {
+        BalancedBinarySearchTree<String> tree = new BalancedBinarySearchTree<String>(String.CASE_INSENSITIVE_ORDER);
+        tree.setLazyDeletion(true);
+        tree.setCompactionRatio(1);
+        for (String data : Arrays.asList("b", "a", "c")) {
+            tree.insert(data);
+        }
+        assertTrue(tree.delete("a"));
+        assertEquals(1, tree.getTombstoneCount());
+        String revived = new String("A");
+        assertTrue(tree.insert(revived));
+        assertEquals(0, tree.getTombstoneCount());
+        assertSame(revived, tree.search("a"));
+        assertEquals(Arrays.asList("A", "b", "c"), tree.inorder());
+        assertFalse(tree.insert("a"));
+
+        // The root as a tombstone too
+        assertTrue(tree.delete("b"));
+        assertTrue(tree.insert("B"));
+        assertEquals(Arrays.asList("A", "B", "c"), tree.inorder());
+    }
+
+    @Test
+    public void multisetCompactsByNodesNotOccurrences() {
+        BalancedBinarySearchTree<Integer> tree = lazyTree(true);
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                tree.insert(i);
+            }
+        }
+        // Five tombstones of ten nodes is not more than half
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 10; j++) {
+                tree.delete(i);
+            }
+        }
+        assertEquals(5, tree.getTombstoneCount());
+        assertEquals(50, tree.size());
+        for (int j = 0; j < 10; j++) {
+            tree.delete(5);
+        }
+        assertEquals(0, tree.getTombstoneCount());
+        assertEquals(40, tree.size());
+        TreeChecks.assertValid(tree);
+    }
+
+    @Test
+    public void multisetCountsNodesAgainAfterSplit() {
+        BalancedBinarySearchTree<Integer> tree = lazyTree(true);
+        for (int i = 0; i < 20; i++) {
+            tree.insert(i);
+            tree.insert(i);
+        }
+        BalancedBinarySearchTree<Integer> greater = tree.split(10);
+        tree.setLazyDeletion(true);
+        for (int i = 0; i < 5; i++) {
+            tree.delete(i);
+            tree.delete(i);
+        }
+        assertEquals(5, tree.getTombstoneCount());
+        tree.delete(5);
+        tree.delete(5);
+        assertEquals(0, tree.getTombstoneCount());
+        assertEquals(Arrays.asList(6, 6, 7, 7, 8, 8, 9, 9), tree.inorder());
+        assertEquals(20, greater.size());
+    }
+
+    @Test
+    public void queriesMatchTreeSetUnderEveryPolicy() {
+        for (BalancingPolicy policy : BalancingPolicy.values()) {
+            Random random = new Random(25);
+            BalancedBinarySearchTree<Integer> tree = lazyTree(false);
+            tree.setBalancingPolicy(policy);
+            TreeSet<Integer> model = new TreeSet<Integer>();
+            for (int i = 0; i < 20000; i++) {
+                int data = random.nextInt(500);
+                if (random.nextBoolean()) {
+                    assertEquals(model.add(data), tree.insert(data));
+                } else {
+                    assertEquals(model.remove(data), tree.delete(data));
+                }
+                if (i % 1000 == 0) {
+                    TreeChecks.assertValid(tree);
+                    assertEquals(new ArrayList<Integer>(model), TreeChecks.toList(tree));
+                    assertEquals(model.isEmpty() ? null : model.first(), tree.isEmpty() ? null : tree.getLeftmostNode().getData());
+                    assertEquals(model.isEmpty() ? null : model.last(), tree.isEmpty() ? null : tree.getRightmostNode().getData());
+                    assertEquals(model.headSet(250).size(), tree.rank(250));
+                    if (!model.isEmpty()) {
+                        int index = random.nextInt(model.size());
+                        assertEquals(new ArrayList<Integer>(model).get(index), tree.select(index));
+                    }
+                    assertEquals(model.floor(250), tree.floor(250));
+                    assertEquals(model.ceiling(250), tree.ceiling(250));
+                }
+            }
+            assertTrue(tree.getTombstoneCount() <= tree.getCompactionRatio() * (tree.size() + tree.getTombstoneCount()));
+        }
+    }
+
+    @Test
+    public void serializerAndCompactSkipTombstones() throws IOException {
+        BalancedBinarySearchTree<Integer> tree = lazyTree(true, 1, 2, 2, 3, 4);
+        tree.setCompactionRatio(1);
+        tree.delete(1);
+        tree.delete(3);
+        assertEquals(2, tree.getTombstoneCount());
+
+        BalancedBinarySearchTreeSerializer<Integer> serializer = new BalancedBinarySearchTreeSerializer<Integer>(ElementCodec.ofInt(), true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        BalancedBinarySearchTree<Integer> read = serializer.read(new ByteArrayInputStream(bytes.toByteArray()), TreeChecks.NATURAL);
+        assertEquals(Arrays.asList(2, 2, 4), read.inorder());
+
+        tree.compact();
+        assertEquals(0, tree.getTombstoneCount());
+        assertEquals(Arrays.asList(2, 2, 4), tree.inorder());
+        TreeChecks.assertValid(tree);
+        tree.compact();
+        tree.setLazyDeletion(false);
+        assertTrue(tree.delete(4));
+        assertEquals(0, tree.getTombstoneCount());
+    }
+}
@@ -0,0 +1,245 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * BalancedBinarySearchTreeMap against TreeMap, including its views and the compute methods'
+ * handling of functions that return null, throw or change the map
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeMapTest {
+
+    @Test
+    public void randomOperationsMatchTreeMap() {
+        Random random = new Random(17);
+        BalancedBinarySearchTreeMap<Integer, String> map = new BalancedBinarySearchTreeMap<Integer, String>(TreeChecks.NATURAL);
+        TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = random.nextInt(300);
+            String value = Integer.toString(random.nextInt(5));
+            switch (random.nextInt(9)) {
+            case 0:
+                assertEquals(model.put(key, value), map.put(key, value));
+                break;
+            case 1:
+                assertEquals(model.remove(key), map.remove(key));
+                break;
+            case 2:
+                assertEquals(model.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                break;
+            case 3:
+                assertEquals(model.computeIfAbsent(key, constant(value)), map.computeIfAbsent(key, constant(value)));
+                break;
+            case 4:
+                assertEquals(model.computeIfPresent(key, append(value)), map.computeIfPresent(key, append(value)));
+                break;
+            case 5:
+                assertEquals(model.compute(key, append(value)), map.compute(key, append(value)));
+                break;
+            case 6:
+                assertEquals(model.merge(key, value, concatenate()), map.merge(key, value, concatenate()));
+                break;
+            case 7:
+                assertEquals(model.get(key), map.get(key));
+                assertEquals(model.floorKey(key), map.floorKey(key));
+                assertEquals(model.higherEntry(key), map.higherEntry(key));
+                break;
+            default:
+                if (!model.isEmpty()) {
+                    assertEquals(model.pollFirstEntry(), map.pollFirstEntry());
+                }
+                break;
+            }
+            assertEquals(model.size(), map.size());
+        }
+        assertEquals(model, map);
+        assertEquals(new ArrayList<Integer>(model.keySet()), new ArrayList<Integer>(map.keySet()));
+    }
+
+    @Test
+    public void viewsMatchTreeMap() {
+        Random random = new Random(18);
+        BalancedBinarySearchTreeMap<Integer, String> map = new BalancedBinarySearchTreeMap<Integer, String>(TreeChecks.NATURAL);
+        TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+        for (int i = 0; i < 200; i++) {
+            int key = random.nextInt(400);
+            map.put(key, "v" + key);
+            model.put(key, "v" + key);
+        }
+        for (int i = 0; i < 200; i++) {
+            int lo = random.nextInt(420) - 10;
+            int hi = lo + random.nextInt(100);
+            boolean loInclusive = random.nextBoolean();
+            boolean hiInclusive = random.nextBoolean();
+            checkView(model.subMap(lo, loInclusive, hi, hiInclusive), map.subMap(lo, loInclusive, hi, hiInclusive), random);
+            checkView(model.headMap(hi, hiInclusive), map.headMap(hi, hiInclusive), random);
+            checkView(model.tailMap(lo, loInclusive).descendingMap(), map.tailMap(lo, loInclusive).descendingMap(), random);
+        }
+        assertEquals(model, map);
+    }
+
+    private static void checkView(NavigableMap<Integer, String> expected, NavigableMap<Integer, String> actual, Random random) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<Map.Entry<Integer, String>>(expected.entrySet()), new ArrayList<Map.Entry<Integer, String>>(actual.entrySet()));
+        assertEquals(new ArrayList<Integer>(expected.descendingKeySet()), new ArrayList<Integer>(actual.descendingKeySet()));
+        if (!expected.isEmpty()) {
+            assertEquals(expected.firstEntry(), actual.firstEntry());
+            assertEquals(expected.lastKey(), actual.lastKey());
+        }
+        int probe = random.nextInt(420) - 10;
+        assertEquals(expected.floorKey(probe), actual.floorKey(probe));
+        assertEquals(expected.ceilingEntry(probe), actual.ceilingEntry(probe));
+        assertEquals(expected.containsKey(probe), actual.containsKey(probe));
+
+        // Write through the view: remove every third entry, update the rest
+        Iterator<Map.Entry<Integer, String>> expectedIterator = expected.entrySet().iterator();
+        Iterator<Map.Entry<Integer, String>> actualIterator = actual.entrySet().iterator();
+        for (int i = 0; expectedIterator.hasNext(); i++) {
+            Map.Entry<Integer, String> expectedEntry = expectedIterator.next();
+            Map.Entry<Integer, String> actualEntry = actualIterator.next();
+            if (random.nextInt(20) == 0) {
+                expectedIterator.remove();
+                actualIterator.remove();
+            } else if (i % 7 == 0) {
+                expectedEntry.setValue(expectedEntry.getValue() + i);
+                actualEntry.setValue(actualEntry.getValue() + i);
+            }
+        }
+        assertFalse(actualIterator.hasNext());
+    }
+
+    @Test
+    public void computeThatThrowsLeavesNoEntry() {
+        BalancedBinarySearchTreeMap<Integer, String> map = new BalancedBinarySearchTreeMap<Integer, String>(TreeChecks.NATURAL);
+        map.put(1, "a");
+        try {
+            map.computeIfAbsent(2, new Function<Integer, String>() {
+                public String apply(Integer key) {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            map.compute(3, new BiFunction<Integer, String, String>() {
+                public String apply(Integer key, String value) {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, map.size());
+        assertFalse(map.containsKey(2));
+        assertFalse(map.containsKey(3));
+    }
+
+    @Test
+    public void computeSeesNoEntryForAnAbsentKey() {
+        final BalancedBinarySearchTreeMap<Integer, String> map = new BalancedBinarySearchTreeMap<Integer, String>(TreeChecks.NATURAL);
+        map.computeIfAbsent(1, new Function<Integer, String>() {
+            public String apply(Integer key) {
+                assertFalse(map.containsKey(1));
+                assertEquals(0, map.size());
+                return "a";
+            }
+        });
+        assertEquals("a", map.get(1));
+    }
+
+    @Test
+    public void computeThatChangesTheMapLeavesNoEntry() {
+        final BalancedBinarySearchTreeMap<Integer, String> map = new BalancedBinarySearchTreeMap<Integer, String>(TreeChecks.NATURAL);
+        try {
+            map.computeIfAbsent(1, new Function<Integer, String>() {
+                public String apply(Integer key) {
+                    map.put(10, "x");
+                    return "a";
+                }
+            });
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+        try {
+            map.compute(2, new BiFunction<Integer, String, String>() {
+                public String apply(Integer key, String value) {
+                    map.put(20, "y");
+                    return "b";
+                }
+            });
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+        assertFalse(map.containsKey(1));
+        assertFalse(map.containsKey(2));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void nullResultsAddNothing() {
+        BalancedBinarySearchTreeMap<Integer, String> map = new BalancedBinarySearchTreeMap<Integer, String>(TreeChecks.NATURAL);
+        assertNull(map.computeIfAbsent(1, constant(null)));
+        assertNull(map.compute(2, append(null)));
+        assertTrue(map.isEmpty());
+
+        // An explicit null mapping stays when computeIfAbsent produces null, and is removed by compute
+        map.put(3, null);
+        assertNull(map.computeIfAbsent(3, constant(null)));
+        assertTrue(map.containsKey(3));
+        assertEquals("c", map.computeIfAbsent(3, constant("c")));
+        assertNull(map.compute(3, append(null)));
+        assertFalse(map.containsKey(3));
+    }
+
+    private static Function<Integer, String> constant(final String value) {
+        return new Function<Integer, String>() {
+            public String apply(Integer key) {
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @param suffix
+     * @return function that appends suffix to the value, or removes the mapping if suffix is null
+     */
+    private static BiFunction<Integer, String, String> append(final String suffix) {
+        return new BiFunction<Integer, String, String>() {
+            public String apply(Integer key, String value) {
+                if (suffix == null || "0".equals(suffix)) {
+                    return null;
+                }
+                return value == null ? suffix : value + suffix;
+            }
+        };
+    }
+
+    private static BiFunction<String, String, String> concatenate() {
+        return new BiFunction<String, String, String>() {
+            public String apply(String a, String b) {
+                return "1".equals(b) ? null : a + b;
+            }
+        };
+    }
+}
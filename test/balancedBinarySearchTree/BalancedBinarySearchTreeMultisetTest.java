@@ -0,0 +1,116 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Multiset mode: occurrence counts on one node, and the set operations on counts
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeMultisetTest {
+
+    @Test
+    public void countsMatchAModel() {
+        Random random = new Random(19);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        assertTrue(tree.isMultiset());
+        for (int i = 0; i < 10000; i++) {
+            int data = random.nextInt(50);
+            Integer count = counts.get(data);
+            if (random.nextInt(3) > 0) {
+                assertTrue(tree.insert(data));
+                counts.put(data, count == null ? 1 : count + 1);
+            } else {
+                assertEquals(count != null, tree.delete(data));
+                if (count != null && count == 1) {
+                    counts.remove(data);
+                } else if (count != null) {
+                    counts.put(data, count - 1);
+                }
+            }
+            assertEquals(counts.containsKey(data) ? counts.get(data) : 0, tree.count(data));
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(TreeChecks.expand(counts), tree.inorder());
+        assertEquals(TreeChecks.expand(counts).size(), tree.size());
+    }
+
+    @Test
+    public void setTreeRejectsRepeats() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        assertFalse(tree.isMultiset());
+        assertTrue(tree.insert(1));
+        assertFalse(tree.insert(1));
+        assertEquals(1, tree.count(1));
+        assertEquals(0, tree.count(2));
+    }
+
+    @Test
+    public void setOperationsCombineCounts() {
+        Random random = new Random(20);
+        for (int round = 0; round < 20; round++) {
+            TreeMap<Integer, Integer> a = randomCounts(random);
+            TreeMap<Integer, Integer> b = randomCounts(random);
+
+            BalancedBinarySearchTree<Integer> tree = of(a);
+            tree.union(of(b));
+            TreeChecks.assertValid(tree);
+            assertEquals(TreeChecks.expand(combine(a, b, 0)), tree.inorder());
+
+            tree = of(a);
+            tree.intersect(of(b));
+            TreeChecks.assertValid(tree);
+            assertEquals(TreeChecks.expand(combine(a, b, 1)), tree.inorder());
+
+            tree = of(a);
+            tree.difference(of(b));
+            TreeChecks.assertValid(tree);
+            assertEquals(TreeChecks.expand(combine(a, b, 2)), tree.inorder());
+        }
+    }
+
+    /**
+     * @param a
+     * @param b
+     * @param operation 0 adds counts, 1 takes the lesser, 2 subtracts b's from a's
+     * @return the combined counts, without elements left at 0
+     */
+    private static TreeMap<Integer, Integer> combine(TreeMap<Integer, Integer> a, TreeMap<Integer, Integer> b, int operation) {
+        TreeMap<Integer, Integer> result = new TreeMap<Integer, Integer>();
+        TreeMap<Integer, Integer> keys = new TreeMap<Integer, Integer>(a);
+        keys.putAll(b);
+        for (Integer key : keys.keySet()) {
+            int countA = a.containsKey(key) ? a.get(key) : 0;
+            int countB = b.containsKey(key) ? b.get(key) : 0;
+            int count = operation == 0 ? countA + countB : operation == 1 ? Math.min(countA, countB) : countA - countB;
+            if (count > 0) {
+                result.put(key, count);
+            }
+        }
+        return result;
+    }
+
+    private static TreeMap<Integer, Integer> randomCounts(Random random) {
+        TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        int size = random.nextInt(100);
+        for (int i = 0; i < size; i++) {
+            counts.put(random.nextInt(150), 1 + random.nextInt(4));
+        }
+        return counts;
+    }
+
+    private static BalancedBinarySearchTree<Integer> of(TreeMap<Integer, Integer> counts) {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        for (Integer data : TreeChecks.expand(counts)) {
+            tree.insert(data);
+        }
+        return tree;
+    }
+}
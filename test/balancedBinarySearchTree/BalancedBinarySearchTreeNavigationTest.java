@@ -0,0 +1,68 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * floor, lower, ceiling, higher and the range views, against TreeSet
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeNavigationTest {
+
+    @Test
+    public void navigationMatchesTreeSet() {
+        Random random = new Random(10);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 300; i++) {
+            int data = random.nextInt(1000) * 2;
+            tree.insert(data);
+            model.add(data);
+        }
+        for (int data = -3; data <= 2003; data++) {
+            assertEquals(model.floor(data), tree.floor(data));
+            assertEquals(model.lower(data), tree.lower(data));
+            assertEquals(model.ceiling(data), tree.ceiling(data));
+            assertEquals(model.higher(data), tree.higher(data));
+        }
+    }
+
+    @Test
+    public void rangeViewsMatchTreeSet() {
+        Random random = new Random(11);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 300; i++) {
+            int data = random.nextInt(500);
+            tree.insert(data);
+            model.add(data);
+        }
+        for (int i = 0; i < 500; i++) {
+            int lo = random.nextInt(520) - 10;
+            int hi = random.nextInt(520) - 10;
+            if (lo < hi) {
+                assertEquals(new ArrayList<Integer>(model.subSet(lo, hi)), TreeChecks.toList(tree.range(lo, hi)));
+            } else {
+                assertTrue(TreeChecks.toList(tree.range(lo, hi)).isEmpty());
+            }
+            assertEquals(new ArrayList<Integer>(model.headSet(hi)), TreeChecks.toList(tree.headSet(hi)));
+            assertEquals(new ArrayList<Integer>(model.tailSet(lo)), TreeChecks.toList(tree.tailSet(lo)));
+        }
+    }
+
+    @Test
+    public void emptyTreeHasNoNeighbours() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        assertEquals(null, tree.floor(1));
+        assertEquals(null, tree.ceiling(1));
+        assertTrue(TreeChecks.toList(tree.range(0, 10)).isEmpty());
+        assertTrue(TreeChecks.toList(tree.headSet(10)).isEmpty());
+        assertTrue(TreeChecks.toList(tree.tailSet(0)).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * rank, select, countRange and the O(1) size kept in every node
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeOrderStatisticsTest {
+
+    @Test
+    public void rankAndSelectMatchASortedList() {
+        Random random = new Random(9);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            int data = random.nextInt(1000);
+            if (random.nextInt(4) > 0) {
+                tree.insert(data);
+                model.add(data);
+            } else {
+                tree.delete(data);
+                model.remove(data);
+            }
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(model.size(), tree.size());
+        List<Integer> sorted = new ArrayList<Integer>(model);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), tree.select(i));
+            assertEquals(i, tree.rank(sorted.get(i)));
+        }
+        for (int data = -1; data <= 1000; data++) {
+            assertEquals(model.headSet(data).size(), tree.rank(data));
+            assertEquals(model.subSet(data, data + 100).size(), tree.countRange(data, data + 100));
+        }
+        assertEquals(0, tree.countRange(10, 5));
+    }
+
+    @Test
+    public void selectRejectsIndexesOutOfRange() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insert(1);
+        for (int index : new int[] { -1, 1 }) {
+            try {
+                tree.select(index);
+                fail(Integer.toString(index));
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void multisetOccurrencesAreRankedIndividually() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        for (int data : new int[] { 2, 1, 2, 3, 2 }) {
+            tree.insert(data);
+        }
+        assertEquals(5, tree.size());
+        assertEquals(1, tree.rank(2));
+        assertEquals(4, tree.rank(3));
+        assertEquals(Integer.valueOf(2), tree.select(3));
+        assertEquals(Integer.valueOf(3), tree.select(4));
+        assertEquals(3, tree.countRange(2, 3));
+        tree.delete(2);
+        assertEquals(4, tree.size());
+        assertEquals(Integer.valueOf(3), tree.select(3));
+        TreeChecks.assertValid(tree);
+    }
+}
@@ -0,0 +1,137 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * BalancedBinarySearchTreeSerializer round trips through streams and buffers, with every codec
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeSerializerTest {
+
+    private static final Comparator<String> STRINGS = new Comparator<String>() {
+        public int compare(String a, String b) {
+            return a.compareTo(b);
+        }
+    };
+
+    private static final Comparator<Long> LONGS = new Comparator<Long>() {
+        public int compare(Long a, Long b) {
+            return a.compareTo(b);
+        }
+    };
+
+    @Test
+    public void intTreeRoundTripsThroughAStream() throws IOException {
+        Random random = new Random(21);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        // Extremes check the deltas wrap and unwrap identically
+        tree.insert(Integer.MIN_VALUE);
+        tree.insert(Integer.MAX_VALUE);
+        for (int i = 0; i < 100000; i++) {
+            tree.insert(random.nextInt());
+        }
+        for (boolean checksum : new boolean[] { false, true }) {
+            BalancedBinarySearchTreeSerializer<Integer> serializer = new BalancedBinarySearchTreeSerializer<Integer>(ElementCodec.ofInt(), checksum);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            serializer.write(tree, bytes);
+            BalancedBinarySearchTree<Integer> read = serializer.read(new ByteArrayInputStream(bytes.toByteArray()), TreeChecks.NATURAL);
+            TreeChecks.assertValid(read);
+            assertEquals(tree.inorder(), read.inorder());
+            assertFalse(read.isMultiset());
+        }
+    }
+
+    @Test
+    public void longAndStringTreesRoundTripThroughABuffer() throws IOException {
+        BalancedBinarySearchTree<Long> longs = new BalancedBinarySearchTree<Long>(LONGS);
+        BalancedBinarySearchTree<String> strings = new BalancedBinarySearchTree<String>(STRINGS);
+        for (long i = 0; i < 1000; i++) {
+            longs.insert(i * i * i - 500000000L);
+            strings.insert("key" + i);
+        }
+        longs.insert(Long.MIN_VALUE);
+        longs.insert(Long.MAX_VALUE);
+        strings.insert("");
+        // Shares a high surrogate with the next string, which must not be split from its pair
+        strings.insert("k\uD83D\uDE00");
+        strings.insert("k\uD83D\uDE01");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        new BalancedBinarySearchTreeSerializer<Long>(ElementCodec.ofLong(), true).write(longs, buffer);
+        new BalancedBinarySearchTreeSerializer<String>(ElementCodec.ofString(), false).write(strings, buffer);
+        buffer.flip();
+        assertEquals(longs.inorder(), new BalancedBinarySearchTreeSerializer<Long>(ElementCodec.ofLong(), false).read(buffer, LONGS).inorder());
+        assertEquals(strings.inorder(), new BalancedBinarySearchTreeSerializer<String>(ElementCodec.ofString(), false).read(buffer, STRINGS).inorder());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void multisetKeepsItsCounts() throws IOException {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i % 37);
+        }
+        BalancedBinarySearchTreeSerializer<Integer> serializer = new BalancedBinarySearchTreeSerializer<Integer>(ElementCodec.of(KeyCodec.ofInt()), true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        BalancedBinarySearchTree<Integer> read = serializer.read(new ByteArrayInputStream(bytes.toByteArray()), TreeChecks.NATURAL);
+        assertTrue(read.isMultiset());
+        TreeChecks.assertValid(read);
+        assertEquals(tree.inorder(), read.inorder());
+        assertEquals(tree.count(5), read.count(5));
+    }
+
+    @Test
+    public void emptyTreeRoundTrips() throws IOException {
+        BalancedBinarySearchTreeSerializer<Integer> serializer = new BalancedBinarySearchTreeSerializer<Integer>(ElementCodec.ofInt(), true);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        serializer.write(new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL), buffer);
+        buffer.flip();
+        assertTrue(serializer.read(buffer, TreeChecks.NATURAL).isEmpty());
+    }
+
+    @Test
+    public void corruptionIsDetected() throws IOException {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i * 3);
+        }
+        BalancedBinarySearchTreeSerializer<Integer> serializer = new BalancedBinarySearchTreeSerializer<Integer>(ElementCodec.ofInt(), true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.write(tree, out);
+        byte[] bytes = out.toByteArray();
+
+        // A flipped bit in an element fails the checksum
+        byte[] flipped = bytes.clone();
+        flipped[20] ^= 1;
+        expectIOException(serializer, flipped);
+
+        // A bad magic number, and a stream cut short
+        byte[] magic = bytes.clone();
+        magic[0] = 0;
+        expectIOException(serializer, magic);
+        expectIOException(serializer, Arrays.copyOf(bytes, bytes.length - 10));
+    }
+
+    private static void expectIOException(BalancedBinarySearchTreeSerializer<Integer> serializer, byte[] bytes) {
+        try {
+            serializer.read(new ByteArrayInputStream(bytes), TreeChecks.NATURAL);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * join, split, union, intersect and difference against TreeSet
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeSetOperationsTest {
+
+    @Test
+    public void joinKeepsBalanceWhateverTheSizes() {
+        for (int[] sizes : new int[][] { { 0, 5 }, { 5, 0 }, { 1, 1000 }, { 1000, 1 }, { 300, 700 }, { 40, 40 } }) {
+            BalancedBinarySearchTree<Integer> lower = tree(0, sizes[0]);
+            BalancedBinarySearchTree<Integer> greater = tree(sizes[0], sizes[0] + sizes[1]);
+            lower.join(greater);
+            TreeChecks.assertValid(lower);
+            assertTrue(greater.isEmpty());
+            assertEquals(sizes[0] + sizes[1], lower.size());
+            assertEquals(Integer.valueOf(0), lower.select(0));
+            assertTrue(lower.height() <= PrimitiveBalancedBinarySearchTreeTest.maxAvlHeight(lower.size()));
+        }
+    }
+
+    @Test
+    public void joinRejectsOverlappingTrees() {
+        BalancedBinarySearchTree<Integer> lower = tree(0, 10);
+        BalancedBinarySearchTree<Integer> greater = tree(9, 20);
+        try {
+            lower.join(greater);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(10, lower.size());
+        assertEquals(11, greater.size());
+    }
+
+    @Test
+    public void splitAtEveryPoint() {
+        for (int at = -1; at <= 101; at++) {
+            BalancedBinarySearchTree<Integer> tree = tree(0, 100);
+            BalancedBinarySearchTree<Integer> greater = tree.split(at);
+            TreeChecks.assertValid(tree);
+            TreeChecks.assertValid(greater);
+            int cut = Math.max(0, Math.min(100, at));
+            assertEquals(cut, tree.size());
+            assertEquals(100 - cut, greater.size());
+            if (cut < 100) {
+                assertEquals(Integer.valueOf(cut), greater.select(0));
+            }
+            tree.join(greater);
+            assertEquals(100, tree.size());
+            TreeChecks.assertValid(tree);
+        }
+    }
+
+    @Test
+    public void setOperationsMatchTreeSet() {
+        Random random = new Random(15);
+        for (int round = 0; round < 30; round++) {
+            TreeSet<Integer> a = new TreeSet<Integer>();
+            TreeSet<Integer> b = new TreeSet<Integer>();
+            // Uneven sizes exercise the split-and-join recursion, large ones the parallel tasks
+            int sizeA = random.nextInt(round < 25 ? 200 : 20000);
+            int sizeB = random.nextInt(round < 25 ? 200 : 20000);
+            for (int i = 0; i < sizeA; i++) {
+                a.add(random.nextInt(3 * sizeA + 1));
+            }
+            for (int i = 0; i < sizeB; i++) {
+                b.add(random.nextInt(3 * sizeB + 1));
+            }
+
+            TreeSet<Integer> union = new TreeSet<Integer>(a);
+            union.addAll(b);
+            TreeSet<Integer> intersection = new TreeSet<Integer>(a);
+            intersection.retainAll(b);
+            TreeSet<Integer> difference = new TreeSet<Integer>(a);
+            difference.removeAll(b);
+
+            BalancedBinarySearchTree<Integer> tree = of(a);
+            BalancedBinarySearchTree<Integer> other = of(b);
+            assertEquals(union.size() != a.size(), tree.union(other));
+            assertTrue(other.isEmpty());
+            TreeChecks.assertValid(tree);
+            assertEquals(new ArrayList<Integer>(union), tree.inorder());
+
+            tree = of(a);
+            assertEquals(intersection.size() != a.size(), tree.intersect(of(b)));
+            TreeChecks.assertValid(tree);
+            assertEquals(new ArrayList<Integer>(intersection), tree.inorder());
+
+            tree = of(a);
+            assertEquals(difference.size() != a.size(), tree.difference(of(b)));
+            TreeChecks.assertValid(tree);
+            assertEquals(new ArrayList<Integer>(difference), tree.inorder());
+        }
+    }
+
+    @Test
+    public void operationsWithItself() {
+        BalancedBinarySearchTree<Integer> tree = tree(0, 10);
+        assertFalse(tree.union(tree));
+        assertFalse(tree.intersect(tree));
+        assertEquals(10, tree.size());
+        assertTrue(tree.difference(tree));
+        assertTrue(tree.isEmpty());
+        tree = tree(0, 3);
+        tree.join(tree);
+        assertEquals(Arrays.asList(0, 1, 2), tree.inorder());
+    }
+
+    private static BalancedBinarySearchTree<Integer> tree(int from, int to) {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = from; i < to; i++) {
+            tree.insert(i);
+        }
+        return tree;
+    }
+
+    private static BalancedBinarySearchTree<Integer> of(TreeSet<Integer> set) {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (Integer data : set) {
+            tree.insert(data);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,118 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * The spliterator's even, exactly sized splits and the streams built on it
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeSpliteratorTest {
+
+    @Test
+    public void splitsAreEvenAndExactlySized() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i);
+        }
+        Spliterator<Integer> upper = tree.spliterator();
+        assertTrue(upper.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED | Spliterator.DISTINCT));
+        assertEquals(1000, upper.getExactSizeIfKnown());
+        Spliterator<Integer> lower = upper.trySplit();
+        assertEquals(500, lower.getExactSizeIfKnown());
+        assertEquals(500, upper.getExactSizeIfKnown());
+        Spliterator<Integer> quarter = upper.trySplit();
+        assertEquals(250, quarter.getExactSizeIfKnown());
+
+        List<Integer> seen = new ArrayList<Integer>();
+        lower.forEachRemaining(collector(seen));
+        quarter.forEachRemaining(collector(seen));
+        upper.forEachRemaining(collector(seen));
+        assertEquals(tree.inorder(), seen);
+    }
+
+    @Test
+    public void splitsDownToSingleElementsKeepOrder() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 37; i++) {
+            tree.insert((i * 11) % 37);
+        }
+        // Split everything down to single elements and read them back in order
+        List<Spliterator<Integer>> parts = new ArrayList<Spliterator<Integer>>();
+        split(tree.spliterator(), parts);
+        assertEquals(37, parts.size());
+        List<Integer> seen = new ArrayList<Integer>();
+        for (Spliterator<Integer> part : parts) {
+            assertTrue(part.tryAdvance(collector(seen)));
+        }
+        assertEquals(tree.inorder(), seen);
+    }
+
+    @Test
+    public void multisetSplitsLandInsideARun() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i * 3; j++) {
+                tree.insert(i);
+            }
+            counts.put(i, i * 3 + 1);
+        }
+        List<Integer> expected = TreeChecks.expand(counts);
+        // Split everything down to single elements and read them back in order
+        List<Spliterator<Integer>> parts = new ArrayList<Spliterator<Integer>>();
+        split(tree.spliterator(), parts);
+        assertEquals(expected.size(), parts.size());
+        List<Integer> seen = new ArrayList<Integer>();
+        for (Spliterator<Integer> part : parts) {
+            assertTrue(part.tryAdvance(collector(seen)));
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void streamsMatchTheIterator() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 20000; i++) {
+            tree.insert((i * 7919) % 20000);
+        }
+        assertEquals(tree.inorder(), tree.stream().collect(Collectors.toList()));
+        assertEquals(tree.inorder(), tree.parallelStream().collect(Collectors.toList()));
+        assertEquals(20000, tree.parallelStream().distinct().count());
+    }
+
+    @Test
+    public void emptyTreeDoesNotSplit() {
+        Spliterator<Integer> spliterator = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL).spliterator();
+        assertNull(spliterator.trySplit());
+        assertEquals(0, spliterator.estimateSize());
+    }
+
+    private static void split(Spliterator<Integer> spliterator, List<Spliterator<Integer>> parts) {
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            parts.add(spliterator);
+            return;
+        }
+        split(prefix, parts);
+        split(spliterator, parts);
+    }
+
+    private static Consumer<Integer> collector(final List<Integer> seen) {
+        return new Consumer<Integer>() {
+            public void accept(Integer data) {
+                seen.add(data);
+            }
+        };
+    }
+}
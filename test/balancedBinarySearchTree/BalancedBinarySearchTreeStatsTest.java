@@ -0,0 +1,153 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * BalancedBinarySearchTreeStats counters, histograms and JMX registration
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeStatsTest {
+
+    @Test
+    public void countersFollowTheOperations() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        assertSame(stats, tree.enableStats());
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+        tree.insert(5);
+        tree.delete(5);
+        tree.delete(5);
+        tree.contains(7);
+        tree.contains(500);
+
+        assertEquals(100, stats.getInserts());
+        assertEquals(1, stats.getDuplicateInserts());
+        assertEquals(1, stats.getDeletes());
+        assertEquals(1, stats.getMissedDeletes());
+        assertEquals(1, stats.getSearches());
+        assertEquals(1, stats.getMissedSearches());
+        assertEquals(99, stats.getSize());
+        assertEquals(tree.height(), stats.getHeight());
+        assertEquals(6, stats.getOptimalHeight());
+        // Ascending inserts rotate at least once per doubling of the tree
+        assertTrue(stats.getRotations() >= 6);
+        assertTrue(stats.getComparisons() > 0);
+        assertTrue(stats.getComparisonsPerOperation() <= tree.height() + 1);
+        assertEquals(101, stats.getInsertLatency().count());
+        assertEquals(2, stats.getSearchLatency().count());
+        assertTrue(stats.getInsertP99Nanos() >= stats.getInsertP50Nanos());
+    }
+
+    @Test
+    public void countIsRecordedAsASearch() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        tree.insert(3);
+        tree.insert(3);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        assertEquals(2, tree.count(3));
+        assertEquals(0, tree.count(4));
+        assertEquals(1, stats.getSearches());
+        assertEquals(1, stats.getMissedSearches());
+        assertEquals(2, stats.getSearchLatency().count());
+        // Both descents are counted, and each was recorded as an operation
+        assertTrue(stats.getComparisonsPerOperation() <= tree.height() + 1);
+    }
+
+    @Test
+    public void bulkOperationsCountTheirElements() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        // Large enough to take the merge path rather than inserting one at a time
+        List<Integer> batch = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i % 80);
+        }
+        tree.insertAll(batch);
+        assertEquals(80, stats.getInserts());
+        assertEquals(20, stats.getDuplicateInserts());
+
+        BalancedBinarySearchTree<Integer> other = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 70; i < 90; i++) {
+            other.insert(i);
+        }
+        tree.union(other);
+        assertEquals(90, stats.getInserts());
+        assertEquals(30, stats.getDuplicateInserts());
+
+        for (int i = 85; i < 95; i++) {
+            other.insert(i);
+        }
+        tree.difference(other);
+        assertEquals(5, stats.getDeletes());
+        assertEquals(5, stats.getMissedDeletes());
+
+        for (int i = 0; i < 40; i++) {
+            other.insert(i);
+        }
+        tree.intersect(other);
+        assertEquals(50, stats.getDeletes());
+        assertEquals(5, stats.getMissedDeletes());
+        assertEquals(40, tree.size());
+        // Bulk work records no latency
+        assertEquals(0, stats.getInsertLatency().count());
+        assertEquals(0, stats.getDeleteLatency().count());
+    }
+
+    @Test
+    public void disablingStopsRecordingAndResetClears() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        tree.insert(1);
+        tree.disableStats();
+        assertNull(tree.getStats());
+        tree.insert(2);
+        assertEquals(1, stats.getInserts());
+        stats.reset();
+        assertEquals(0, stats.getInserts());
+        assertEquals(0, stats.getInsertLatency().count());
+        assertEquals(0, stats.getInsertP50Nanos());
+    }
+
+    @Test
+    public void histogramBucketsByPowerOfTwo() {
+        BalancedBinarySearchTreeStats.LatencyHistogram histogram = new BalancedBinarySearchTreeStats.LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        assertEquals(99, histogram.counts()[6]);
+        assertEquals(1, histogram.counts()[12]);
+        assertEquals(128, histogram.percentile(0.5));
+        assertEquals(128, histogram.percentile(0.99));
+        assertEquals(8192, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void registersWithThePlatformServer() throws JMException {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        ObjectName name = tree.enableStats().register("statsTest");
+        tree.insert(1);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.getAttribute(name, "Inserts"));
+            assertEquals(1, server.getAttribute(name, "Size"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * The iterative traversals: inorder, inorderHeight, forEachInOrder and toArray
+ * @author Spencer Collins
+ */
+public class BalancedBinarySearchTreeTraversalTest {
+
+    @Test
+    public void traversalsAgree() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        ArrayBalancedBinarySearchTree<Integer> array = new ArrayBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 200000; i++) {
+            int data = (int) ((i * 2654435761L) % 200000);
+            tree.insert(data);
+            array.insert(data);
+        }
+        for (int i = 0; i < 200000; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, tree.inorder());
+        assertEquals(expected, array.inorder());
+        assertEquals(expected, TreeChecks.toList(tree));
+
+        final List<Integer> visited = new ArrayList<Integer>(200000);
+        tree.forEachInOrder(new Consumer<Integer>() {
+            public void accept(Integer data) {
+                visited.add(data);
+            }
+        });
+        assertEquals(expected, visited);
+        assertArrayEquals(expected.toArray(), tree.toArray());
+    }
+
+    @Test
+    public void inorderHeightEndsAtTheLeaves() {
+        BalancedBinarySearchTree<Integer> tree = BalancedBinarySearchTree.fromSorted(TreeChecks.NATURAL, new Integer[] { 1, 2, 3, 4, 5, 6, 7 });
+        assertEquals(Arrays.asList(0, 1, 0, 2, 0, 1, 0), tree.inorderHeight());
+    }
+
+    @Test
+    public void toArrayFollowsCollectionRules() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        for (int data : new int[] { 3, 1, 2, 2 }) {
+            tree.insert(data);
+        }
+        Integer[] small = new Integer[1];
+        Integer[] grown = tree.toArray(small);
+        assertArrayEquals(new Integer[] { 1, 2, 2, 3 }, grown);
+
+        Integer[] exact = new Integer[4];
+        assertSame(exact, tree.toArray(exact));
+
+        Integer[] large = { 9, 9, 9, 9, 9, 9 };
+        assertSame(large, tree.toArray(large));
+        assertEquals(Integer.valueOf(3), large[3]);
+        assertNull(large[4]);
+        assertEquals(Integer.valueOf(9), large[5]);
+    }
+
+    @Test
+    public void forEachInOrderFailsFast() {
+        final BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        for (int i = 0; i < 10; i++) {
+            tree.insert(i);
+        }
+        try {
+            tree.forEach(new Consumer<Integer>() {
+                public void accept(Integer data) {
+                    if (data == 5) {
+                        tree.insert(100);
+                    }
+                }
+            });
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import balancedBinarySearchTree.BoundedBalancedBinarySearchTree.EvictionPolicy;
+
+/**
+ * BoundedBalancedBinarySearchTree: which element each policy evicts, and in what order
+ * @author Spencer Collins
+ */
+public class BoundedBalancedBinarySearchTreeTest {
+
+    @Test
+    public void evictMinKeepsTheGreatest() {
+        Random random = new Random(26);
+        BoundedBalancedBinarySearchTree<Integer> tree = bounded(100, EvictionPolicy.EVICT_MIN);
+        List<Integer> evicted = listen(tree);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        List<Integer> expectedEvictions = new ArrayList<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            int data = random.nextInt(100000);
+            if (!model.add(data)) {
+                continue;
+            }
+            boolean kept = true;
+            if (model.size() > 100) {
+                Integer victim = model.pollFirst();
+                expectedEvictions.add(victim);
+                kept = victim != data;
+            }
+            assertEquals(kept, tree.insert(data));
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(new ArrayList<Integer>(model), tree.inorder());
+        assertEquals(expectedEvictions, evicted);
+        assertEquals(model.first(), tree.getLeftmostNode().getData());
+        assertEquals(model.last(), tree.getRightmostNode().getData());
+    }
+
+    @Test
+    public void evictMaxKeepsTheLeast() {
+        Random random = new Random(27);
+        BoundedBalancedBinarySearchTree<Integer> tree = bounded(100, EvictionPolicy.EVICT_MAX);
+        List<Integer> evicted = listen(tree);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        List<Integer> expectedEvictions = new ArrayList<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            int data = random.nextInt(100000);
+            if (!model.add(data)) {
+                continue;
+            }
+            if (model.size() > 100) {
+                expectedEvictions.add(model.pollLast());
+            }
+            tree.insert(data);
+            if (random.nextInt(10) == 0) {
+                Integer removed = model.pollFirst();
+                assertTrue(tree.delete(removed));
+            }
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(new ArrayList<Integer>(model), tree.inorder());
+        assertEquals(expectedEvictions, evicted);
+    }
+
+    @Test
+    public void evictOldestIsFirstInFirstOut() {
+        Random random = new Random(28);
+        BoundedBalancedBinarySearchTree<Integer> tree = bounded(50, EvictionPolicy.EVICT_OLDEST);
+        List<Integer> evicted = listen(tree);
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        List<Integer> expectedEvictions = new ArrayList<Integer>();
+        for (int i = 0; i < 3000; i++) {
+            int data = random.nextInt(500);
+            if (queue.contains(data)) {
+                // A duplicate insert does not refresh the element's age; deleting it does
+                assertFalse(tree.insert(data));
+                if (random.nextBoolean()) {
+                    assertTrue(tree.delete(data));
+                    queue.remove(data);
+                }
+                continue;
+            }
+            queue.addLast(data);
+            if (queue.size() > 50) {
+                expectedEvictions.add(queue.removeFirst());
+            }
+            assertTrue(tree.insert(data));
+            assertEquals(queue.peekFirst(), tree.getOldest());
+        }
+        TreeChecks.assertValid(tree);
+        assertEquals(expectedEvictions, evicted);
+        assertEquals(new TreeSet<Integer>(queue).size(), tree.size());
+    }
+
+    @Test
+    public void earlyRejectionIsRecordedInStats() {
+        BoundedBalancedBinarySearchTree<Integer> tree = bounded(3, EvictionPolicy.EVICT_MIN);
+        List<Integer> evicted = listen(tree);
+        BalancedBinarySearchTreeStats stats = tree.enableStats();
+        for (int data : new int[] { 10, 20, 30 }) {
+            tree.insert(data);
+        }
+        // Below the minimum of a full tree: rejected without touching the tree
+        assertFalse(tree.insert(5));
+        assertEquals(Arrays.asList(5), evicted);
+        assertEquals(3, stats.getInserts());
+        assertEquals(1, stats.getDuplicateInserts());
+        assertEquals(4, stats.getInsertLatency().count());
+        assertEquals(Arrays.asList(10, 20, 30), tree.inorder());
+    }
+
+    @Test
+    public void bulkOperationsEvictAsTheyGo() {
+        BoundedBalancedBinarySearchTree<Integer> tree = bounded(5, EvictionPolicy.EVICT_MIN);
+        assertTrue(tree.insertAll(Arrays.asList(9, 1, 8, 2, 7, 3, 6)));
+        assertEquals(Arrays.asList(3, 6, 7, 8, 9), tree.inorder());
+        BalancedBinarySearchTree<Integer> other = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        other.insert(10);
+        other.insert(0);
+        assertTrue(tree.union(other));
+        assertEquals(Arrays.asList(6, 7, 8, 9, 10), tree.inorder());
+        assertTrue(other.isEmpty());
+    }
+
+    @Test
+    public void reshapingOperationsAreUnsupported() {
+        BoundedBalancedBinarySearchTree<Integer> tree = bounded(5, EvictionPolicy.EVICT_OLDEST);
+        try {
+            tree.join(new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            tree.split(1);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            tree.setLazyDeletion(true);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            bounded(0, EvictionPolicy.EVICT_MIN);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static BoundedBalancedBinarySearchTree<Integer> bounded(int capacity, EvictionPolicy policy) {
+        return new BoundedBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, capacity, policy);
+    }
+
+    private static List<Integer> listen(BoundedBalancedBinarySearchTree<Integer> tree) {
+        final List<Integer> evicted = new ArrayList<Integer>();
+        tree.setEvictionListener(new Consumer<Integer>() {
+            public void accept(Integer data) {
+                evicted.add(data);
+            }
+        });
+        return evicted;
+    }
+}
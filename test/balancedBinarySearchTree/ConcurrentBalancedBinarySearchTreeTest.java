@@ -0,0 +1,123 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * ConcurrentBalancedBinarySearchTree: lock-free readers, atomic batches and snapshots
+ * @author Spencer Collins
+ */
+public class ConcurrentBalancedBinarySearchTreeTest {
+
+    @Test
+    public void readersNeverSeeHalfABatch() throws InterruptedException {
+        final ConcurrentBalancedBinarySearchTree<Integer> tree = new ConcurrentBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        final int batches = 2000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < batches; i++) {
+                    tree.insertAll(Arrays.asList(2 * i, 2 * i + 1));
+                    if (i % 3 == 0) {
+                        tree.insertAll(Arrays.asList(2 * i, 2 * i + 1));
+                    }
+                }
+            }
+        });
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        int seen = 0;
+                        while (seen < 2 * batches) {
+                            // Every batch is a pair, so any version holds an even number of keys
+                            //   and each key alongside its partner
+                            List<Integer> version = TreeChecks.toList(tree);
+                            assertEquals(0, version.size() % 2);
+                            for (int i = 0; i < version.size(); i++) {
+                                assertEquals(Integer.valueOf(i), version.get(i));
+                            }
+                            seen = version.size();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(2 * batches, tree.countNodes());
+    }
+
+    @Test
+    public void concurrentWritersLoseNothing() throws InterruptedException {
+        final ConcurrentBalancedBinarySearchTree<Integer> tree = new ConcurrentBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < 4; w++) {
+            final int offset = w;
+            writers.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = offset; i < 8000; i += 4) {
+                        tree.insert(i);
+                    }
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(8000, tree.countNodes());
+        assertTrue(tree.height() <= PrimitiveBalancedBinarySearchTreeTest.maxAvlHeight(8000));
+        assertEquals(Integer.valueOf(7999), tree.inorder().get(7999));
+    }
+
+    @Test
+    public void iteratorsAndSnapshotsKeepTheirVersion() {
+        ConcurrentBalancedBinarySearchTree<Integer> tree = new ConcurrentBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insertAll(Arrays.asList(3, 1, 2));
+        Iterator<Integer> iterator = tree.iterator();
+        PersistentBalancedBinarySearchTree<Integer> snapshot = tree.snapshot();
+
+        assertTrue(tree.delete(2));
+        assertTrue(tree.insert(4));
+        assertFalse(tree.insert(4));
+        assertFalse(tree.insertAll(Arrays.asList(1, 3)));
+
+        List<Integer> seen = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            seen.add(iterator.next());
+        }
+        assertEquals(Arrays.asList(1, 2, 3), seen);
+        assertEquals(Arrays.asList(1, 2, 3), snapshot.inorder());
+        assertEquals(Arrays.asList(1, 3, 4), tree.inorder());
+        assertEquals(Integer.valueOf(3), tree.search(3));
+        assertEquals(null, tree.search(2));
+
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertEquals(3, snapshot.countNodes());
+    }
+}
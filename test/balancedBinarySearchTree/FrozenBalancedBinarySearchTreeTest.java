@@ -0,0 +1,101 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * FrozenBalancedBinarySearchTree lookups against the tree it was frozen from, and its layout
+ * arithmetic at sizes too large to allocate
+ * @author Spencer Collins
+ */
+public class FrozenBalancedBinarySearchTreeTest {
+
+    @Test
+    public void lookupsMatchTreeSetAtEverySize() {
+        Random random = new Random(12);
+        // Every size up to a few full levels, so each shape of last level is covered
+        for (int n = 0; n <= 70; n++) {
+            BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+            TreeSet<Integer> model = new TreeSet<Integer>();
+            while (model.size() < n) {
+                int data = random.nextInt(200) * 2;
+                tree.insert(data);
+                model.add(data);
+            }
+            FrozenBalancedBinarySearchTree<Integer> frozen = tree.freeze();
+            assertEquals(n, frozen.size());
+            assertEquals(new ArrayList<Integer>(model), TreeChecks.toList(frozen));
+            for (int data = -1; data <= 401; data++) {
+                assertEquals(model.contains(data), frozen.contains(data));
+                assertEquals(model.ceiling(data), frozen.ceiling(data));
+                assertEquals(model.floor(data), frozen.floor(data));
+                assertEquals(new ArrayList<Integer>(model.subSet(data, data + 40)), TreeChecks.toList(frozen.range(data, data + 40)));
+            }
+        }
+    }
+
+    @Test
+    public void frozenMultisetKeepsEveryOccurrence() {
+        Random random = new Random(13);
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, true);
+        TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 200; i++) {
+            int data = random.nextInt(30) * 2;
+            tree.insert(data);
+            Integer count = counts.get(data);
+            counts.put(data, count == null ? 1 : count + 1);
+        }
+        FrozenBalancedBinarySearchTree<Integer> frozen = tree.freeze();
+        assertEquals(200, frozen.size());
+        assertEquals(TreeChecks.expand(counts), TreeChecks.toList(frozen));
+        for (int data = -1; data <= 61; data++) {
+            assertEquals(counts.containsKey(data), frozen.contains(data));
+            assertEquals(counts.ceilingKey(data), frozen.ceiling(data));
+            assertEquals(counts.floorKey(data), frozen.floor(data));
+            assertEquals(TreeChecks.expand(new TreeMap<Integer, Integer>(counts.subMap(data, data + 7))),
+                    TreeChecks.toList(frozen.range(data, data + 7)));
+        }
+    }
+
+    @Test
+    public void layoutArithmeticSurvivesTheLargestSizes() {
+        // Stepping below the last level of a tree this size passes Integer.MAX_VALUE
+        int size = Integer.MAX_VALUE - 1;
+        assertEquals(1 << 30, FrozenBalancedBinarySearchTree.first(size));
+        assertEquals((1 << 30) - 1, FrozenBalancedBinarySearchTree.last(size));
+        assertEquals(1 << 29, FrozenBalancedBinarySearchTree.successor(1 << 30, size));
+        assertEquals(Integer.MAX_VALUE - 1, FrozenBalancedBinarySearchTree.predecessor((1 << 30) - 1, size));
+        assertEquals(1 << 30, FrozenBalancedBinarySearchTree.predecessor(1 << 29, size));
+        try {
+            new FrozenBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL, Collections.<Integer>emptyIterator(), Integer.MAX_VALUE);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void laterChangesAreNotSeen() {
+        BalancedBinarySearchTree<Integer> tree = new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        tree.insert(1);
+        tree.insert(2);
+        FrozenBalancedBinarySearchTree<Integer> frozen = tree.freeze();
+        tree.insert(3);
+        tree.delete(1);
+        assertEquals(Arrays.asList(1, 2), TreeChecks.toList(frozen));
+        assertTrue(frozen.contains(1));
+        assertFalse(frozen.contains(3));
+        assertTrue(new BalancedBinarySearchTree<Integer>(TreeChecks.NATURAL).freeze().isEmpty());
+    }
+}
@@ -0,0 +1,130 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * MappedBalancedBinarySearchTree: reopening, recovery after a crash and the 2GB node limit
+ * @author Spencer Collins
+ */
+public class MappedBalancedBinarySearchTreeTest {
+
+    /** Offsets the tests write into the file directly, as a crash would leave it */
+    private static final int STATE_OFFSET = 16;
+    private static final int DIRTY = 1;
+    private static final int KEY = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void closeAndReopenKeepsTheKeys() throws IOException {
+        Path file = this.folder.newFolder().toPath().resolve("tree");
+        MappedBalancedBinarySearchTree<Integer> tree = MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt(), 4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i * 7 % 100);
+        }
+        tree.delete(50);
+        tree.close();
+        assertEquals(1, tree.checkpoints());
+
+        tree = MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt());
+        assertEquals(99, tree.countNodes());
+        assertTrue(tree.contains(99));
+        assertFalse(tree.contains(50));
+        assertEquals(1, tree.checkpoints());
+        tree.insert(50);
+        tree.close();
+        assertEquals(2, tree.checkpoints());
+    }
+
+    @Test
+    public void reopenWithoutCloseRecoversEveryKey() throws IOException {
+        Path file = this.folder.newFolder().toPath().resolve("tree");
+        MappedBalancedBinarySearchTree<Integer> tree = MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt());
+        tree.insert(1);
+        tree.insert(2);
+        tree.checkpoint();
+        tree.insert(3);
+        tree.delete(1);
+
+        // Never closed: the file is still DIRTY, so opening it again rebuilds from the slots
+        MappedBalancedBinarySearchTree<Integer> recovered = MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt());
+        assertEquals(Arrays.asList(2, 3), TreeChecks.toList(recovered));
+        assertEquals(2, recovered.checkpoints());
+        recovered.close();
+        tree.close();
+    }
+
+    @Test
+    public void recoveryIgnoresAKeyWrittenWithoutItsMarker() throws IOException {
+        Path file = this.folder.newFolder().toPath().resolve("tree");
+        MappedBalancedBinarySearchTree<Integer> tree = MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt());
+        tree.insert(1);
+        tree.insert(2);
+        tree.insert(3);
+        tree.close();
+
+        // A crash part way through allocating slot 3: its key is written, its height is not
+        int nodeSize = OffHeapBalancedBinarySearchTree.nodeSize(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            mapped.putInt(STATE_OFFSET, DIRTY);
+            ByteBuffer key = ByteBuffer.allocate(4);
+            KeyCodec.ofInt().encode(4, key, 0);
+            for (int i = 0; i < 4; i++) {
+                mapped.put(MappedBalancedBinarySearchTree.HEADER_SIZE + 3 * nodeSize + KEY + i, key.get(i));
+            }
+            mapped.force();
+        }
+
+        tree = MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt());
+        assertEquals(Arrays.asList(1, 2, 3), TreeChecks.toList(tree));
+        tree.insert(5);
+        assertEquals(Arrays.asList(1, 2, 3, 5), TreeChecks.toList(tree));
+        tree.close();
+    }
+
+    @Test
+    public void nodeLimitIsReported() {
+        int nodeSize = OffHeapBalancedBinarySearchTree.nodeSize(4);
+        assertEquals(Integer.MAX_VALUE / nodeSize, OffHeapBalancedBinarySearchTree.maxNodes(4));
+        try {
+            OffHeapBalancedBinarySearchTree.checkedBytes(OffHeapBalancedBinarySearchTree.maxNodes(4) + 1L, nodeSize);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("at most " + OffHeapBalancedBinarySearchTree.maxNodes(4) + " nodes"));
+        }
+    }
+
+    @Test
+    public void fileBeyondTheLimitIsRejected() throws IOException {
+        Path file = this.folder.newFolder().toPath().resolve("tree");
+        MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt()).close();
+        // Sparse, so the test needs no real disk space
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(3L << 30);
+        }
+        try {
+            MappedBalancedBinarySearchTree.open(file, KeyCodec.ofInt());
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("2GB"));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * OffHeapBalancedBinarySearchTree and the KeyCodec orderings it relies on
+ * @author Spencer Collins
+ */
+public class OffHeapBalancedBinarySearchTreeTest {
+
+    @Test
+    public void intKeysMatchTreeSet() {
+        Random random = new Random(5);
+        OffHeapBalancedBinarySearchTree<Integer> tree = new OffHeapBalancedBinarySearchTree<Integer>(KeyCodec.ofInt(), 2);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        long reserved = tree.reservedBytes();
+        for (int i = 0; i < 20000; i++) {
+            // Negative keys check that the codec's flipped sign bit orders them first
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) > 0) {
+                assertEquals(model.add(key), tree.insert(key));
+            } else {
+                assertEquals(model.remove(key), tree.delete(key));
+            }
+            assertEquals(model.contains(key), tree.contains(key));
+        }
+        assertTrue(tree.reservedBytes() > reserved);
+        assertEquals(new ArrayList<Integer>(model), TreeChecks.toList(tree));
+        assertEquals(model.size(), tree.countNodes());
+        assertTrue(tree.height() <= PrimitiveBalancedBinarySearchTreeTest.maxAvlHeight(model.size()));
+    }
+
+    @Test
+    public void longKeysOrderAcrossTheSign() {
+        OffHeapBalancedBinarySearchTree<Long> tree = new OffHeapBalancedBinarySearchTree<Long>(KeyCodec.ofLong());
+        long[] keys = { Long.MAX_VALUE, -1L, 0L, Long.MIN_VALUE, 1L << 40, -(1L << 40) };
+        for (long key : keys) {
+            assertTrue(tree.insert(key));
+        }
+        List<Long> expected = new ArrayList<Long>(new TreeSet<Long>(TreeChecks.toList(tree)));
+        assertEquals(expected, TreeChecks.toList(tree));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), tree.iterator().next());
+        assertEquals(Long.valueOf(-1L), tree.search(-1L));
+        assertNull(tree.search(2L));
+    }
+
+    @Test
+    public void byteKeysOrderUnsigned() {
+        OffHeapBalancedBinarySearchTree<byte[]> tree = new OffHeapBalancedBinarySearchTree<byte[]>(KeyCodec.ofBytes(2));
+        tree.insert(new byte[] { (byte) 0x80, 0 });
+        tree.insert(new byte[] { 0x7f, 0 });
+        tree.insert(new byte[] { 0, 1 });
+        assertFalse(tree.insert(new byte[] { 0, 1 }));
+        List<byte[]> keys = TreeChecks.toList(tree);
+        assertArrayEquals(new byte[] { 0, 1 }, keys.get(0));
+        assertArrayEquals(new byte[] { 0x7f, 0 }, keys.get(1));
+        assertArrayEquals(new byte[] { (byte) 0x80, 0 }, keys.get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void byteKeysOfTheWrongWidthAreRejected() {
+        new OffHeapBalancedBinarySearchTree<byte[]>(KeyCodec.ofBytes(2)).insert(new byte[3]);
+    }
+
+    @Test
+    public void clearEmptiesTheTree() {
+        OffHeapBalancedBinarySearchTree<Integer> tree = new OffHeapBalancedBinarySearchTree<Integer>(KeyCodec.ofInt());
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.contains(1));
+        assertTrue(tree.insert(1));
+        assertEquals(1, tree.countNodes());
+    }
+}
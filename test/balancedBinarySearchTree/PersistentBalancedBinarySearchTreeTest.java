@@ -0,0 +1,75 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * PersistentBalancedBinarySearchTree: every version stays as it was
+ * @author Spencer Collins
+ */
+public class PersistentBalancedBinarySearchTreeTest {
+
+    @Test
+    public void oldVersionsAreUntouched() {
+        PersistentBalancedBinarySearchTree<Integer> empty = new PersistentBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        PersistentBalancedBinarySearchTree<Integer> one = empty.insert(1);
+        PersistentBalancedBinarySearchTree<Integer> two = one.insert(2);
+        PersistentBalancedBinarySearchTree<Integer> withoutOne = two.delete(1);
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Arrays.asList(1), one.inorder());
+        assertEquals(Arrays.asList(1, 2), two.inorder());
+        assertEquals(Arrays.asList(2), withoutOne.inorder());
+        assertTrue(two.contains(1));
+        assertFalse(withoutOne.contains(1));
+        assertTrue(two.clear().isEmpty());
+        assertEquals(2, two.countNodes());
+    }
+
+    @Test
+    public void unchangedOperationsReturnTheSameVersion() {
+        PersistentBalancedBinarySearchTree<Integer> tree = new PersistentBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL).insert(1);
+        assertSame(tree, tree.insert(1));
+        assertSame(tree, tree.delete(2));
+        assertSame(TreeChecks.NATURAL, tree.comparator());
+    }
+
+    @Test
+    public void everyVersionMatchesItsModel() {
+        Random random = new Random(7);
+        List<PersistentBalancedBinarySearchTree<Integer>> versions = new ArrayList<PersistentBalancedBinarySearchTree<Integer>>();
+        List<List<Integer>> models = new ArrayList<List<Integer>>();
+        PersistentBalancedBinarySearchTree<Integer> tree = new PersistentBalancedBinarySearchTree<Integer>(TreeChecks.NATURAL);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 3000; i++) {
+            int data = random.nextInt(300);
+            if (random.nextInt(3) > 0) {
+                tree = tree.insert(data);
+                model.add(data);
+            } else {
+                tree = tree.delete(data);
+                model.remove(data);
+            }
+            if (i % 100 == 0) {
+                versions.add(tree);
+                models.add(new ArrayList<Integer>(model));
+            }
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(models.get(i), versions.get(i).inorder());
+            assertEquals(models.get(i), TreeChecks.toList(versions.get(i)));
+            assertEquals(models.get(i).size(), versions.get(i).countNodes());
+            assertTrue(versions.get(i).height() <= PrimitiveBalancedBinarySearchTreeTest.maxAvlHeight(models.get(i).size()));
+        }
+    }
+}
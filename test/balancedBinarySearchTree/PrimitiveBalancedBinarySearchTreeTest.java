@@ -0,0 +1,110 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * IntBalancedBinarySearchTree and LongBalancedBinarySearchTree against TreeSet
+ * @author Spencer Collins
+ */
+public class PrimitiveBalancedBinarySearchTreeTest {
+
+    /** Tallest an AVL tree of n nodes can be, counting a single node as height 0 */
+    static int maxAvlHeight(int n) {
+        return (int) Math.floor(1.4405 * Math.log(n + 2) / Math.log(2) - 1.3277);
+    }
+
+    @Test
+    public void intTreeMatchesTreeSet() {
+        Random random = new Random(2);
+        // Starts small so the arrays have to grow
+        IntBalancedBinarySearchTree tree = new IntBalancedBinarySearchTree(4);
+        TreeSet<Integer> model = new TreeSet<Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) > 0) {
+                assertEquals(model.add(key), tree.insert(key));
+            } else {
+                assertEquals(model.remove(key), tree.delete(key));
+            }
+            assertEquals(model.contains(key), tree.contains(key));
+        }
+        assertEquals(model.size(), tree.countNodes());
+        int[] expected = new int[model.size()];
+        int i = 0;
+        for (int key : model) {
+            expected[i++] = key;
+        }
+        assertArrayEquals(expected, tree.inorder());
+        i = 0;
+        for (PrimitiveIterator.OfInt iterator = tree.iterator(); iterator.hasNext();) {
+            assertEquals(expected[i++], iterator.nextInt());
+        }
+        assertEquals(expected.length, i);
+        assertTrue(tree.height() <= maxAvlHeight(tree.countNodes()));
+    }
+
+    @Test
+    public void intTreeHoldsExtremeKeys() {
+        IntBalancedBinarySearchTree tree = new IntBalancedBinarySearchTree();
+        assertTrue(tree.insert(Integer.MAX_VALUE));
+        assertTrue(tree.insert(Integer.MIN_VALUE));
+        assertTrue(tree.insert(0));
+        assertFalse(tree.insert(Integer.MIN_VALUE));
+        assertArrayEquals(new int[] { Integer.MIN_VALUE, 0, Integer.MAX_VALUE }, tree.inorder());
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.contains(0));
+    }
+
+    @Test
+    public void ascendingIntKeysStayBalanced() {
+        IntBalancedBinarySearchTree tree = new IntBalancedBinarySearchTree();
+        for (int i = 0; i < 100000; i++) {
+            tree.insert(i);
+        }
+        assertTrue(tree.height() <= maxAvlHeight(100000));
+        for (int i = 0; i < 100000; i += 2) {
+            assertTrue(tree.delete(i));
+        }
+        assertEquals(50000, tree.countNodes());
+        assertTrue(tree.height() <= maxAvlHeight(50000));
+    }
+
+    @Test
+    public void longTreeMatchesTreeSet() {
+        Random random = new Random(3);
+        LongBalancedBinarySearchTree tree = new LongBalancedBinarySearchTree(4);
+        TreeSet<Long> model = new TreeSet<Long>();
+        for (int i = 0; i < 20000; i++) {
+            // Keys beyond the int range, so truncation would show
+            long key = (random.nextInt(2000) - 1000) * (1L << 40);
+            if (random.nextInt(3) > 0) {
+                assertEquals(model.add(key), tree.insert(key));
+            } else {
+                assertEquals(model.remove(key), tree.delete(key));
+            }
+            assertEquals(model.contains(key), tree.contains(key));
+        }
+        long[] expected = new long[model.size()];
+        int i = 0;
+        for (long key : model) {
+            expected[i++] = key;
+        }
+        assertArrayEquals(expected, tree.inorder());
+        i = 0;
+        for (PrimitiveIterator.OfLong iterator = tree.iterator(); iterator.hasNext();) {
+            assertEquals(expected[i++], iterator.nextLong());
+        }
+        assertEquals(expected.length, i);
+        assertTrue(tree.height() <= maxAvlHeight(tree.countNodes()));
+    }
+}
@@ -0,0 +1,201 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * ShardedBalancedBinarySearchTree ingest, ordering, close and worker failures
+ * @author Spencer Collins
+ */
+public class ShardedBalancedBinarySearchTreeTest {
+
+    @Test
+    public void rangeAndHashShardsIterateInOrder() throws InterruptedException {
+        Random random = new Random(25);
+        List<Integer> data = new ArrayList<Integer>();
+        for (int i = 0; i < 50000; i++) {
+            data.add(random.nextInt(100000));
+        }
+        TreeSet<Integer> model = new TreeSet<Integer>(data);
+        ShardedBalancedBinarySearchTree<Integer> byRange = ShardedBalancedBinarySearchTree.byRange(TreeChecks.NATURAL, Arrays.asList(25000, 50000, 75000));
+        ShardedBalancedBinarySearchTree<Integer> byHash = ShardedBalancedBinarySearchTree.byHash(TreeChecks.NATURAL, 3);
+        for (ShardedBalancedBinarySearchTree<Integer> tree : Arrays.asList(byRange, byHash)) {
+            tree.addAll(data);
+            tree.flush();
+            assertEquals(model.size(), tree.size());
+            assertEquals(new ArrayList<Integer>(model), TreeChecks.toList(tree));
+            for (int i = 0; i < 1000; i++) {
+                int probe = random.nextInt(100000);
+                assertEquals(model.contains(probe), tree.contains(probe));
+            }
+            tree.close();
+        }
+        assertEquals(0, byRange.shardOf(24999));
+        assertEquals(1, byRange.shardOf(25000));
+        assertEquals(3, byRange.shardOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void producersFromManyThreads() throws InterruptedException {
+        final ShardedBalancedBinarySearchTree<Integer> tree = ShardedBalancedBinarySearchTree.byHash(TreeChecks.NATURAL, 4);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < 4; w++) {
+            final int offset = w;
+            writers.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        ShardedBalancedBinarySearchTree<Integer>.Producer producer = tree.producer();
+                        for (int i = offset; i < 100000; i += 4) {
+                            producer.add(i);
+                        }
+                        producer.flush();
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        tree.flush();
+        assertEquals(100000, tree.size());
+        tree.close();
+    }
+
+    @Test
+    public void closeAppliesEveryBatchHandedOverBeforeIt() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            final ShardedBalancedBinarySearchTree<Integer> tree = ShardedBalancedBinarySearchTree.byHash(TreeChecks.NATURAL, 2);
+            final List<List<Integer>> accepted = Collections.synchronizedList(new ArrayList<List<Integer>>());
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            List<Thread> writers = new ArrayList<Thread>();
+            for (int w = 0; w < 4; w++) {
+                final int offset = w * 1000000;
+                writers.add(new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            for (int i = 0;; i++) {
+                                List<Integer> batch = Arrays.asList(offset + 2 * i, offset + 2 * i + 1);
+                                tree.addAll(batch);
+                                accepted.add(batch);
+                            }
+                        } catch (IllegalStateException e) {
+                            // Closed; every batch accepted before this must be in the tree
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                }));
+            }
+            for (Thread writer : writers) {
+                writer.start();
+            }
+            Thread.sleep(5);
+            tree.close();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            synchronized (accepted) {
+                for (List<Integer> batch : accepted) {
+                    assertTrue(tree.contains(batch.get(0)));
+                    assertTrue(tree.contains(batch.get(1)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void insertFailureIsReportedOnceByFlush() throws InterruptedException {
+        ShardedBalancedBinarySearchTree<Integer> tree = ShardedBalancedBinarySearchTree.byHash(failingOn(13, false), 1);
+        tree.addAll(Arrays.asList(1, 13, 2));
+        try {
+            tree.flush();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        // Reported and cleared; the worker carries on with later batches
+        tree.addAll(Arrays.asList(3));
+        tree.flush();
+        assertTrue(tree.contains(3));
+        tree.close();
+    }
+
+    @Test
+    public void stoppedWorkerFailsWritersInsteadOfBlockingThem() throws InterruptedException {
+        // An Error is not caught by the worker, so it kills the worker's thread
+        ShardedBalancedBinarySearchTree<Integer> tree = ShardedBalancedBinarySearchTree.byHash(failingOn(13, true), 1);
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            public void uncaughtException(Thread thread, Throwable e) {
+                // Expected from the worker; keep the test output quiet
+            }
+        });
+        try {
+            tree.addAll(Arrays.asList(1, 13));
+            try {
+                tree.flush();
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            // More than a queue's worth of batches: without the liveness check the writer would block
+            ShardedBalancedBinarySearchTree<Integer>.Producer producer = tree.producer();
+            try {
+                for (int i = 0; i < 100000; i++) {
+                    producer.add(i);
+                }
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            tree.close();
+            assertFalse(tree.contains(50000));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+    }
+
+    /**
+     * @param poison
+     * @param error whether to throw an Error rather than an IllegalArgumentException
+     * @return natural order that throws whenever it compares poison
+     */
+    private static Comparator<Integer> failingOn(final int poison, final boolean error) {
+        return new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                if (a == poison || b == poison) {
+                    if (error) {
+                        throw new AssertionError("poison");
+                    }
+                    throw new IllegalArgumentException("poison");
+                }
+                return a.compareTo(b);
+            }
+        };
+    }
+}
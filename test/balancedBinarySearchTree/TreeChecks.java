@@ -0,0 +1,130 @@
+package balancedBinarySearchTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import balancedBinarySearchTree.BalancedBinarySearchTree.BalancingPolicy;
+
+/**
+ * Assertions and helpers shared by the tests
+ * @author Spencer Collins
+ */
+final class TreeChecks {
+
+    static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+            return a.compareTo(b);
+        }
+    };
+
+    private TreeChecks() {
+    }
+
+    /**
+     * Check every node's parent link, order, height and subtree size, and the balance the tree's
+     *   policy keeps: the height difference AVL or RELAXED allows, the colour rules of RED_BLACK,
+     *   or the height bound of DEFERRED
+     * @param tree
+     */
+    static <T> void assertValid(BalancedBinarySearchTree<T> tree) {
+        BalancingPolicy policy = tree.getBalancingPolicy();
+        int tolerance;
+        switch (policy) {
+        case STRICT:
+        case EARLY_STOP:
+            tolerance = 1;
+            break;
+        case RELAXED:
+            tolerance = 2;
+            break;
+        default:
+            tolerance = Integer.MAX_VALUE;
+        }
+        BalancedBinarySearchTreeNode<T> root = tree.root();
+        if (root != null) {
+            assertSame("root has a parent", null, root.getParentNode());
+        }
+        check(tree, root, tolerance);
+        if (policy == BalancingPolicy.RED_BLACK) {
+            assertFalse("red root", root != null && root.isRed());
+            blackHeight(root);
+        } else if (policy == BalancingPolicy.DEFERRED) {
+            // Tombstones are nodes too
+            int nodes = tree.size() + tree.getTombstoneCount();
+            double bound = Math.log(Math.max(nodes, 1)) / Math.log(1.5) + 2;
+            assertTrue("height " + tree.height() + " of " + nodes, tree.height() <= bound);
+        }
+    }
+
+    /**
+     * @param node
+     * @return black nodes on every path from node down to an empty link, after checking that
+     *   every path has as many and that no red node has a red child
+     */
+    private static <T> int blackHeight(BalancedBinarySearchTreeNode<T> node) {
+        if (node == null) {
+            return 0;
+        }
+        BalancedBinarySearchTreeNode<T> left = node.getLeftNode();
+        BalancedBinarySearchTreeNode<T> right = node.getRightNode();
+        if (node.isRed()) {
+            assertFalse("red child of " + node, (left != null && left.isRed()) || (right != null && right.isRed()));
+        }
+        int leftBlack = blackHeight(left);
+        assertEquals("black height at " + node, leftBlack, blackHeight(right));
+        return leftBlack + (node.isRed() ? 0 : 1);
+    }
+
+    private static <T> int check(BalancedBinarySearchTree<T> tree, BalancedBinarySearchTreeNode<T> node, int tolerance) {
+        if (node == null) {
+            return -1;
+        }
+        BalancedBinarySearchTreeNode<T> left = node.getLeftNode();
+        BalancedBinarySearchTreeNode<T> right = node.getRightNode();
+        if (left != null) {
+            assertSame("parent link of " + left, node, left.getParentNode());
+            assertTrue("order at " + node, tree.getComparator().compare(left.getData(), node.getData()) < 0);
+        }
+        if (right != null) {
+            assertSame("parent link of " + right, node, right.getParentNode());
+            assertTrue("order at " + node, tree.getComparator().compare(right.getData(), node.getData()) > 0);
+        }
+        int leftHeight = check(tree, left, tolerance);
+        int rightHeight = check(tree, right, tolerance);
+        assertTrue("balance at " + node, Math.abs(leftHeight - rightHeight) <= tolerance);
+        assertEquals("height of " + node, Math.max(leftHeight, rightHeight) + 1, node.getHeight());
+        int size = (left != null ? left.getSize() : 0) + (right != null ? right.getSize() : 0) + node.getCount();
+        assertEquals("size of " + node, size, node.getSize());
+        return node.getHeight();
+    }
+
+    /**
+     * @param counts occurrences of each element
+     * @return the elements in order, each repeated as often as it occurs
+     */
+    static List<Integer> expand(TreeMap<Integer, Integer> counts) {
+        List<Integer> elements = new ArrayList<Integer>();
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                elements.add(entry.getKey());
+            }
+        }
+        return elements;
+    }
+
+    static <T> List<T> toList(Iterable<T> iterable) {
+        List<T> list = new ArrayList<T>();
+        for (T data : iterable) {
+            list.add(data);
+        }
+        return list;
+    }
+}